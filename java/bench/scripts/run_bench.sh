@@ -0,0 +1,8 @@
+#!/bin/bash
+# Builds the benchmark module and runs it against $USER"_DB" on $PGPORT.
+# Extra arguments are handed to JMH, e.g. run_bench.sh -p execution=prepared viewRooms
+DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
+
+(cd $DIR/.. && mvn -q -B package) || exit 1
+java -Dhotel.bench.db=$USER"_DB" -Dhotel.bench.port=$PGPORT -Dhotel.bench.user=$USER \
+     -cp $DIR/../target/benchmarks.jar:$DIR/../../lib/pg73jdbc3.jar org.openjdk.jmh.Main "$@"
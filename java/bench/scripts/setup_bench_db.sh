@@ -0,0 +1,28 @@
+#!/bin/bash
+# Creates and loads the benchmark database. Expects the server started by
+# startPostgreSQL.sh.
+#
+# usage: setup_bench_db.sh [scale]
+#    loads data/*.csv, replicated <scale> times
+# usage: GEN_BOOKINGS=<n> [GEN_HOTELS=<n>] setup_bench_db.sh
+#    loads a data set of that size written by DataGenerator
+DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
+ROOT=$DIR/../../..
+SCALE=${1:-1}
+
+createdb -h localhost -p $PGPORT $USER"_DB" 2>/dev/null
+mkdir -p $ROOT/java/classes
+javac -d $ROOT/java/classes $ROOT/java/src/*.java
+csv=$ROOT/data
+if [ -n "$GEN_BOOKINGS" ]; then
+    csv=/tmp/$USER/csv
+    java -cp $ROOT/java/classes DataGenerator $csv ${GEN_HOTELS:-20} $GEN_BOOKINGS
+    SCALE=1
+fi
+psql -h localhost -p $PGPORT $USER"_DB" < $ROOT/sql/src/create_tables.sql
+# BulkLoader also builds the indexes of create_indexes.sql and sets the
+# sequences; it needs a driver with COPY, see fetch_jdbc.sh.
+source $ROOT/java/lib/fetch_jdbc.sh
+java -cp $ROOT/java/classes:$JDBC_JAR BulkLoader $USER"_DB" $PGPORT $USER $csv
+psql -h localhost -p $PGPORT -v scale=$SCALE $USER"_DB" < $ROOT/sql/src/scale_data.sql
+psql -h localhost -p $PGPORT $USER"_DB" < $ROOT/sql/src/reset_sequences.sql
@@ -0,0 +1,165 @@
+package hotel.bench;
+
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.sql.Date;
+import java.util.List;
+
+/**
+ * This class gives the benchmarks typed access to the Hotel operations.
+ *
+ * Hotel lives in the default package, which classes in a named package (as
+ * JMH requires) cannot refer to. The operations are therefore bound once
+ * through method handles held in static final fields, which the JIT inlines
+ * like direct calls.
+ *
+ */
+final class HotelApi {
+
+   private static final Class<?> HOTEL = load ("Hotel");
+
+   private static final MethodHandle NEW_HOTEL = constructor (
+      MethodType.methodType (void.class, String.class, String.class, String.class, String.class));
+   private static final MethodHandle SET_OUTPUT = virtual ("setOutput",
+      MethodType.methodType (void.class, PrintStream.class));
+   private static final MethodHandle CLEANUP = virtual ("cleanup",
+      MethodType.methodType (void.class));
+   private static final MethodHandle QUERY_AND_PRINT = virtual ("executeQueryAndPrintResult",
+      MethodType.methodType (int.class, String.class));
+   private static final MethodHandle QUERY_AND_RETURN = virtual ("executeQueryAndReturnResult",
+      MethodType.methodType (List.class, String.class));
+   private static final MethodHandle UPDATE = virtual ("executeUpdate",
+      MethodType.methodType (void.class, String.class));
+   private static final MethodHandle PREPARED_QUERY_AND_PRINT = virtual ("executeQueryAndPrintResult",
+      MethodType.methodType (int.class, String.class, Object[].class));
+   private static final MethodHandle PREPARED_UPDATE = virtual ("executeUpdate",
+      MethodType.methodType (int.class, String.class, Object[].class));
+
+   private static final MethodHandle VIEW_HOTELS = operation ("viewHotels",
+      MethodType.methodType (int.class, HOTEL, double.class, double.class));
+   private static final MethodHandle VIEW_ROOMS = operation ("viewRooms",
+      MethodType.methodType (int.class, HOTEL, int.class, Date.class));
+   private static final MethodHandle BOOK_ROOMS = operation ("bookRooms",
+      MethodType.methodType (boolean.class, HOTEL, int.class, int.class, int.class, Date.class));
+   private static final MethodHandle RECENT_BOOKINGS = operation ("viewRecentBookingsfromCustomer",
+      MethodType.methodType (int.class, HOTEL, int.class));
+   private static final MethodHandle BOOKING_HISTORY = operation ("viewBookingHistoryofHotel",
+      MethodType.methodType (int.class, HOTEL, Date.class, Date.class));
+   private static final MethodHandle REGULAR_CUSTOMERS = operation ("viewRegularCustomers",
+      MethodType.methodType (int.class, HOTEL, int.class));
+   private static final MethodHandle REPAIR_HISTORY = operation ("viewRoomRepairHistory",
+      MethodType.methodType (int.class, HOTEL, int.class));
+
+   private HotelApi () {
+   }
+
+   static Object connect (String dbname, String dbport, String user, String passwd) throws Throwable {
+      return (Object) NEW_HOTEL.invokeExact (dbname, dbport, user, passwd);
+   }
+
+   static void setOutput (Object esql, PrintStream out) throws Throwable {
+      SET_OUTPUT.invokeExact (esql, out);
+   }
+
+   static void cleanup (Object esql) throws Throwable {
+      CLEANUP.invokeExact (esql);
+   }
+
+   // ad-hoc Statement execution of a complete SQL string.
+
+   static int executeQueryAndPrintResult (Object esql, String query) throws Throwable {
+      return (int) QUERY_AND_PRINT.invokeExact (esql, query);
+   }
+
+   @SuppressWarnings("unchecked")
+   static List<List<String>> executeQueryAndReturnResult (Object esql, String query) throws Throwable {
+      return (List<List<String>>) (List<?>) QUERY_AND_RETURN.invokeExact (esql, query);
+   }
+
+   static void executeUpdate (Object esql, String sql) throws Throwable {
+      UPDATE.invokeExact (esql, sql);
+   }
+
+   // a query template run on a prepared statement from the statement cache,
+   // with the values bound to its parameters.
+
+   static int executeQueryAndPrintResult (Object esql, String query, Object... params) throws Throwable {
+      return (int) PREPARED_QUERY_AND_PRINT.invokeExact (esql, query, params);
+   }
+
+   static int executeUpdate (Object esql, String sql, Object... params) throws Throwable {
+      return (int) PREPARED_UPDATE.invokeExact (esql, sql, params);
+   }
+
+   // the menu operations, which run through the prepared statement cache
+   // and the availability, catalog and regular customer caches.
+
+   static int viewHotels (Object esql, double latitude, double longitude) throws Throwable {
+      return (int) VIEW_HOTELS.invokeExact (esql, latitude, longitude);
+   }
+
+   static int viewRooms (Object esql, int hotelID, Date date) throws Throwable {
+      return (int) VIEW_ROOMS.invokeExact (esql, hotelID, date);
+   }
+
+   static boolean bookRooms (Object esql, int userID, int hotelID, int roomNumber, Date date) throws Throwable {
+      return (boolean) BOOK_ROOMS.invokeExact (esql, userID, hotelID, roomNumber, date);
+   }
+
+   static int viewRecentBookingsfromCustomer (Object esql, int userID) throws Throwable {
+      return (int) RECENT_BOOKINGS.invokeExact (esql, userID);
+   }
+
+   static int viewBookingHistoryofHotel (Object esql, Date lowerBound, Date upperBound) throws Throwable {
+      return (int) BOOKING_HISTORY.invokeExact (esql, lowerBound, upperBound);
+   }
+
+   static int viewRegularCustomers (Object esql, int hotelID) throws Throwable {
+      return (int) REGULAR_CUSTOMERS.invokeExact (esql, hotelID);
+   }
+
+   static int viewRoomRepairHistory (Object esql, int managerID) throws Throwable {
+      return (int) REPAIR_HISTORY.invokeExact (esql, managerID);
+   }
+
+   private static Class<?> load (String name) {
+      try {
+         return Class.forName (name);
+      }catch (ClassNotFoundException e) {
+         throw new ExceptionInInitializerError(e);
+      }
+   }
+
+   // binds a constructor as (args) -> Object.
+   private static MethodHandle constructor (MethodType type) {
+      try {
+         MethodHandle handle = MethodHandles.publicLookup ().findConstructor (HOTEL, type);
+         return handle.asType (handle.type ().changeReturnType (Object.class));
+      }catch (ReflectiveOperationException e) {
+         throw new ExceptionInInitializerError(e);
+      }
+   }
+
+   // binds an instance method as (Object receiver, args) -> result.
+   private static MethodHandle virtual (String name, MethodType type) {
+      try {
+         MethodHandle handle = MethodHandles.publicLookup ().findVirtual (HOTEL, name, type);
+         return handle.asType (handle.type ().changeParameterType (0, Object.class));
+      }catch (ReflectiveOperationException e) {
+         throw new ExceptionInInitializerError(e);
+      }
+   }
+
+   // binds a static operation taking the Hotel instance first as (Object, args) -> result.
+   private static MethodHandle operation (String name, MethodType type) {
+      try {
+         MethodHandle handle = MethodHandles.publicLookup ().findStatic (HOTEL, name, type);
+         return handle.asType (handle.type ().changeParameterType (0, Object.class));
+      }catch (ReflectiveOperationException e) {
+         throw new ExceptionInInitializerError(e);
+      }
+   }
+
+}
@@ -0,0 +1,280 @@
+package hotel.bench;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.sql.Date;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One benchmark per Hotel query path, run against the database loaded by
+ * scripts/setup_bench_db.sh. The scale of the data is whatever that script
+ * loaded; hotel, room and user ranges are read from the database at setup.
+ *
+ * The execution parameter selects how the SQL is run: "prepared" goes
+ * through the Hotel operations, with their cached prepared statements and
+ * the availability, catalog and regular customer caches in front of them;
+ * "statement" runs the original SQL of the menu on a cached prepared
+ * statement with the values bound, bypassing those caches; "adhoc" formats
+ * the same SQL with its values inlined and runs it on a new Statement, the
+ * way the menu originally did. "statement" against "adhoc" therefore
+ * measures statement reuse alone, "prepared" against "statement" the
+ * caches and the rewritten queries of the operations.
+ *
+ * The database is chosen with -Dhotel.bench.db, -Dhotel.bench.port and
+ * -Dhotel.bench.user (defaults: $USER_DB, $PGPORT, $USER).
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class HotelBenchmark {
+
+   @Param({"prepared", "statement", "adhoc"})
+   public String execution;
+
+   // first and last day of the booking dates in the sample data.
+   private static final long FIRST_DAY = Date.valueOf ("2000-01-01").getTime ();
+   private static final long LAST_DAY = Date.valueOf ("2018-12-31").getTime ();
+   private static final long DAY = TimeUnit.DAYS.toMillis (1);
+
+   private Object esql;
+   private boolean adhoc;
+   private boolean statement;
+
+   private int[] hotelIDs;
+   private int[] managerIDs;
+   private int maxRoom;
+   private int maxUser;
+
+   @Setup(Level.Trial)
+   public void connect () throws Throwable {
+      String user = System.getenv ("USER");
+      String dbname = System.getProperty ("hotel.bench.db", user + "_DB");
+      String dbport = System.getProperty ("hotel.bench.port", System.getenv ("PGPORT"));
+      String dbuser = System.getProperty ("hotel.bench.user", user);
+
+      Class.forName ("org.postgresql.Driver");
+      this.esql = HotelApi.connect (dbname, dbport, dbuser, "");
+      // query results are produced and printed, but not to the terminal.
+      HotelApi.setOutput (this.esql, new PrintStream(new OutputStream() {
+         public void write (int b) {
+         }
+         public void write (byte[] b, int off, int len) {
+         }
+      }));
+      this.adhoc = this.execution.equals ("adhoc");
+      this.statement = this.execution.equals ("statement");
+
+      List<List<String>> hotels = HotelApi.executeQueryAndReturnResult (this.esql,
+         "SELECT hotelID, managerUserID FROM Hotel ORDER BY hotelID");
+      this.hotelIDs = new int[hotels.size ()];
+      this.managerIDs = new int[hotels.size ()];
+      for (int i = 0; i < hotels.size (); ++i) {
+         this.hotelIDs[i] = Integer.parseInt (hotels.get (i).get (0).trim ());
+         this.managerIDs[i] = Integer.parseInt (hotels.get (i).get (1).trim ());
+      }
+      this.maxRoom = Integer.parseInt (HotelApi.executeQueryAndReturnResult (this.esql,
+         "SELECT max(roomNumber) FROM Rooms").get (0).get (0).trim ());
+      this.maxUser = Integer.parseInt (HotelApi.executeQueryAndReturnResult (this.esql,
+         "SELECT max(userID) FROM Users").get (0).get (0).trim ());
+   }
+
+   @TearDown(Level.Trial)
+   public void disconnect () throws Throwable {
+      HotelApi.cleanup (this.esql);
+   }
+
+   @Benchmark
+   public int viewHotels () throws Throwable {
+      ThreadLocalRandom random = ThreadLocalRandom.current ();
+      double latitude = Math.round ((random.nextDouble () * 180 - 90) * 1e6) / 1e6;
+      double longitude = Math.round ((random.nextDouble () * 360 - 180) * 1e6) / 1e6;
+      if (this.adhoc)
+         return HotelApi.executeQueryAndPrintResult (this.esql, String.format (
+            "SELECT hotelID, hotelName, dateEstablished FROM Hotel " +
+            "WHERE calculate_distance(%f, %f, latitude, longitude) <= 30;", latitude, longitude));
+      if (this.statement)
+         return HotelApi.executeQueryAndPrintResult (this.esql,
+            "SELECT hotelID, hotelName, dateEstablished FROM Hotel " +
+            "WHERE calculate_distance(?, ?, latitude, longitude) <= 30", latitude, longitude);
+      return HotelApi.viewHotels (this.esql, latitude, longitude);
+   }
+
+   @Benchmark
+   public int viewRooms () throws Throwable {
+      int hotelID = randomHotel ();
+      Date date = randomDate ();
+      if (this.adhoc)
+         return HotelApi.executeQueryAndPrintResult (this.esql, String.format (
+            "SELECT r.roomNumber as room, r.price " +
+            "FROM Rooms r " +
+            "WHERE r.hotelID = %d AND NOT EXISTS (SELECT b.roomNumber " +
+            "FROM RoomBookings b WHERE r.roomNumber = b.roomNumber AND b.bookingDate = '%s');",
+            hotelID, date));
+      if (this.statement)
+         return HotelApi.executeQueryAndPrintResult (this.esql,
+            "SELECT r.roomNumber as room, r.price " +
+            "FROM Rooms r " +
+            "WHERE r.hotelID = ? AND NOT EXISTS (SELECT b.roomNumber " +
+            "FROM RoomBookings b WHERE r.roomNumber = b.roomNumber AND b.bookingDate = ?)",
+            hotelID, date);
+      return HotelApi.viewRooms (this.esql, hotelID, date);
+   }
+
+   // books random rooms on random dates; the bookings stay in the database,
+   // so reload it with setup_bench_db.sh before comparing runs.
+   @Benchmark
+   public boolean bookRooms () throws Throwable {
+      ThreadLocalRandom random = ThreadLocalRandom.current ();
+      int userID = 1 + random.nextInt (this.maxUser);
+      int hotelID = randomHotel ();
+      int roomNumber = 1 + random.nextInt (this.maxRoom);
+      Date date = randomDate ();
+      if (this.adhoc) {
+         int rows = HotelApi.executeQueryAndPrintResult (this.esql, String.format (
+            "SELECT H.hotelID, R.price, R.roomNumber " +
+            "FROM Rooms R, Hotel H " +
+            "WHERE H.hotelID = %d AND R.hotelID = %d AND R.roomNumber = %d AND NOT EXISTS(" +
+            "SELECT B.roomNumber " +
+            "FROM RoomBookings B " +
+            "WHERE H.hotelID = %d AND B.roomNumber = %d AND bookingDate = '%s');",
+            hotelID, hotelID, roomNumber, hotelID, roomNumber, date));
+         if (rows == 0)
+            return false;
+         HotelApi.executeUpdate (this.esql, String.format (
+            "INSERT INTO RoomBookings (customerID, hotelID, roomNumber, bookingDate) VALUES (%d, %d, %d, '%s');",
+            userID, hotelID, roomNumber, date));
+         return true;
+      }
+      if (this.statement) {
+         int rows = HotelApi.executeQueryAndPrintResult (this.esql,
+            "SELECT H.hotelID, R.price, R.roomNumber " +
+            "FROM Rooms R, Hotel H " +
+            "WHERE H.hotelID = ? AND R.hotelID = ? AND R.roomNumber = ? AND NOT EXISTS(" +
+            "SELECT B.roomNumber " +
+            "FROM RoomBookings B " +
+            "WHERE H.hotelID = ? AND B.roomNumber = ? AND bookingDate = ?)",
+            hotelID, hotelID, roomNumber, hotelID, roomNumber, date);
+         if (rows == 0)
+            return false;
+         HotelApi.executeUpdate (this.esql,
+            "INSERT INTO RoomBookings (customerID, hotelID, roomNumber, bookingDate) VALUES (?, ?, ?, ?)",
+            userID, hotelID, roomNumber, date);
+         return true;
+      }
+      return HotelApi.bookRooms (this.esql, userID, hotelID, roomNumber, date);
+   }
+
+   @Benchmark
+   public int viewRecentBookingsfromCustomer () throws Throwable {
+      int userID = 1 + ThreadLocalRandom.current ().nextInt (this.maxUser);
+      if (this.adhoc)
+         return HotelApi.executeQueryAndPrintResult (this.esql, String.format (
+            "SELECT * FROM (SELECT b.hotelID as hotel, b.roomNumber as room, b.bookingDate, r.price as billingInfo " +
+            "FROM RoomBookings b, Rooms r WHERE b.customerID = %d " +
+            "AND b.hotelID = r.hotelID AND b.roomNumber = r.roomNumber " +
+            "ORDER BY b.bookingDate LIMIT 5) as Top5 " +
+            "ORDER BY bookingDate ASC;", userID));
+      if (this.statement)
+         return HotelApi.executeQueryAndPrintResult (this.esql,
+            "SELECT * FROM (SELECT b.hotelID as hotel, b.roomNumber as room, b.bookingDate, r.price as billingInfo " +
+            "FROM RoomBookings b, Rooms r WHERE b.customerID = ? " +
+            "AND b.hotelID = r.hotelID AND b.roomNumber = r.roomNumber " +
+            "ORDER BY b.bookingDate LIMIT 5) as Top5 " +
+            "ORDER BY bookingDate ASC", userID);
+      return HotelApi.viewRecentBookingsfromCustomer (this.esql, userID);
+   }
+
+   // a one month window at a random point of the booking history.
+   @Benchmark
+   public int viewBookingHistoryofHotel () throws Throwable {
+      Date lowerBound = randomDate ();
+      Date upperBound = new Date(lowerBound.getTime () + 30 * DAY);
+      if (this.adhoc)
+         return HotelApi.executeQueryAndPrintResult (this.esql, String.format (
+            "SELECT B.bookingID, U.name, B.hotelID, B.roomNumber, B.bookingDate " +
+            "FROM RoomBookings B, Users U, Hotel H " +
+            "WHERE H.hotelID = B.hotelID AND B.customerID = U.userID " +
+            "AND B.bookingDate >= '%s' AND B.bookingDate <= '%s' " +
+            "ORDER BY B.bookingDate ASC;", lowerBound, upperBound));
+      if (this.statement)
+         return HotelApi.executeQueryAndPrintResult (this.esql,
+            "SELECT B.bookingID, U.name, B.hotelID, B.roomNumber, B.bookingDate " +
+            "FROM RoomBookings B, Users U, Hotel H " +
+            "WHERE H.hotelID = B.hotelID AND B.customerID = U.userID " +
+            "AND B.bookingDate >= ? AND B.bookingDate <= ? " +
+            "ORDER BY B.bookingDate ASC", lowerBound, upperBound);
+      return HotelApi.viewBookingHistoryofHotel (this.esql, lowerBound, upperBound);
+   }
+
+   @Benchmark
+   public int viewRegularCustomers () throws Throwable {
+      int hotelID = randomHotel ();
+      if (this.adhoc)
+         return HotelApi.executeQueryAndPrintResult (this.esql, String.format (
+            "SELECT U.name, COUNT(*) as NumBookings " +
+            "FROM Users U, RoomBookings B " +
+            "WHERE U.userID = B.customerID AND B.hotelID = %d " +
+            "GROUP BY U.name " +
+            "ORDER BY NumBookings DESC " +
+            "LIMIT 5", hotelID));
+      if (this.statement)
+         return HotelApi.executeQueryAndPrintResult (this.esql,
+            "SELECT U.name, COUNT(*) as NumBookings " +
+            "FROM Users U, RoomBookings B " +
+            "WHERE U.userID = B.customerID AND B.hotelID = ? " +
+            "GROUP BY U.name " +
+            "ORDER BY NumBookings DESC " +
+            "LIMIT 5", hotelID);
+      return HotelApi.viewRegularCustomers (this.esql, hotelID);
+   }
+
+   @Benchmark
+   public int viewRoomRepairHistory () throws Throwable {
+      int managerID = this.managerIDs[ThreadLocalRandom.current ().nextInt (this.managerIDs.length)];
+      if (this.adhoc)
+         return HotelApi.executeQueryAndPrintResult (this.esql, String.format (
+            "SELECT a.companyID as company, " +
+            "a.hotelID as hotel, a.roomNumber as room, a.repairDate " +
+            "FROM roomRepairs a, roomRepairRequests b " +
+            "WHERE b.managerID = %d " +
+            "AND  a.repairID = b.repairID;", managerID));
+      if (this.statement)
+         return HotelApi.executeQueryAndPrintResult (this.esql,
+            "SELECT a.companyID as company, " +
+            "a.hotelID as hotel, a.roomNumber as room, a.repairDate " +
+            "FROM roomRepairs a, roomRepairRequests b " +
+            "WHERE b.managerID = ? " +
+            "AND  a.repairID = b.repairID", managerID);
+      return HotelApi.viewRoomRepairHistory (this.esql, managerID);
+   }
+
+   private int randomHotel () {
+      return this.hotelIDs[ThreadLocalRandom.current ().nextInt (this.hotelIDs.length)];
+   }
+
+   private Date randomDate () {
+      long days = (LAST_DAY - FIRST_DAY) / DAY;
+      return new Date(FIRST_DAY + ThreadLocalRandom.current ().nextLong (days + 1) * DAY);
+   }
+
+}
@@ -0,0 +1,15 @@
+#! /bin/bash
+# usage: source java/lib/fetch_jdbc.sh
+# Points JDBC_JAR at a driver with the COPY API for BulkLoader, which the
+# bundled pg73jdbc3.jar lacks. Unless JDBC_JAR is already set, pgjdbc is
+# downloaded next to this script on first use.
+PGJDBC_VERSION=${PGJDBC_VERSION:-42.7.3}
+if [ -z "$JDBC_JAR" ]; then
+    JDBC_JAR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )/postgresql-$PGJDBC_VERSION.jar"
+    if [ ! -f "$JDBC_JAR" ]; then
+        curl -fsSL -o "$JDBC_JAR.part" \
+            https://repo1.maven.org/maven2/org/postgresql/postgresql/$PGJDBC_VERSION/postgresql-$PGJDBC_VERSION.jar \
+            && mv "$JDBC_JAR.part" "$JDBC_JAR" \
+            || { rm -f "$JDBC_JAR.part"; echo "could not download pgjdbc $PGJDBC_VERSION; set JDBC_JAR" >&2; }
+    fi
+fi
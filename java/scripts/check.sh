@@ -0,0 +1,17 @@
+#!/bin/bash
+# Compiles the program with the checks in ../test and runs every *Check
+# class. No database is needed; the exit status is that of the first
+# failing check.
+DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
+
+export JAVA_HOME=/usr/csshare/pkgs/jdk1.7.0_17
+export PATH=$JAVA_HOME/bin:$PATH
+
+CLASSES=$(mktemp -d)
+trap 'rm -rf $CLASSES' EXIT
+
+javac -d $CLASSES -cp $DIR/../lib/pg73jdbc3.jar $DIR/../src/*.java $DIR/../test/*.java || exit 1
+
+for check in $DIR/../test/*Check.java; do
+   java -cp $CLASSES:$DIR/../lib/pg73jdbc3.jar $(basename $check .java) || exit 1
+done
@@ -0,0 +1,393 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * This class keeps, for each (hotelID, date), a bitmap of the room numbers
+ * booked on that date, so that together with the rooms and prices of the
+ * room catalog viewRooms and bookRooms can tell whether a room is free
+ * without a database round trip. A stay of several nights is answered from
+ * the union of the bitmaps of its nights.
+ *
+ * Entries are loaded from RoomBookings on first use and updated by every
+ * booking made through this process. Only dates in the booking window (from
+ * pastDays before today to futureDays after it) are cached; entries for dates
+ * that fall out of the window, entries older than the time to live and the
+ * least recently used entries beyond the capacity are dropped. Bookings made
+ * or deleted by other processes are recorded in RoomChanges by triggers on
+ * RoomBookings, and the room catalog listener invalidates their dates within
+ * its poll interval. The time to live (hotel.availability.ttlMs, default 60
+ * seconds) bounds how stale an entry can get when that listener is disabled
+ * or disconnected. Entries are also invalidated after the database refused a
+ * booking. Bookings made through this process while an entry is being loaded
+ * are kept and applied to it; an entry invalidated while it was loading is
+ * returned to its caller but not kept.
+ *
+ */
+public class AvailabilityCache {
+
+   private static final long DAY = 24L * 60 * 60 * 1000;
+
+   // the Hotel instance entries are loaded through.
+   private final Hotel _esql;
+
+   private final int _capacity;
+   private final long _ttl;
+   private final int _pastDays;
+   private final int _futureDays;
+
+   // booked rooms by (hotelID, day), least recently used first.
+   private final LinkedHashMap<Long, DateEntry> _booked;
+
+   // rooms marked booked, by (hotelID, day), while that entry was loading.
+   private final Map<Long, BitSet> _pending = new HashMap<Long, BitSet>();
+
+   // first day of the window when entries were last swept.
+   private long _sweptFrom = Long.MIN_VALUE;
+
+   // booked room numbers of one hotel on one day.
+   private static final class DateEntry {
+      final BitSet booked;
+      final long day;
+      final long loadedAt;
+
+      DateEntry (BitSet booked, long day) {
+         this.booked = booked;
+         this.day = day;
+         this.loadedAt = System.currentTimeMillis();
+      }
+   }//end DateEntry
+
+   /**
+    * Creates a new availability cache
+    *
+    * @param esql the Hotel instance entries are loaded through
+    * @param capacity the maximum number of (hotelID, date) entries kept
+    * @param ttl milliseconds after which an entry is reloaded
+    * @param pastDays how many days before today are cached
+    * @param futureDays how many days after today are cached
+    */
+   public AvailabilityCache (Hotel esql, int capacity, long ttl, int pastDays, int futureDays) {
+      this._esql = esql;
+      this._capacity = capacity;
+      this._ttl = ttl;
+      this._pastDays = pastDays;
+      this._futureDays = futureDays;
+      this._booked = new LinkedHashMap<Long, DateEntry>(256, 0.75f, true);
+   }//end AvailabilityCache
+
+   /**
+    * Tells whether a date is inside the booking window and thus cached.
+    *
+    * @param date the booking date
+    * @return true when lookups for this date are answered from memory
+    */
+   public boolean covers (Date date) {
+      if (this._capacity <= 0)
+         return false;
+      long today = dayOf (System.currentTimeMillis());
+      long day = dayOf (date.getTime());
+      return day >= today - this._pastDays && day <= today + this._futureDays;
+   }//end covers
+
+   /**
+    * Tells whether every night of a stay is inside the booking window.
+    *
+    * @param checkIn the first night
+    * @param checkOut the day after the last night
+    * @return true when lookups for this stay are answered from memory
+    */
+   public boolean covers (Date checkIn, Date checkOut) {
+      if (this._capacity <= 0)
+         return false;
+      long today = dayOf (System.currentTimeMillis());
+      long first = dayOf (checkIn.getTime());
+      long last = dayOf (checkOut.getTime()) - 1;
+      return first >= today - this._pastDays && last <= today + this._futureDays;
+   }//end covers
+
+   /**
+    * Returns the rooms of a hotel that are free on a date. Only call for
+    * covered dates.
+    *
+    * @param hotelID the hotel
+    * @param date the booking date
+    * @return the free room numbers in ascending order and their prices
+    * @throws java.sql.SQLException when an entry cannot be loaded
+    */
+   public IntColumn[] availableRooms (int hotelID, Date date) throws SQLException {
+      RoomCatalog.HotelRooms rooms = this._esql.getRoomCatalog ().hotel (hotelID);
+      DateEntry entry = entry (hotelID, date);
+      synchronized (entry.booked) {
+         return freeRooms (rooms, entry.booked);
+      }
+   }//end availableRooms
+
+   /**
+    * Returns the rooms of a hotel that are free every night of a stay.
+    * Only call for covered stays.
+    *
+    * @param hotelID the hotel
+    * @param checkIn the first night
+    * @param checkOut the day after the last night
+    * @return the free room numbers in ascending order and their prices
+    * @throws java.sql.SQLException when an entry cannot be loaded
+    */
+   public IntColumn[] availableRooms (int hotelID, Date checkIn, Date checkOut) throws SQLException {
+      RoomCatalog.HotelRooms rooms = this._esql.getRoomCatalog ().hotel (hotelID);
+      BitSet booked = new BitSet();
+      for (int night = 0; night < nights (checkIn, checkOut); ++night) {
+         DateEntry entry = entry (hotelID, Hotel.addDays (checkIn, night));
+         synchronized (entry.booked) {
+            booked.or (entry.booked);
+         }
+      }//end for
+      return freeRooms (rooms, booked);
+   }//end availableRooms
+
+   /**
+    * Outputs the rooms of a hotel that are free on a date, in the same
+    * format as executeQueryAndPrintResult. Only call for covered dates.
+    *
+    * @param hotelID the hotel
+    * @param date the booking date
+    * @param out the stream to print to
+    * @return the number of free rooms
+    * @throws java.sql.SQLException when an entry cannot be loaded
+    */
+   public int printAvailableRooms (int hotelID, Date date, java.io.PrintStream out) throws SQLException {
+      return print (availableRooms (hotelID, date), out);
+   }//end printAvailableRooms
+
+   /**
+    * Outputs the rooms of a hotel that are free every night of a stay, in
+    * the same format as executeQueryAndPrintResult. Only call for covered
+    * stays.
+    *
+    * @param hotelID the hotel
+    * @param checkIn the first night
+    * @param checkOut the day after the last night
+    * @param out the stream to print to
+    * @return the number of free rooms
+    * @throws java.sql.SQLException when an entry cannot be loaded
+    */
+   public int printAvailableRooms (int hotelID, Date checkIn, Date checkOut, java.io.PrintStream out) throws SQLException {
+      return print (availableRooms (hotelID, checkIn, checkOut), out);
+   }//end printAvailableRooms
+
+   private static int print (IntColumn[] free, java.io.PrintStream out) {
+      int count = free[0].size ();
+      if (count == 0)
+         return 0;
+      StringBuilder rows = new StringBuilder("room\tprice\t\n");
+      for (int i = 0; i < count; ++i)
+         rows.append (free[0].get (i)).append ('\t').append (free[1].get (i)).append ("\t\n");
+      out.print (rows);
+      return count;
+   }//end print
+
+   /**
+    * Tells whether a room exists and is not booked on a date. Only call for
+    * covered dates.
+    *
+    * @param hotelID the hotel
+    * @param roomNumber the room
+    * @param date the booking date
+    * @return true when the room is free as far as this process knows
+    * @throws java.sql.SQLException when an entry cannot be loaded
+    */
+   public boolean isAvailable (int hotelID, int roomNumber, Date date) throws SQLException {
+      if (roomNumber < 0 || !this._esql.getRoomCatalog ().exists (hotelID, roomNumber))
+         return false;
+      DateEntry entry = entry (hotelID, date);
+      synchronized (entry.booked) {
+         return !entry.booked.get (roomNumber);
+      }
+   }//end isAvailable
+
+   /**
+    * Tells whether a room exists and is not booked on any night of a stay.
+    * Only call for covered stays.
+    *
+    * @param hotelID the hotel
+    * @param roomNumber the room
+    * @param checkIn the first night
+    * @param checkOut the day after the last night
+    * @return true when the room is free as far as this process knows
+    * @throws java.sql.SQLException when an entry cannot be loaded
+    */
+   public boolean isAvailable (int hotelID, int roomNumber, Date checkIn, Date checkOut) throws SQLException {
+      if (roomNumber < 0 || !this._esql.getRoomCatalog ().exists (hotelID, roomNumber))
+         return false;
+      for (int night = 0; night < nights (checkIn, checkOut); ++night) {
+         DateEntry entry = entry (hotelID, Hotel.addDays (checkIn, night));
+         synchronized (entry.booked) {
+            if (entry.booked.get (roomNumber))
+               return false;
+         }
+      }//end for
+      return true;
+   }//end isAvailable
+
+   /**
+    * Records a booking made by this process.
+    *
+    * @param hotelID the hotel
+    * @param roomNumber the booked room
+    * @param date the booking date
+    */
+   public void markBooked (int hotelID, int roomNumber, Date date) {
+      DateEntry entry;
+      synchronized (this) {
+         Long key = key (hotelID, dayOf (date.getTime()));
+         entry = this._booked.get (key);
+         BitSet pending = this._pending.get (key);
+         if (pending != null)
+            pending.set (roomNumber);
+      }
+      if (entry != null) {
+         synchronized (entry.booked) {
+            entry.booked.set (roomNumber);
+         }
+      }//end if
+   }//end markBooked
+
+   /**
+    * Drops the entry of one hotel and date, after another process booked
+    * on it or the database disagreed with it.
+    *
+    * @param hotelID the hotel
+    * @param date the booking date
+    */
+   public synchronized void invalidate (int hotelID, Date date) {
+      Long key = key (hotelID, dayOf (date.getTime()));
+      this._booked.remove (key);
+      this._pending.remove (key);
+   }//end invalidate
+
+   /**
+    * Drops every entry.
+    */
+   public synchronized void invalidateAll () {
+      this._booked.clear ();
+      this._pending.clear ();
+   }//end invalidateAll
+
+   /**
+    * @return the number of cached (hotelID, date) entries
+    */
+   public synchronized int size () {
+      return this._booked.size ();
+   }//end size
+
+   // the rooms of a hotel that are not in booked, with their prices.
+   private static IntColumn[] freeRooms (RoomCatalog.HotelRooms rooms, BitSet booked) {
+      IntColumn roomNumbers = new IntColumn();
+      IntColumn prices = new IntColumn();
+      for (int i = 0; i < rooms.size (); ++i) {
+         if (booked.get (rooms.roomNumber (i)))
+            continue;
+         roomNumbers.add (rooms.roomNumber (i));
+         prices.add (rooms.price (i));
+      }//end for
+      return new IntColumn[] { roomNumbers, prices };
+   }//end freeRooms
+
+   // returns the booked rooms of a hotel on a date, loading them if needed.
+   private DateEntry entry (int hotelID, Date date) throws SQLException {
+      long day = dayOf (date.getTime());
+      Long key = key (hotelID, day);
+      DateEntry stale;
+      BitSet pending;
+      synchronized (this) {
+         stale = this._booked.get (key);
+         if (stale != null && System.currentTimeMillis() - stale.loadedAt < this._ttl)
+            return stale;
+         // bookings recorded from now on may be missing from the query below.
+         pending = this._pending.get (key);
+         if (pending == null) {
+            pending = new BitSet();
+            this._pending.put (key, pending);
+         }//end if
+      }
+
+      BitSet booked = new BitSet();
+      // when this fails the pending rooms stay for the next load, which
+      // may be running on another thread already.
+      IntColumn rows = this._esql.executeQueryForInts (Queries.BOOKED_ROOMS, hotelID, date)[0];
+      for (int i = 0; i < rows.size (); ++i)
+         booked.set (rows.get (i));
+      DateEntry entry = new DateEntry(booked, day);
+
+      synchronized (this) {
+         // another thread loading the same entry installed it first; its
+         // entry already has the bookings recorded since.
+         DateEntry current = this._booked.get (key);
+         if (current != null && current != stale)
+            return current;
+         booked.or (pending);
+         // invalidated since the query started, which may have missed the
+         // change: good for this caller, but not kept.
+         if (this._pending.get (key) != pending)
+            return entry;
+         this._pending.remove (key);
+         this._booked.put (key, entry);
+         evict ();
+      }
+      return entry;
+   }//end entry
+
+   // drops entries whose date left the window once a day, then the least
+   // recently used ones until the cache fits its capacity. Called with the
+   // lock held.
+   private void evict () {
+      long first = dayOf (System.currentTimeMillis()) - this._pastDays;
+      Iterator<Map.Entry<Long, DateEntry>> it;
+      if (first != this._sweptFrom) {
+         it = this._booked.entrySet ().iterator ();
+         while (it.hasNext ()) {
+            if (it.next ().getValue ().day < first)
+               it.remove ();
+         }//end while
+         this._sweptFrom = first;
+      }//end if
+      it = this._booked.entrySet ().iterator ();
+      while (this._booked.size () > this._capacity && it.hasNext ()) {
+         it.next ();
+         it.remove ();
+      }//end while
+   }//end evict
+
+   private static int nights (Date checkIn, Date checkOut) {
+      return (int) (dayOf (checkOut.getTime()) - dayOf (checkIn.getTime()));
+   }//end nights
+
+   private static Long key (int hotelID, long day) {
+      return Long.valueOf (((long) hotelID << 32) | (day & 0xffffffffL));
+   }//end key
+
+   // days since 1970-01-01 in the local time zone, which java.sql.Date uses.
+   private static long dayOf (long millis) {
+      long local = millis + TimeZone.getDefault ().getOffset (millis);
+      return local >= 0 ? local / DAY : (local - DAY + 1) / DAY;
+   }//end dayOf
+
+}//end AvailabilityCache
@@ -0,0 +1,336 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class runs a workload file through the Hotel operations without any
+ * prompts, on a configurable number of worker threads, and reports the
+ * throughput and the latency of every operation at the end. Latencies are
+ * counted in a LatencyHistogram per operation, so memory stays constant
+ * however long the workload runs.
+ *
+ * Every line of the workload holds one operation followed by its arguments,
+ * separated by blanks. Dates are given as MM/DD/YYYY. Blank lines and lines
+ * starting with '#' are skipped.
+ *
+ *    createUser <name> <password>
+ *    login <user> <password>
+ *    viewHotels <latitude> <longitude>
+ *    viewRooms <hotel> <date>
+ *    book <user> <hotel> <room> <date>
+ *    recentBookings <user>
+ *    updateRoom <manager> <hotel> <room> <price> <imageURL>
+ *    updateRooms <manager> <hotel> <price> <imageURL> <room> [<room> ...]
+ *    recentUpdates <manager>
+ *    bookingHistory <manager> <from date> <to date>
+ *    regularCustomers <manager> <hotel>
+ *    repair <manager> <hotel> <room> <company>
+ *    repairs <manager> <hotel> <company> <room> [<room> ...]
+ *    repairHistory <manager>
+ *
+ * Query results are discarded unless the hotel.batch.output system property
+ * names a file to print them to.
+ *
+ */
+public class BatchRunner {
+
+   // the Hotel instance shared by all workers.
+   private final Hotel _esql;
+
+   // the workload, read line by line by all workers.
+   private final BufferedReader _workload;
+
+   // latencies recorded per operation name.
+   private final ConcurrentMap<String, OperationStats> _stats = new ConcurrentHashMap<String, OperationStats>();
+
+   /**
+    * Runs a workload file and prints the report to standard out.
+    *
+    * @param esql the Hotel instance to run the operations through
+    * @param workloadFile the path of the workload file
+    * @param threads the number of worker threads
+    * @throws java.io.IOException when the workload file cannot be read
+    * @throws java.lang.InterruptedException when interrupted while waiting for the workers
+    */
+   public static void run (Hotel esql, String workloadFile, int threads) throws IOException, InterruptedException {
+      String outputFile = System.getProperty("hotel.batch.output");
+      PrintStream out = outputFile == null
+         ? new PrintStream(new OutputStream() {
+              public void write (int b) {
+              }
+              public void write (byte[] b, int off, int len) {
+              }
+           })
+         : new PrintStream(new BufferedOutputStream(new FileOutputStream(outputFile)));
+      esql.setOutput (out);
+
+      BufferedReader workload = new BufferedReader(new FileReader(workloadFile));
+      try {
+         new BatchRunner(esql, workload).run (Math.max(1, threads));
+      }finally {
+         workload.close ();
+         out.close ();
+         esql.setOutput (System.out);
+      }//end try
+   }//end run
+
+   private BatchRunner (Hotel esql, BufferedReader workload) {
+      this._esql = esql;
+      this._workload = workload;
+   }//end BatchRunner
+
+   // starts the workers, waits for the workload to drain and prints the report.
+   private void run (int threads) throws InterruptedException {
+      System.out.println("Running workload on " + threads + " thread(s)...");
+      List<Thread> workers = new ArrayList<Thread>();
+      long start = System.nanoTime();
+      for (int i = 0; i < threads; ++i) {
+         Thread worker = new Thread(new Runnable() {
+            public void run () {
+               String line;
+               while ((line = nextLine ()) != null)
+                  execute (line);
+            }
+         }, "batch-" + i);
+         worker.start ();
+         workers.add (worker);
+      }//end for
+      for (Thread worker : workers)
+         worker.join ();
+      long elapsed = System.nanoTime() - start;
+      report (elapsed);
+   }//end run
+
+   // returns the next operation of the workload, or null at its end.
+   private String nextLine () {
+      synchronized (this._workload) {
+         try {
+            String line;
+            while ((line = this._workload.readLine ()) != null) {
+               line = line.trim ();
+               if (line.length () > 0 && !line.startsWith ("#"))
+                  return line;
+            }//end while
+         }catch (IOException e) {
+            System.err.println (e.getMessage ());
+         }//end try
+         return null;
+      }
+   }//end nextLine
+
+   // runs one operation and records its latency and outcome.
+   private void execute (String line) {
+      String[] args = line.split ("\\s+");
+      String op = args[0];
+      long start = System.nanoTime();
+      int outcome;
+      try {
+         outcome = dispatch (op, args) ? OperationStats.OK : OperationStats.REJECTED;
+      }catch (Exception e) {
+         outcome = OperationStats.FAILED;
+         System.err.println (op + ": " + e.getMessage ());
+      }//end try
+      stats (op).record (System.nanoTime() - start, outcome);
+   }//end execute
+
+   /*
+    * Runs one operation with the same checks as the menu.
+    * @return false if the operation was refused
+    **/
+   private boolean dispatch (String op, String[] args) throws Exception {
+      Hotel esql = this._esql;
+      if (op.equals ("createUser")) {
+         expect (args, 2);
+         Hotel.createUser (esql, args[1], args[2]);
+         return true;
+      }else if (op.equals ("login")) {
+         expect (args, 2);
+         return Hotel.checkCredentials (esql, Integer.parseInt (args[1]), args[2]);
+      }else if (op.equals ("viewHotels")) {
+         expect (args, 2);
+         Hotel.viewHotels (esql, Double.parseDouble (args[1]), Double.parseDouble (args[2]));
+         return true;
+      }else if (op.equals ("viewRooms")) {
+         expect (args, 2);
+         Hotel.viewRooms (esql, Integer.parseInt (args[1]), Hotel.parseDate (args[2]));
+         return true;
+      }else if (op.equals ("book")) {
+         expect (args, 4);
+         return Hotel.bookRooms (esql, Integer.parseInt (args[1]), Integer.parseInt (args[2]),
+                                 Integer.parseInt (args[3]), Hotel.parseDate (args[4]));
+      }else if (op.equals ("recentBookings")) {
+         expect (args, 1);
+         Hotel.viewRecentBookingsfromCustomer (esql, Integer.parseInt (args[1]));
+         return true;
+      }else if (op.equals ("updateRoom")) {
+         expect (args, 5);
+         int managerID = Integer.parseInt (args[1]);
+         int hotelID = Integer.parseInt (args[2]);
+         int roomNumber = Integer.parseInt (args[3]);
+         if (!Hotel.canManageRoom (esql, managerID, hotelID, roomNumber))
+            return false;
+         Hotel.updateRoomInfo (esql, managerID, hotelID, roomNumber, Integer.parseInt (args[4]), args[5]);
+         return true;
+      }else if (op.equals ("updateRooms")) {
+         if (args.length < 6)
+            throw new IllegalArgumentException("expected at least 5 arguments, got " + (args.length - 1));
+         int managerID = Integer.parseInt (args[1]);
+         int hotelID = Integer.parseInt (args[2]);
+         if (!Hotel.canManageHotel (esql, managerID, hotelID))
+            return false;
+         int price = Integer.parseInt (args[3]);
+         List<RoomUpdate> updates = new ArrayList<RoomUpdate>(args.length - 5);
+         for (int i = 5; i < args.length; ++i)
+            updates.add (new RoomUpdate(hotelID, Integer.parseInt (args[i]), price, args[4]));
+         Hotel.updateRooms (esql, managerID, updates);
+         return true;
+      }else if (op.equals ("recentUpdates")) {
+         expect (args, 1);
+         int managerID = Integer.parseInt (args[1]);
+         if (!Hotel.isManager (esql, managerID))
+            return false;
+         Hotel.viewRecentUpdates (esql, managerID);
+         return true;
+      }else if (op.equals ("bookingHistory")) {
+         expect (args, 3);
+         if (!Hotel.isManager (esql, Integer.parseInt (args[1])))
+            return false;
+         Hotel.viewBookingHistoryofHotel (esql, Hotel.parseDate (args[2]), Hotel.parseDate (args[3]));
+         return true;
+      }else if (op.equals ("regularCustomers")) {
+         expect (args, 2);
+         int managerID = Integer.parseInt (args[1]);
+         int hotelID = Integer.parseInt (args[2]);
+         if (!Hotel.canManageHotel (esql, managerID, hotelID))
+            return false;
+         Hotel.viewRegularCustomers (esql, hotelID);
+         return true;
+      }else if (op.equals ("repair")) {
+         expect (args, 4);
+         int managerID = Integer.parseInt (args[1]);
+         int hotelID = Integer.parseInt (args[2]);
+         int roomNumber = Integer.parseInt (args[3]);
+         if (!Hotel.canManageRoom (esql, managerID, hotelID, roomNumber))
+            return false;
+         Hotel.placeRoomRepairRequests (esql, managerID, hotelID, roomNumber, Integer.parseInt (args[4]));
+         return true;
+      }else if (op.equals ("repairs")) {
+         if (args.length < 5)
+            throw new IllegalArgumentException("expected at least 4 arguments, got " + (args.length - 1));
+         int managerID = Integer.parseInt (args[1]);
+         int hotelID = Integer.parseInt (args[2]);
+         int[] roomNumbers = new int[args.length - 4];
+         for (int i = 0; i < roomNumbers.length; ++i) {
+            roomNumbers[i] = Integer.parseInt (args[i + 4]);
+            if (!Hotel.roomExists (esql, hotelID, roomNumbers[i]))
+               return false;
+         }//end for
+         if (!Hotel.canManageHotel (esql, managerID, hotelID))
+            return false;
+         Hotel.placeRoomRepairRequests (esql, managerID, hotelID, roomNumbers, Integer.parseInt (args[3]));
+         return true;
+      }else if (op.equals ("repairHistory")) {
+         expect (args, 1);
+         int managerID = Integer.parseInt (args[1]);
+         if (!Hotel.isManager (esql, managerID))
+            return false;
+         Hotel.viewRoomRepairHistory (esql, managerID);
+         return true;
+      }//end if
+      throw new IllegalArgumentException("unknown operation");
+   }//end dispatch
+
+   // checks the number of arguments given to an operation.
+   private static void expect (String[] args, int count) {
+      if (args.length != count + 1)
+         throw new IllegalArgumentException("expected " + count + " argument(s), got " + (args.length - 1));
+   }//end expect
+
+   private OperationStats stats (String op) {
+      OperationStats stats = this._stats.get (op);
+      if (stats == null) {
+         OperationStats added = new OperationStats();
+         stats = this._stats.putIfAbsent (op, added);
+         if (stats == null)
+            stats = added;
+      }//end if
+      return stats;
+   }//end stats
+
+   // prints throughput and per operation latencies.
+   private void report (long elapsedNanos) {
+      Map<String, OperationStats> sorted = new TreeMap<String, OperationStats>(this._stats);
+      long total = 0;
+      for (OperationStats stats : sorted.values ())
+         total += stats.count ();
+      double seconds = elapsedNanos / 1e9;
+      System.out.println ();
+      System.out.println (String.format("%d operation(s) in %.3f s, %.1f ops/s",
+                                        total, seconds, seconds == 0 ? 0.0 : total / seconds));
+      System.out.println (String.format("%-18s %8s %8s %8s %10s %10s %10s %10s %10s",
+                                        "operation", "count", "refused", "failed",
+                                        "mean ms", "p50 ms", "p99 ms", "p999 ms", "max ms"));
+      for (Map.Entry<String, OperationStats> entry : sorted.entrySet ())
+         System.out.println (entry.getValue ().format (entry.getKey ()));
+   }//end report
+
+   /*
+    * Latencies and outcomes of one operation. Recording takes no lock.
+    **/
+   private static class OperationStats {
+      static final int OK = 0;
+      static final int REJECTED = 1;
+      static final int FAILED = 2;
+
+      private final LatencyHistogram _latencies = new LatencyHistogram();
+      private final AtomicLong _rejected = new AtomicLong();
+      private final AtomicLong _failed = new AtomicLong();
+
+      void record (long nanos, int outcome) {
+         this._latencies.record (nanos);
+         if (outcome == REJECTED)
+            this._rejected.incrementAndGet ();
+         else if (outcome == FAILED)
+            this._failed.incrementAndGet ();
+      }//end record
+
+      long count () {
+         return this._latencies.count ();
+      }//end count
+
+      String format (String op) {
+         return String.format("%-18s %8d %8d %8d %10.3f %10.3f %10.3f %10.3f %10.3f",
+                              op, count (), this._rejected.get (), this._failed.get (),
+                              this._latencies.mean () / 1e6,
+                              this._latencies.percentile (0.50) / 1e6,
+                              this._latencies.percentile (0.99) / 1e6,
+                              this._latencies.percentile (0.999) / 1e6,
+                              this._latencies.max () / 1e6);
+      }//end format
+   }//end OperationStats
+
+}//end BatchRunner
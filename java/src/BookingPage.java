@@ -0,0 +1,64 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Date;
+
+/**
+ * This class marks where a page of the booking history ended: the
+ * (bookingDate, bookingID) of its last row. The next page starts right
+ * after that key, so paging costs the same at any depth (keyset
+ * pagination) instead of skipping over all earlier rows like OFFSET.
+ *
+ */
+public class BookingPage {
+
+   // the position before every booking.
+   public static final BookingPage FIRST = new BookingPage(Date.valueOf("0001-01-01"), 0, 0, true);
+
+   private final Date _lastDate;
+   private final int _lastBookingID;
+   private final int _rows;
+   private final boolean _more;
+
+   /**
+    * Creates a page marker
+    *
+    * @param lastDate the bookingDate of the last row
+    * @param lastBookingID the bookingID of the last row
+    * @param rows the number of rows on the page
+    * @param more whether rows follow the page
+    */
+   public BookingPage (Date lastDate, int lastBookingID, int rows, boolean more) {
+      this._lastDate = lastDate;
+      this._lastBookingID = lastBookingID;
+      this._rows = rows;
+      this._more = more;
+   }//end BookingPage
+
+   public Date getLastDate () {
+      return this._lastDate;
+   }//end getLastDate
+
+   public int getLastBookingID () {
+      return this._lastBookingID;
+   }//end getLastBookingID
+
+   public int getRows () {
+      return this._rows;
+   }//end getRows
+
+   public boolean hasMore () {
+      return this._more;
+   }//end hasMore
+
+}//end BookingPage
@@ -0,0 +1,373 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * This class books rooms in groups (group commit). Concurrent bookings
+ * are queued and a flusher thread sends those that arrive within a short
+ * window, up to a maximum group size, as one multi-row insert, so that
+ * they share one round trip and one commit instead of paying for a
+ * transaction each.
+ *
+ * Each caller gets a future that completes with the outcome of its own
+ * booking. The first request for a room and date in a group goes to the
+ * database and later ones in the same group are answered TAKEN; the
+ * unique constraint settles races with other groups and processes. When
+ * a group fails as a whole its bookings are retried one by one, so that
+ * each caller sees its own error.
+ *
+ * A longer window and a larger group raise throughput under load at the
+ * cost of up to one window of extra latency per booking.
+ *
+ */
+public class BookingQueue {
+
+   private final Hotel _esql;
+   private final long _windowNanos;
+   private final int _maxBatch;
+
+   private final BlockingQueue<Booking> _queue = new LinkedBlockingQueue<Booking>();
+   private final List<Thread> _flushers = new ArrayList<Thread>();
+   private volatile boolean _closed = false;
+
+   // one queued booking and the future of its outcome.
+   static final class Booking implements Future<BookingResult> {
+      final int userID;
+      final int hotelID;
+      final int roomNumber;
+      final Date date;
+
+      private final CountDownLatch _done = new CountDownLatch(1);
+      private BookingResult _result;
+      private SQLException _error;
+
+      Booking (int userID, int hotelID, int roomNumber, Date date) {
+         this.userID = userID;
+         this.hotelID = hotelID;
+         this.roomNumber = roomNumber;
+         this.date = date;
+      }
+
+      void complete (BookingResult result) {
+         this._result = result;
+         this._done.countDown ();
+      }
+
+      void fail (SQLException error) {
+         this._error = error;
+         this._done.countDown ();
+      }
+
+      public boolean cancel (boolean mayInterruptIfRunning) {
+         return false;
+      }
+
+      public boolean isCancelled () {
+         return false;
+      }
+
+      public boolean isDone () {
+         return this._done.getCount () == 0;
+      }
+
+      public BookingResult get () throws InterruptedException, ExecutionException {
+         this._done.await ();
+         return outcome ();
+      }
+
+      public BookingResult get (long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+         if (!this._done.await (timeout, unit))
+            throw new TimeoutException();
+         return outcome ();
+      }
+
+      private BookingResult outcome () throws ExecutionException {
+         if (this._error != null)
+            throw new ExecutionException(this._error);
+         return this._result;
+      }
+
+      // the room and date, which a group may book only once.
+      String room () {
+         return this.hotelID + "/" + this.roomNumber + "/" + this.date;
+      }
+   }//end Booking
+
+   /**
+    * Creates a booking queue and starts its flushers
+    *
+    * @param esql the Hotel instance bookings are made through
+    * @param windowMicros how long a group waits for more bookings after its first
+    * @param maxBatch the maximum number of bookings per group
+    * @param flushers the number of groups sent at the same time
+    */
+   public BookingQueue (Hotel esql, long windowMicros, int maxBatch, int flushers) {
+      this._esql = esql;
+      this._windowNanos = TimeUnit.MICROSECONDS.toNanos (Math.max(0, windowMicros));
+      this._maxBatch = Math.max(1, maxBatch);
+      for (int i = 0; i < Math.max(1, flushers); ++i) {
+         Thread flusher = new Thread(new Runnable() {
+            public void run () {
+               drain ();
+            }
+         }, "booking-flusher-" + i);
+         flusher.setDaemon (true);
+         flusher.start ();
+         this._flushers.add (flusher);
+      }//end for
+   }//end BookingQueue
+
+   /**
+    * Queues a booking of a room for one night. A room that does not exist
+    * or that this process knows to be taken is refused at once.
+    *
+    * @param userID the customer
+    * @param hotelID the hotel
+    * @param roomNumber the room
+    * @param date the booking date
+    * @return the future outcome of the booking
+    * @throws java.sql.SQLException when the queue is closed or the
+    *         availability cache cannot be loaded
+    */
+   public Future<BookingResult> submit (int userID, int hotelID, int roomNumber, Date date) throws SQLException {
+      if (this._closed)
+         throw new SQLException("Booking queue is closed");
+      Booking booking = new Booking(userID, hotelID, roomNumber, date);
+      AvailabilityCache availability = this._esql.getAvailability ();
+      if (!this._esql.getRoomCatalog ().exists (hotelID, roomNumber))
+         booking.complete (BookingResult.NO_SUCH_ROOM);
+      else if (availability.covers (date) && !availability.isAvailable (hotelID, roomNumber, date))
+         booking.complete (BookingResult.TAKEN);
+      else
+         this._queue.add (booking);
+      return booking;
+   }//end submit
+
+   /**
+    * Books a room for one night and waits for the outcome.
+    *
+    * @param userID the customer
+    * @param hotelID the hotel
+    * @param roomNumber the room
+    * @param date the booking date
+    * @return the outcome of the booking
+    * @throws java.sql.SQLException when the booking failed
+    */
+   public BookingResult book (int userID, int hotelID, int roomNumber, Date date) throws SQLException {
+      Future<BookingResult> outcome = submit (userID, hotelID, roomNumber, date);
+      try {
+         return outcome.get ();
+      }catch (InterruptedException e) {
+         Thread.currentThread ().interrupt ();
+         throw new SQLException("Interrupted while waiting for a booking");
+      }catch (ExecutionException e) {
+         throw (SQLException) e.getCause ();
+      }//end try
+   }//end book
+
+   /**
+    * Wraps an outcome that is already known, such as that of a booking
+    * made without the queue.
+    *
+    * @param result the outcome
+    * @return a future completed with the outcome
+    */
+   static Future<BookingResult> completed (BookingResult result) {
+      Booking booking = new Booking(-1, -1, -1, null);
+      booking.complete (result);
+      return booking;
+   }//end completed
+
+   /**
+    * @return the number of bookings waiting for a flusher
+    */
+   public int getQueuedCount () {
+      return this._queue.size ();
+   }//end getQueuedCount
+
+   /**
+    * Sends the queued bookings and stops the flushers.
+    */
+   public void close () {
+      this._closed = true;
+      for (Thread flusher : this._flushers)
+         flusher.interrupt ();
+      for (Thread flusher : this._flushers) {
+         try {
+            flusher.join ();
+         }catch (InterruptedException e) {
+            Thread.currentThread ().interrupt ();
+            break;
+         }//end try
+      }//end for
+      Booking booking;
+      while ((booking = this._queue.poll ()) != null)
+         booking.fail (new SQLException("Booking queue is closed"));
+   }//end close
+
+   // collects groups and sends them until the queue is closed.
+   private void drain () {
+      List<Booking> group = new ArrayList<Booking>(this._maxBatch);
+      while (!this._closed || !this._queue.isEmpty ()) {
+         try {
+            Booking first = this._queue.poll (100, TimeUnit.MILLISECONDS);
+            if (first == null)
+               continue;
+            group.add (first);
+            long deadline = System.nanoTime () + this._windowNanos;
+            while (group.size () < this._maxBatch) {
+               long wait = deadline - System.nanoTime ();
+               Booking next = wait > 0 ? this._queue.poll (wait, TimeUnit.NANOSECONDS) : this._queue.poll ();
+               if (next == null)
+                  break;
+               group.add (next);
+            }//end while
+         }catch (InterruptedException e) {
+            // closing: send what was collected, then drain the rest
+            // without waiting.
+         }//end try
+         if (!group.isEmpty ())
+            flush (group);
+         group.clear ();
+      }//end while
+   }//end drain
+
+   // books a group in one statement and completes its futures.
+   private void flush (List<Booking> group) {
+      List<Booking> sent = firstPerRoom (group);
+      List<BookingResult> results;
+      long start = System.nanoTime ();
+      boolean ok = false;
+      try {
+         results = this._esql.executeQueryAndMap (Queries.BOOK_ROOMS_IF_FREE, GROUP_OUTCOME,
+            array (sent, 0), array (sent, 1), array (sent, 2), array (sent, 3));
+         ok = true;
+      }catch (SQLException e) {
+         retryOneByOne (sent);
+         return;
+      }finally {
+         this._esql.getMetrics ().record ("bookingGroup", start, ok);
+      }//end try
+
+      Map<String, Integer> earlier = new HashMap<String, Integer>();
+      for (int i = 0; i < sent.size (); ++i) {
+         Booking booking = sent.get (i);
+         BookingResult result = results.get (i);
+         if (result == null) {
+            booking.fail (new SQLException("No such user: " + booking.userID));
+            continue;
+         }//end if
+         result = countEarlier (earlier, booking, result);
+         Hotel.settleBooking (this._esql, booking.userID, booking.hotelID, booking.roomNumber,
+                              booking.date, result);
+         booking.complete (result);
+      }//end for
+   }//end flush
+
+   /*
+    * Keeps the first booking of every room and date in a group and answers
+    * the others TAKEN
+    * @return the bookings to send, in the order of the group
+    **/
+   static List<Booking> firstPerRoom (List<Booking> group) {
+      List<Booking> sent = new ArrayList<Booking>(group.size ());
+      Set<String> rooms = new HashSet<String>();
+      for (Booking booking : group) {
+         if (rooms.add (booking.room ()))
+            sent.add (booking);
+         else
+            booking.complete (BookingResult.TAKEN);
+      }//end for
+      return sent;
+   }//end firstPerRoom
+
+   /*
+    * Bookings of one customer at one hotel in the same group all read the
+    * count from before the group; adds those booked before this one, which
+    * earlier counts by hotel and customer over the results of the group
+    * @return the result with the customer's bookings counted
+    **/
+   static BookingResult countEarlier (Map<String, Integer> earlier, Booking booking, BookingResult result) {
+      if (!result.isBooked ())
+         return result;
+      String customer = booking.hotelID + "/" + booking.userID;
+      Integer before = earlier.get (customer);
+      int extra = before == null ? 0 : before;
+      earlier.put (customer, extra + 1);
+      return BookingResult.booked (result.getBookingID (), result.getPrice (),
+                                   result.getCustomerBookings () + extra);
+   }//end countEarlier
+
+   private void retryOneByOne (List<Booking> group) {
+      for (Booking booking : group) {
+         try {
+            booking.complete (Hotel.bookRoom (this._esql, booking.userID, booking.hotelID,
+                                              booking.roomNumber, booking.date));
+         }catch (SQLException e) {
+            booking.fail (e);
+         }//end try
+      }//end for
+   }//end retryOneByOne
+
+   // one column of the group as a Postgres array literal.
+   private static String array (List<Booking> group, int column) {
+      StringBuilder out = new StringBuilder(group.size () * 8);
+      out.append ('{');
+      for (int i = 0; i < group.size (); ++i) {
+         if (i > 0)
+            out.append (',');
+         Booking booking = group.get (i);
+         switch (column) {
+            case 0: out.append (booking.userID); break;
+            case 1: out.append (booking.hotelID); break;
+            case 2: out.append (booking.roomNumber); break;
+            default: out.append (booking.date); break;
+         }//end switch
+      }//end for
+      return out.append ('}').toString ();
+   }//end array
+
+   // reads a (price, bookingID, userID, earlier bookings) row of
+   // BOOK_ROOMS_IF_FREE; null when there is no such user.
+   private static final RowMapper<BookingResult> GROUP_OUTCOME = new RowMapper<BookingResult>() {
+      public BookingResult map (ResultSet rs) throws SQLException {
+         int price = rs.getInt (1);
+         if (rs.wasNull ())
+            return BookingResult.NO_SUCH_ROOM;
+         rs.getInt (3);
+         if (rs.wasNull ())
+            return null;
+         int bookingID = rs.getInt (2);
+         if (rs.wasNull ())
+            return BookingResult.TAKEN;
+         return BookingResult.booked (bookingID, price, rs.getInt (4) + 1);
+      }
+   };
+
+}//end BookingQueue
@@ -0,0 +1,104 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+/**
+ * This class holds the outcome of a booking attempt.
+ *
+ */
+public class BookingResult {
+
+   public enum Status {
+      // the room was booked.
+      BOOKED,
+      // the room is already booked on that date.
+      TAKEN,
+      // the hotel has no such room.
+      NO_SUCH_ROOM
+   }
+
+   static final BookingResult TAKEN = new BookingResult(Status.TAKEN, -1, -1, -1, -1);
+   static final BookingResult NO_SUCH_ROOM = new BookingResult(Status.NO_SUCH_ROOM, -1, -1, -1, -1);
+
+   private final Status _status;
+   private final int _bookingID;
+   private final int _price;
+   private final int _nights;
+   private final int _customerBookings;
+
+   BookingResult (Status status, int bookingID, int price, int nights, int customerBookings) {
+      this._status = status;
+      this._bookingID = bookingID;
+      this._price = price;
+      this._nights = nights;
+      this._customerBookings = customerBookings;
+   }//end BookingResult
+
+   static BookingResult booked (int bookingID, int price, int customerBookings) {
+      return new BookingResult(Status.BOOKED, bookingID, price, 1, customerBookings);
+   }//end booked
+
+   static BookingResult stay (int firstBookingID, int price, int nights, int customerBookings) {
+      return new BookingResult(Status.BOOKED, firstBookingID, price, nights, customerBookings);
+   }//end stay
+
+   /**
+    * @return what happened to the booking
+    */
+   public Status getStatus () {
+      return this._status;
+   }//end getStatus
+
+   /**
+    * @return true when the room was booked, every night of a stay
+    */
+   public boolean isBooked () {
+      return this._status == Status.BOOKED;
+   }//end isBooked
+
+   /**
+    * @return the bookingID of a successful booking, that of its first
+    *         night for a stay, -1 otherwise
+    */
+   public int getBookingID () {
+      return this._bookingID;
+   }//end getBookingID
+
+   /**
+    * @return the price of the booked room per night, -1 when nothing was
+    *         booked
+    */
+   public int getPrice () {
+      return this._price;
+   }//end getPrice
+
+   /**
+    * @return the number of nights booked, -1 when nothing was booked
+    */
+   public int getNights () {
+      return this._nights;
+   }//end getNights
+
+   /**
+    * @return the customer's number of bookings at the hotel, this one
+    *         included (one per night), or -1 when nothing was booked
+    */
+   public int getCustomerBookings () {
+      return this._customerBookings;
+   }//end getCustomerBookings
+
+   public String toString () {
+      return this._status + (isBooked () ? " bookingID=" + this._bookingID
+         + (this._nights > 1 ? " nights=" + this._nights : "") : "");
+   }//end toString
+
+}//end BookingResult
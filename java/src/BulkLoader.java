@@ -0,0 +1,551 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.lang.reflect.InvocationTargetException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This class loads the csv files of data/, or those written by
+ * DataGenerator, into the tables of sql/src/create_tables.sql, in place of
+ * sql/src/load_data.sql.
+ *
+ * The files are read by the client and streamed to the server with
+ * COPY ... FROM STDIN, so they need not be copied into the data directory.
+ * Tables are loaded in foreign key order, those that do not refer to each
+ * other at the same time, and every file is cut at line boundaries into
+ * ranges of hotel.load.chunkBytes that are copied in parallel on their own
+ * connections. The indexes of sql/src/create_indexes.sql are dropped
+ * before the load and built again, in parallel, after it. The triggers of
+ * the loaded tables are disabled meanwhile; CustomerBookingCounts is then
+ * counted once from RoomBookings, and every sequence is set past the
+ * largest key loaded with sql/src/reset_sequences.sql. When the load fails
+ * the triggers and indexes are restored all the same, and if that fails
+ * too the statements to run by hand are printed.
+ *
+ * COPY needs a JDBC driver with the CopyManager API (8.4 and later), which
+ * the scripts download with java/lib/fetch_jdbc.sh. With an older driver,
+ * such as the bundled pg73jdbc3.jar, the loader stops unless
+ * hotel.load.allowInsert is set, in which case the rows are sent as
+ * multi-row INSERT statements instead, which is much slower.
+ *
+ * Rows must not span lines, which holds for the files of data/ and of
+ * DataGenerator. Load into empty tables.
+ *
+ * Usage: java BulkLoader <dbname> <port> <user> <csv dir> [threads]
+ *
+ */
+public class BulkLoader {
+
+   static final int THREADS = Integer.getInteger("hotel.load.threads", Runtime.getRuntime().availableProcessors());
+
+   // bytes of a csv file copied in one statement; larger files are split.
+   static final long CHUNK_BYTES = Long.getLong("hotel.load.chunkBytes", 64L * 1024 * 1024);
+
+   // whether to load with INSERT when the driver cannot COPY.
+   static final boolean ALLOW_INSERT = Boolean.getBoolean("hotel.load.allowInsert");
+
+   // rows per INSERT statement when the driver cannot COPY.
+   static final int INSERT_ROWS = Integer.getInteger("hotel.load.insertRows", 1000);
+
+   // memory of every index build.
+   static final String MAINTENANCE_WORK_MEM = System.getProperty("hotel.load.maintenanceWorkMem", "256MB");
+
+   static final String INDEX_FILE = System.getProperty("hotel.load.indexes", "sql/src/create_indexes.sql");
+   static final String SEQUENCE_FILE = System.getProperty("hotel.load.sequences", "sql/src/reset_sequences.sql");
+
+   // (table, csv file, columns in file order) by foreign key order: the
+   // tables of one level only refer to the tables of earlier levels. The
+   // header line of a file is skipped, not read for column names, which do
+   // not always match (address in company.csv is addrress in the table).
+   private static final String[][][] LEVELS = {
+      { { "Users", "users.csv", "userID, name, password, userType" },
+        { "MaintenanceCompany", "company.csv", "companyID, name, addrress" } },
+      { { "Hotel", "hotels.csv", "hotelID, hotelName, latitude, longitude, dateEstablished, managerUserID" } },
+      { { "Rooms", "rooms.csv", "hotelID, roomNumber, price, imageURL" } },
+      { { "RoomBookings", "bookings.csv", "bookingID, customerID, hotelID, roomNumber, bookingDate" },
+        { "RoomRepairs", "roomRepairs.csv", "repairID, companyID, hotelID, roomNumber, repairDate" },
+        { "RoomUpdatesLog", "roomUpdatesLog.csv", "updateNumber, managerID, hotelID, roomNumber, updatedOn" } },
+      { { "RoomRepairRequests", "roomRepairRequests.csv", "requestNumber, managerID, repairID" } }
+   };
+
+   private static final Pattern CREATE_INDEX = Pattern.compile (
+      "CREATE\\s+(?:UNIQUE\\s+)?INDEX\\s+(?:IF\\s+NOT\\s+EXISTS\\s+)?(\\w+)", Pattern.CASE_INSENSITIVE);
+
+   private final String _url;
+   private final String _user;
+   private final String _passwd;
+   private final File _dir;
+   private final ExecutorService _workers;
+
+   // whether the driver supports COPY, found on the first connection.
+   private volatile Boolean _copy;
+
+   /**
+    * Creates a new loader
+    *
+    * @param url the JDBC URL of the database
+    * @param user the user name
+    * @param passwd the password
+    * @param dir the directory holding the csv files
+    * @param threads the number of statements run at the same time
+    */
+   public BulkLoader (String url, String user, String passwd, File dir, int threads) {
+      this._url = url;
+      this._user = user;
+      this._passwd = passwd;
+      this._dir = dir;
+      this._workers = Executors.newFixedThreadPool (Math.max (1, threads));
+   }//end BulkLoader
+
+   /**
+    * The main execution method
+    *
+    * @param args the command line arguments <dbname> <port> <user> <csv dir> [threads]
+    */
+   public static void main (String[] args) throws Exception {
+      if (args.length < 4 || args.length > 5) {
+         System.err.println (
+            "Usage: " +
+            "java [-classpath <classpath>] " +
+            BulkLoader.class.getName () +
+            " <dbname> <port> <user> <csv dir> [threads]");
+         return;
+      }//end if
+      Class.forName ("org.postgresql.Driver");
+      String url = "jdbc:postgresql://localhost:" + args[1] + "/" + args[0];
+      int threads = args.length > 4 ? Integer.parseInt (args[4]) : THREADS;
+      BulkLoader loader = new BulkLoader(url, args[2], "", new File(args[3]), threads);
+      try {
+         loader.load ();
+      }finally {
+         loader.close ();
+      }//end try
+   }//end main
+
+   /**
+    * Loads every csv file, then rebuilds the indexes and sets the sequences.
+    *
+    * @throws java.sql.SQLException when a statement fails
+    * @throws java.io.IOException when a file cannot be read
+    */
+   public void load () throws SQLException, IOException {
+      long start = System.currentTimeMillis ();
+      List<String> indexes = statements (new File(INDEX_FILE));
+      List<String> tables = new ArrayList<String>();
+      for (String[][] level : LEVELS)
+         for (String[] table : level)
+            tables.add (table[0]);
+
+      // finds out whether the driver can COPY before anything is changed.
+      connect ().close ();
+      if (!this._copy && !ALLOW_INSERT)
+         throw new SQLException("The JDBC driver does not support COPY. Put one that does on the classpath, "
+                                + "such as the one java/lib/fetch_jdbc.sh downloads, or set "
+                                + "-Dhotel.load.allowInsert=true to load with INSERT.");
+
+      try {
+         Connection conn = connect ();
+         try {
+            Statement stmt = conn.createStatement ();
+            for (String index : indexes) {
+               Matcher matcher = CREATE_INDEX.matcher (index);
+               if (matcher.find ())
+                  stmt.executeUpdate ("DROP INDEX IF EXISTS " + matcher.group (1));
+            }//end for
+            for (String table : tables)
+               stmt.executeUpdate ("ALTER TABLE " + table + " DISABLE TRIGGER USER");
+            stmt.close ();
+         }finally {
+            conn.close ();
+         }//end try
+         System.out.println ("Loading with " + (this._copy ? "COPY" : "INSERT") + "...");
+
+         for (String[][] level : LEVELS) {
+            List<Callable<Long>> copies = new ArrayList<Callable<Long>>();
+            for (String[] table : level)
+               copies.addAll (ranges (table[0], table[2], new File(this._dir, table[1])));
+            long rows = 0;
+            for (long count : runAll (copies))
+               rows += count;
+            System.out.println (String.format ("%-45s %12d rows %8.1f s", describe (level), rows,
+                                               (System.currentTimeMillis () - start) / 1000.0));
+         }//end for
+      }catch (Exception e) {
+         // the rows loaded so far stay, but the triggers and indexes must
+         // not stay off with them.
+         System.err.println ("Load failed: " + e.getMessage ());
+         try {
+            restore (tables, indexes, start);
+         }catch (Exception failed) {
+            System.err.println ("Could not enable the triggers and build the indexes again: "
+                                + failed.getMessage () + "\n" + recovery (tables));
+         }//end try
+         throw e;
+      }//end try
+      try {
+         restore (tables, indexes, start);
+      }catch (Exception e) {
+         System.err.println (recovery (tables));
+         throw e;
+      }//end try
+
+      List<Callable<Long>> finish = new ArrayList<Callable<Long>>();
+      for (String sequence : statements (new File(SEQUENCE_FILE)))
+         finish.add (execute (sequence));
+      for (String table : tables)
+         finish.add (execute ("ANALYZE " + table));
+      finish.add (execute ("ANALYZE CustomerBookingCounts"));
+      runAll (finish);
+      System.out.println ("Done in " + (System.currentTimeMillis () - start) / 1000.0 + " s");
+   }//end load
+
+   // enables the triggers, counts CustomerBookingCounts from RoomBookings
+   // and builds the indexes; after a failed load too.
+   private void restore (List<String> tables, List<String> indexes, long start) throws SQLException, IOException {
+      Connection conn = connect ();
+      try {
+         Statement stmt = conn.createStatement ();
+         for (String table : tables)
+            stmt.executeUpdate ("ALTER TABLE " + table + " ENABLE TRIGGER USER");
+         // what the disabled triggers would have counted row by row.
+         stmt.executeUpdate (Queries.CLEAR_CUSTOMER_BOOKING_COUNTS);
+         stmt.executeUpdate (Queries.COUNT_CUSTOMER_BOOKINGS);
+         stmt.close ();
+      }finally {
+         conn.close ();
+      }//end try
+
+      List<Callable<Long>> builds = new ArrayList<Callable<Long>>();
+      for (String index : indexes)
+         builds.add (execute (index));
+      runAll (builds);
+      System.out.println (String.format ("%-45s %12d built %7.1f s", "indexes", builds.size (),
+                                         (System.currentTimeMillis () - start) / 1000.0));
+   }//end restore
+
+   // what to run by hand when restore() failed.
+   private static String recovery (List<String> tables) {
+      StringBuilder sql = new StringBuilder("To recover, run:\n");
+      for (String table : tables)
+         sql.append ("   ALTER TABLE ").append (table).append (" ENABLE TRIGGER USER;\n");
+      sql.append ("   ").append (Queries.CLEAR_CUSTOMER_BOOKING_COUNTS).append (";\n");
+      sql.append ("   ").append (Queries.COUNT_CUSTOMER_BOOKINGS).append (";\n");
+      sql.append ("and the statements of ").append (INDEX_FILE).append ('.');
+      return sql.toString ();
+   }//end recovery
+
+   /**
+    * Stops the worker threads.
+    */
+   public void close () {
+      this._workers.shutdownNow ();
+   }//end close
+
+   // one copy per range of a file, each starting and ending on a line
+   // boundary; the first starts after the header.
+   private List<Callable<Long>> ranges (final String table, final String columns, final File file) throws IOException {
+      List<Callable<Long>> copies = new ArrayList<Callable<Long>>();
+      RandomAccessFile raf = new RandomAccessFile(file, "r");
+      try {
+         raf.readLine ();
+         long length = raf.length ();
+         long from = raf.getFilePointer ();
+         while (from < length) {
+            long to = Math.min (length, from + CHUNK_BYTES);
+            if (to < length) {
+               raf.seek (to - 1);
+               int c;
+               while ((c = raf.read ()) >= 0 && c != '\n')
+                  ;
+               to = raf.getFilePointer ();
+            }//end if
+            final long start = from;
+            final long end = to;
+            copies.add (new Callable<Long>() {
+               public Long call () throws Exception {
+                  return copy (table, columns, file, start, end);
+               }
+            });
+            from = to;
+         }//end while
+      }finally {
+         raf.close ();
+      }//end try
+      return copies;
+   }//end ranges
+
+   // loads the rows between two offsets of a file into a table.
+   private long copy (String table, String columns, File file, long from, long to) throws SQLException, IOException {
+      Connection conn = connect ();
+      InputStream in = new Range(file, from, to);
+      try {
+         if (this._copy)
+            return copyIn (conn, "COPY " + table + " (" + columns + ") FROM STDIN WITH CSV", in);
+         return insert (conn, table, columns, in);
+      }finally {
+         in.close ();
+         conn.close ();
+      }//end try
+   }//end copy
+
+   // CopyManager.copyIn of a driver that is not on the compile classpath.
+   private static long copyIn (Connection conn, String sql, InputStream in) throws SQLException, IOException {
+      try {
+         Object copy = Class.forName ("org.postgresql.PGConnection").getMethod ("getCopyAPI").invoke (conn);
+         return (Long) copy.getClass ().getMethod ("copyIn", String.class, InputStream.class).invoke (copy, sql, in);
+      }catch (InvocationTargetException e) {
+         if (e.getCause () instanceof SQLException)
+            throw (SQLException) e.getCause ();
+         if (e.getCause () instanceof IOException)
+            throw (IOException) e.getCause ();
+         throw new SQLException("COPY failed: " + e.getCause ());
+      }catch (ReflectiveOperationException e) {
+         throw new SQLException("The JDBC driver does not support COPY: " + e);
+      }//end try
+   }//end copyIn
+
+   // loads csv rows with INSERT_ROWS rows per statement; the server casts
+   // the text values to the column types.
+   private static long insert (Connection conn, String table, String columns, InputStream in) throws SQLException, IOException {
+      int width = columns.split (",").length;
+      StringBuilder row = new StringBuilder("(");
+      for (int i = 0; i < width; ++i)
+         row.append (i == 0 ? "?" : ", ?");
+      row.append (')');
+      String prefix = "INSERT INTO " + table + " (" + columns + ") VALUES ";
+      StringBuilder sql = new StringBuilder(prefix);
+      for (int i = 0; i < INSERT_ROWS; ++i)
+         sql.append (i == 0 ? "" : ", ").append (row);
+
+      conn.setAutoCommit (false);
+      PreparedStatement batch = conn.prepareStatement (sql.toString ());
+      BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"), 1 << 16);
+      List<String[]> rows = new ArrayList<String[]>(INSERT_ROWS);
+      long count = 0;
+      try {
+         String line;
+         while ((line = reader.readLine ()) != null) {
+            if (line.trim ().isEmpty ())
+               continue;
+            rows.add (fields (line, width));
+            if (rows.size () == INSERT_ROWS) {
+               bindRows (batch, rows);
+               batch.executeUpdate ();
+               count += rows.size ();
+               rows.clear ();
+            }//end if
+         }//end while
+         if (!rows.isEmpty ()) {
+            sql.setLength (prefix.length ());
+            for (int i = 0; i < rows.size (); ++i)
+               sql.append (i == 0 ? "" : ", ").append (row);
+            PreparedStatement last = conn.prepareStatement (sql.toString ());
+            bindRows (last, rows);
+            last.executeUpdate ();
+            last.close ();
+            count += rows.size ();
+         }//end if
+         conn.commit ();
+         return count;
+      }finally {
+         batch.close ();
+      }//end try
+   }//end insert
+
+   private static void bindRows (PreparedStatement stmt, List<String[]> rows) throws SQLException {
+      int param = 1;
+      for (String[] fields : rows) {
+         for (String field : fields) {
+            if (field == null)
+               stmt.setNull (param++, Types.VARCHAR);
+            else
+               stmt.setString (param++, field);
+         }//end for
+      }//end for
+   }//end bindRows
+
+   // the fields of a csv line; unquoted empty fields are null, as with COPY.
+   private static String[] fields (String line, int width) {
+      String[] fields = new String[width];
+      StringBuilder field = new StringBuilder();
+      int n = 0;
+      boolean quoted = false;
+      boolean wasQuoted = false;
+      for (int i = 0; i <= line.length (); ++i) {
+         char c = i < line.length () ? line.charAt (i) : ',';
+         if (quoted) {
+            if (c == '"' && i + 1 < line.length () && line.charAt (i + 1) == '"') {
+               field.append ('"');
+               ++i;
+            }else if (c == '"')
+               quoted = false;
+            else
+               field.append (c);
+         }else if (c == '"') {
+            quoted = true;
+            wasQuoted = true;
+         }else if (c == ',') {
+            if (n < width)
+               fields[n++] = field.length () == 0 && !wasQuoted ? null : field.toString ();
+            field.setLength (0);
+            wasQuoted = false;
+         }else if (c != '\r')
+            field.append (c);
+      }//end for
+      return fields;
+   }//end fields
+
+   // a statement run on its own connection.
+   private Callable<Long> execute (final String sql) {
+      return new Callable<Long>() {
+         public Long call () throws SQLException {
+            Connection conn = connect ();
+            try {
+               Statement stmt = conn.createStatement ();
+               stmt.executeUpdate ("SET maintenance_work_mem = '" + MAINTENANCE_WORK_MEM + "'");
+               stmt.execute (sql);
+               stmt.close ();
+               return 0L;
+            }finally {
+               conn.close ();
+            }//end try
+         }
+      };
+   }//end execute
+
+   // runs tasks on the workers and waits for all of them.
+   private List<Long> runAll (List<Callable<Long>> tasks) throws SQLException, IOException {
+      List<Future<Long>> futures = new ArrayList<Future<Long>>();
+      for (Callable<Long> task : tasks)
+         futures.add (this._workers.submit (task));
+      List<Long> results = new ArrayList<Long>();
+      Exception failure = null;
+      for (Future<Long> future : futures) {
+         try {
+            results.add (future.get ());
+         }catch (ExecutionException e) {
+            if (failure == null)
+               failure = (Exception) e.getCause ();
+         }catch (InterruptedException e) {
+            Thread.currentThread ().interrupt ();
+            throw new IOException("Interrupted while loading", e);
+         }//end try
+      }//end for
+      if (failure instanceof SQLException)
+         throw (SQLException) failure;
+      if (failure instanceof IOException)
+         throw (IOException) failure;
+      if (failure != null)
+         throw new IOException(failure);
+      return results;
+   }//end runAll
+
+   private Connection connect () throws SQLException {
+      Connection conn = DriverManager.getConnection (this._url, this._user, this._passwd);
+      Statement stmt = conn.createStatement ();
+      // the dates of the csv files are MM/DD/YYYY.
+      stmt.executeUpdate ("SET DateStyle = 'ISO, MDY'");
+      // a chunk lost to a crash is loaded again anyway.
+      stmt.executeUpdate ("SET synchronous_commit = off");
+      stmt.close ();
+      if (this._copy == null) {
+         try {
+            Class.forName ("org.postgresql.PGConnection").getMethod ("getCopyAPI");
+            this._copy = true;
+         }catch (ReflectiveOperationException e) {
+            this._copy = false;
+         }//end try
+      }//end if
+      return conn;
+   }//end connect
+
+   // the statements of a SQL file, without comments.
+   private static List<String> statements (File file) throws IOException {
+      StringBuilder sql = new StringBuilder();
+      BufferedReader reader = new BufferedReader(new FileReader(file));
+      try {
+         String line;
+         while ((line = reader.readLine ()) != null) {
+            int comment = line.indexOf ("--");
+            sql.append (comment < 0 ? line : line.substring (0, comment)).append ('\n');
+         }//end while
+      }finally {
+         reader.close ();
+      }//end try
+      List<String> statements = new ArrayList<String>();
+      for (String statement : sql.toString ().split (";"))
+         if (!statement.trim ().isEmpty ())
+            statements.add (statement.trim ());
+      return statements;
+   }//end statements
+
+   private static String describe (String[][] level) {
+      StringBuilder names = new StringBuilder();
+      for (String[] table : level)
+         names.append (names.length () == 0 ? "" : ", ").append (table[0]);
+      return names.toString ();
+   }//end describe
+
+   // the bytes of a file from one offset up to another.
+   private static final class Range extends FilterInputStream {
+      private long _remaining;
+
+      Range (File file, long from, long to) throws IOException {
+         super(new FileInputStream(file));
+         ((FileInputStream) this.in).getChannel ().position (from);
+         this._remaining = to - from;
+      }
+
+      public int read () throws IOException {
+         if (this._remaining <= 0)
+            return -1;
+         int c = super.read ();
+         if (c >= 0)
+            --this._remaining;
+         return c;
+      }
+
+      public int read (byte[] b, int off, int len) throws IOException {
+         if (this._remaining <= 0)
+            return -1;
+         int n = super.read (b, off, (int) Math.min (len, this._remaining));
+         if (n > 0)
+            this._remaining -= n;
+         return n;
+      }
+   }//end Range
+
+}//end BulkLoader
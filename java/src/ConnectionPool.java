@@ -0,0 +1,325 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class defines a bounded pool of physical PostgreSQL connections.
+ *
+ * At most maxSize connections are handed out at once. Waiting sessions are
+ * served in arrival order, and give up with an SQLException after the borrow
+ * timeout. Connections that sat idle are validated before they are handed
+ * out again, and a background timer closes connections that stayed idle for
+ * longer than the idle timeout, down to minIdle. A connection on which a
+ * statement failed with a connection-level error is closed when it is
+ * released instead of going back to the idle connections.
+ *
+ */
+public class ConnectionPool {
+
+   // connection parameters.
+   private final String _url;
+   private final String _user;
+   private final String _passwd;
+
+   // pool limits.
+   private final int _maxSize;
+   private final int _minIdle;
+   private final long _borrowTimeout;
+   private final long _idleTimeout;
+   private final long _validationInterval;
+   private final int _cacheSize;
+
+   // one permit per connection that may be handed out; fair, so waiters are
+   // served first come first served.
+   private final Semaphore _permits;
+
+   // idle connections, most recently used first.
+   private final ArrayDeque<PooledConnection> _idle = new ArrayDeque<PooledConnection>();
+
+   // closes connections idle for too long.
+   private final Timer _evictor;
+
+   private volatile boolean _closed = false;
+
+   // metrics.
+   private final AtomicInteger _active = new AtomicInteger();
+   private final AtomicLong _borrows = new AtomicLong();
+   private final AtomicLong _waitNanos = new AtomicLong();
+   private final AtomicLong _timeouts = new AtomicLong();
+   private final AtomicLong _created = new AtomicLong();
+   private final AtomicLong _evicted = new AtomicLong();
+
+   /**
+    * Creates a new connection pool and opens minIdle connections.
+    *
+    * @param url the JDBC connection URL
+    * @param user the user name used to login to the database
+    * @param passwd the user login password
+    * @param maxSize the maximum number of open connections
+    * @param minIdle the number of idle connections kept open by eviction
+    * @param borrowTimeout milliseconds a session waits for a connection
+    * @param idleTimeout milliseconds after which an idle connection is closed
+    * @param validationInterval idle milliseconds after which a connection is
+    *        validated before it is handed out; 0 validates on every borrow
+    * @param cacheSize the prepared statement cache size of each connection
+    * @throws java.sql.SQLException when the initial connections cannot be opened
+    */
+   public ConnectionPool (String url, String user, String passwd, int maxSize, int minIdle,
+                          long borrowTimeout, long idleTimeout, long validationInterval,
+                          int cacheSize) throws SQLException {
+      this._url = url;
+      this._user = user;
+      this._passwd = passwd;
+      this._maxSize = Math.max(1, maxSize);
+      this._minIdle = Math.max(0, Math.min(minIdle, this._maxSize));
+      this._borrowTimeout = borrowTimeout;
+      this._idleTimeout = idleTimeout;
+      this._validationInterval = validationInterval;
+      this._cacheSize = cacheSize;
+      this._permits = new Semaphore(this._maxSize, true);
+
+      for (int i = 0; i < this._minIdle; ++i)
+         this._idle.addLast (open ());
+
+      this._evictor = new Timer("ConnectionPool-evictor", true);
+      if (idleTimeout > 0) {
+         long period = Math.max(1000L, idleTimeout / 2);
+         this._evictor.schedule (new TimerTask() {
+            public void run () {
+               evictIdle ();
+            }
+         }, period, period);
+      }//end if
+   }//end ConnectionPool
+
+   /**
+    * Takes a connection out of the pool, waiting up to the borrow timeout
+    * when all connections are in use. Every call must be paired with
+    * release().
+    *
+    * @return a validated connection
+    * @throws java.sql.SQLException when no connection became available in
+    *         time or a new connection cannot be opened
+    */
+   public PooledConnection borrow () throws SQLException {
+      if (this._closed)
+         throw new SQLException("Connection pool is closed");
+
+      long start = System.nanoTime();
+      boolean acquired;
+      try {
+         acquired = this._permits.tryAcquire (this._borrowTimeout, TimeUnit.MILLISECONDS);
+      }catch (InterruptedException e) {
+         Thread.currentThread ().interrupt ();
+         throw new SQLException("Interrupted while waiting for a database connection");
+      }//end try
+      this._waitNanos.addAndGet (System.nanoTime() - start);
+      if (!acquired) {
+         this._timeouts.incrementAndGet ();
+         throw new SQLException("Timed out after " + this._borrowTimeout +
+                                " ms waiting for a database connection");
+      }//end if
+
+      try {
+         PooledConnection conn = takeIdle ();
+         if (conn == null)
+            conn = open ();
+         this._active.incrementAndGet ();
+         this._borrows.incrementAndGet ();
+         return conn;
+      }catch (SQLException e) {
+         this._permits.release ();
+         throw e;
+      }//end try
+   }//end borrow
+
+   /**
+    * Hands a borrowed connection back to the pool.
+    *
+    * @param conn the connection returned by borrow()
+    */
+   public void release (PooledConnection conn) {
+      if (conn == null)
+         return;
+      if (conn.isBroken ()) {
+         invalidate (conn);
+         return;
+      }//end if
+      this._active.decrementAndGet ();
+      boolean keep = !this._closed;
+      try {
+         // a session must not leave a transaction open on a pooled connection.
+         if (keep && !conn.connection ().getAutoCommit ()) {
+            conn.connection ().rollback ();
+            conn.connection ().setAutoCommit (true);
+         }//end if
+      }catch (SQLException e) {
+         keep = false;
+      }//end try
+      if (keep) {
+         conn.touch ();
+         synchronized (this._idle) {
+            this._idle.addFirst (conn);
+         }
+      }else {
+         conn.close ();
+      }//end if
+      this._permits.release ();
+   }//end release
+
+   /**
+    * Hands a borrowed connection back to the pool and closes it, for
+    * connections left in an unknown state by a failure. release() calls it
+    * for connections marked by PooledConnection.failed.
+    *
+    * @param conn the connection returned by borrow()
+    */
+   public void invalidate (PooledConnection conn) {
+      if (conn == null)
+         return;
+      this._active.decrementAndGet ();
+      conn.close ();
+      this._permits.release ();
+   }//end invalidate
+
+   /**
+    * Closes every idle connection and refuses further borrows. Connections
+    * still in use are closed when they are released.
+    */
+   public void close () {
+      this._closed = true;
+      this._evictor.cancel ();
+      synchronized (this._idle) {
+         for (PooledConnection conn : this._idle)
+            conn.close ();
+         this._idle.clear ();
+      }
+   }//end close
+
+   /**
+    * @return the number of connections currently borrowed
+    */
+   public int getActiveCount () {
+      return this._active.get ();
+   }//end getActiveCount
+
+   /**
+    * @return the number of open connections waiting in the pool
+    */
+   public int getIdleCount () {
+      synchronized (this._idle) {
+         return this._idle.size ();
+      }
+   }//end getIdleCount
+
+   /**
+    * @return the number of sessions currently waiting for a connection
+    */
+   public int getWaitingCount () {
+      return this._permits.getQueueLength ();
+   }//end getWaitingCount
+
+   /**
+    * @return the total time sessions spent waiting for a connection, in ms
+    */
+   public long getTotalWaitMillis () {
+      return TimeUnit.NANOSECONDS.toMillis (this._waitNanos.get ());
+   }//end getTotalWaitMillis
+
+   /**
+    * @return the number of borrows that gave up after the borrow timeout
+    */
+   public long getTimeoutCount () {
+      return this._timeouts.get ();
+   }//end getTimeoutCount
+
+   /**
+    * @return the number of successful borrows
+    */
+   public long getBorrowCount () {
+      return this._borrows.get ();
+   }//end getBorrowCount
+
+   /**
+    * @return the maximum number of open connections
+    */
+   public int getMaxSize () {
+      return this._maxSize;
+   }//end getMaxSize
+
+   /**
+    * @return a one line summary of the pool metrics
+    */
+   public String toString () {
+      long borrows = getBorrowCount ();
+      return String.format(
+         "pool: max=%d active=%d idle=%d waiting=%d borrows=%d avgWait=%.3fms timeouts=%d created=%d evicted=%d",
+         this._maxSize, getActiveCount (), getIdleCount (), getWaitingCount (), borrows,
+         borrows == 0 ? 0.0 : this._waitNanos.get () / 1e6 / borrows,
+         getTimeoutCount (), this._created.get (), this._evicted.get ());
+   }//end toString
+
+   // opens a new physical connection.
+   private PooledConnection open () throws SQLException {
+      PooledConnection conn = new PooledConnection(
+         DriverManager.getConnection(this._url, this._user, this._passwd), this._cacheSize);
+      this._created.incrementAndGet ();
+      return conn;
+   }//end open
+
+   // returns the most recently used idle connection that passes validation,
+   // or null when the pool has none.
+   private PooledConnection takeIdle () {
+      while (true) {
+         PooledConnection conn;
+         synchronized (this._idle) {
+            conn = this._idle.pollFirst ();
+         }
+         if (conn == null)
+            return null;
+         long idleFor = System.currentTimeMillis() - conn.lastUsed ();
+         if (idleFor < this._validationInterval || conn.validate ())
+            return conn;
+         conn.close ();
+         this._evicted.incrementAndGet ();
+      }//end while
+   }//end takeIdle
+
+   // closes connections idle for longer than the idle timeout, oldest first,
+   // while more than minIdle connections are idle.
+   private void evictIdle () {
+      long now = System.currentTimeMillis();
+      synchronized (this._idle) {
+         Iterator<PooledConnection> it = this._idle.descendingIterator ();
+         while (this._idle.size () > this._minIdle && it.hasNext ()) {
+            PooledConnection conn = it.next ();
+            if (now - conn.lastUsed () < this._idleTimeout)
+               break;
+            it.remove ();
+            conn.close ();
+            this._evicted.incrementAndGet ();
+         }//end while
+      }
+   }//end evictIdle
+
+}//end ConnectionPool
@@ -0,0 +1,384 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * This class writes a synthetic data set in the format of data/*.csv, for
+ * the schema in sql/src/create_tables.sql, at any size.
+ *
+ * The output only depends on the arguments and the seed. Every file is
+ * streamed row by row, so memory does not grow with the number of bookings;
+ * only per-day and per-hotel tables are kept.
+ *
+ * The data is skewed the way a real booking history is: some hotels are far
+ * more popular than others (Zipf), popular hotels have more rooms, a small
+ * share of customers makes most of the bookings, and the booking rate grows
+ * over the years with a summer peak. Bookings never repeat a
+ * (hotelID, roomNumber, bookingDate) and are written in date order.
+ *
+ * Usage: java DataGenerator <output dir> [hotels] [bookings] [seed]
+ *
+ */
+public class DataGenerator {
+
+   // first and last booking day.
+   static final int FIRST_YEAR = Integer.getInteger("datagen.firstYear", 2000);
+   static final int LAST_YEAR = Integer.getInteger("datagen.lastYear", 2023);
+
+   // skew of hotel popularity and of customer activity.
+   static final double HOTEL_SKEW = 0.5;
+   static final double CUSTOMER_SKEW = 3.0;
+
+   private static final String LETTERS = "abcdefghijklmnopqrstuvwxyz";
+
+   private final File _dir;
+   private final int _hotels;
+   private final long _bookings;
+   private final long _seed;
+
+   private final int _managers;
+   private final int _customers;
+   private final int _companies;
+
+   // share of the bookings and number of rooms of every hotel, by hotelID.
+   private final double[] _hotelWeights;
+   private final int[] _rooms;
+
+   // bookingDate strings and relative booking rate of every day.
+   private final String[] _days;
+   private final double[] _dayWeights;
+
+   /**
+    * Creates a generator
+    *
+    * @param dir the directory the csv files are written to
+    * @param hotels the number of hotels
+    * @param bookings the approximate number of bookings
+    * @param seed the random seed
+    */
+   public DataGenerator (File dir, int hotels, long bookings, long seed) {
+      this._dir = dir;
+      this._hotels = Math.max(1, hotels);
+      this._bookings = Math.max(0, bookings);
+      this._seed = seed;
+      this._managers = Math.max(1, (this._hotels + 2) / 3);
+      this._customers = (int) Math.max(100L, Math.min(Integer.MAX_VALUE / 2, this._bookings / 20));
+      this._companies = Math.max(5, this._hotels / 20);
+
+      GregorianCalendar day = new GregorianCalendar(FIRST_YEAR, Calendar.JANUARY, 1);
+      GregorianCalendar end = new GregorianCalendar(LAST_YEAR, Calendar.DECEMBER, 31);
+      int count = 0;
+      for (GregorianCalendar d = (GregorianCalendar) day.clone(); !d.after(end); d.add(Calendar.DATE, 1))
+         ++count;
+      this._days = new String[count];
+      this._dayWeights = new double[count];
+      double total = 0;
+      for (int i = 0; i < count; ++i, day.add(Calendar.DATE, 1)) {
+         this._days[i] = (day.get(Calendar.MONTH) + 1) + "/" + day.get(Calendar.DATE) + "/" + day.get(Calendar.YEAR);
+         // three times the bookings at the end than at the start, 40% more in summer.
+         double growth = 1.0 + 2.0 * i / Math.max(1, count - 1);
+         double season = 1.0 + 0.4 * Math.max(0.0, Math.sin(Math.PI * (day.get(Calendar.DAY_OF_YEAR) - 80) / 182.5));
+         this._dayWeights[i] = growth * season;
+         total += this._dayWeights[i];
+      }//end for
+      double peakDay = 0;
+      for (int i = 0; i < count; ++i) {
+         this._dayWeights[i] /= total;
+         peakDay = Math.max(peakDay, this._dayWeights[i]);
+      }//end for
+
+      double sum = 0;
+      for (int rank = 1; rank <= this._hotels; ++rank)
+         sum += Math.pow(rank, -HOTEL_SKEW);
+      this._hotelWeights = new double[this._hotels + 1];
+      this._rooms = new int[this._hotels + 1];
+      for (int hotelID = 1; hotelID <= this._hotels; ++hotelID) {
+         this._hotelWeights[hotelID] = Math.pow(rankOf(hotelID), -HOTEL_SKEW) / sum;
+         // enough rooms for the hotel's busiest day plus a few spare, so
+         // popular hotels are big ones.
+         double busiest = this._bookings * this._hotelWeights[hotelID] * peakDay;
+         this._rooms[hotelID] = 5 + (int) (mix(this._seed ^ hotelID) % 16) + (int) Math.ceil(busiest * 1.5);
+      }//end for
+   }//end DataGenerator
+
+   /**
+    * The main execution method
+    *
+    * @param args the command line arguments <output dir> [hotels] [bookings] [seed]
+    */
+   public static void main (String[] args) throws IOException {
+      if (args.length < 1 || args.length > 4) {
+         System.err.println (
+            "Usage: " +
+            "java [-classpath <classpath>] " +
+            DataGenerator.class.getName () +
+            " <output dir> [hotels] [bookings] [seed]");
+         return;
+      }//end if
+      File dir = new File(args[0]);
+      dir.mkdirs();
+      int hotels = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+      long bookings = args.length > 2 ? Long.parseLong(args[2]) : 500;
+      long seed = args.length > 3 ? Long.parseLong(args[3]) : 166;
+
+      long start = System.currentTimeMillis();
+      new DataGenerator(dir, hotels, bookings, seed).generate();
+      System.out.println("Done in " + (System.currentTimeMillis() - start) / 1000.0 + " s");
+   }//end main
+
+   /**
+    * Writes all csv files.
+    *
+    * @throws java.io.IOException when a file cannot be written
+    */
+   public void generate () throws IOException {
+      writeUsers();
+      writeCompanies();
+      writeHotels();
+      writeRooms();
+      long bookings = writeBookings();
+      writeRepairs();
+      writeUpdates();
+      System.out.println(String.format("%d users, %d hotels, %d bookings written to %s",
+                                       1 + this._managers + this._customers, this._hotels, bookings, this._dir));
+   }//end generate
+
+   // userID 1 is the admin, then the managers, then the customers.
+   private void writeUsers () throws IOException {
+      Random random = new Random(this._seed ^ 0x55L);
+      Writer out = open("users.csv");
+      StringBuilder row = new StringBuilder(64);
+      out.write("userID,name,password,userType\n");
+      out.write("1,Admin,xyz,admin\n");
+      int users = 1 + this._managers + this._customers;
+      for (int userID = 2; userID <= users; ++userID) {
+         row.setLength(0);
+         row.append(userID).append(',');
+         word(row, random, 3 + random.nextInt(6));
+         row.append(",xyz,").append(userID <= 1 + this._managers ? "manager" : "customer").append('\n');
+         out.append(row);
+      }//end for
+      out.close();
+   }//end writeUsers
+
+   private void writeCompanies () throws IOException {
+      Random random = new Random(this._seed ^ 0xC0L);
+      Writer out = open("company.csv");
+      StringBuilder row = new StringBuilder(64);
+      out.write("companyID,name,address\n");
+      for (int companyID = 1; companyID <= this._companies; ++companyID) {
+         row.setLength(0);
+         row.append(companyID).append(',');
+         word(row, random, 5);
+         row.append("-com,");
+         word(row, random, 4);
+         row.append('\n');
+         out.append(row);
+      }//end for
+      out.close();
+   }//end writeCompanies
+
+   private void writeHotels () throws IOException {
+      Random random = new Random(this._seed ^ 0x407E1L);
+      Writer out = open("hotels.csv");
+      StringBuilder row = new StringBuilder(96);
+      out.write("hotelID,hotelName,latitude,longitude,dateEstablished,managerUserID\n");
+      for (int hotelID = 1; hotelID <= this._hotels; ++hotelID) {
+         row.setLength(0);
+         row.append(hotelID).append(',');
+         word(row, random, 4);
+         row.append(',').append(String.format(Locale.US, "%.5f", random.nextDouble() * 99.99))
+            .append(',').append(String.format(Locale.US, "%.5f", random.nextDouble() * 99.99))
+            .append(',').append(1 + random.nextInt(12)).append('/').append(1 + random.nextInt(28))
+            .append('/').append(1900 + random.nextInt(100))
+            .append(',').append(managerOf(hotelID)).append('\n');
+         out.append(row);
+      }//end for
+      out.close();
+   }//end writeHotels
+
+   private void writeRooms () throws IOException {
+      Random random = new Random(this._seed ^ 0x12004L);
+      Writer out = open("rooms.csv");
+      StringBuilder row = new StringBuilder(64);
+      out.write("hotelID,roomNumber,price,imageURL\n");
+      for (int hotelID = 1; hotelID <= this._hotels; ++hotelID) {
+         int rooms = roomsOf(hotelID);
+         for (int roomNumber = 1; roomNumber <= rooms; ++roomNumber) {
+            row.setLength(0);
+            row.append(hotelID).append(',').append(roomNumber).append(',')
+               .append(100 + random.nextInt(1900)).append(',');
+            word(row, random, 4);
+            row.append('\n');
+            out.append(row);
+         }//end for
+      }//end for
+      out.close();
+   }//end writeRooms
+
+   /*
+    * Writes the bookings day by day. Each hotel gets its expected share of
+    * the day's bookings, rounded at random, and as many distinct rooms.
+    * @return the number of bookings written
+    **/
+   private long writeBookings () throws IOException {
+      Random random = new Random(this._seed ^ 0xB00CL);
+      Writer out = open("bookings.csv");
+      StringBuilder row = new StringBuilder(64);
+      out.write("bookingID,customerID,hotelID,roomNumber,bookingDate\n");
+      long bookingID = 0;
+      for (int day = 0; day < this._days.length && bookingID < this._bookings; ++day) {
+         double dayShare = this._bookings * this._dayWeights[day];
+         String date = this._days[day];
+         for (int hotelID = 1; hotelID <= this._hotels && bookingID < this._bookings; ++hotelID) {
+            double expected = dayShare * this._hotelWeights[hotelID];
+            int count = (int) expected;
+            if (random.nextDouble() < expected - count)
+               ++count;
+            if (count == 0)
+               continue;
+            int rooms = roomsOf(hotelID);
+            count = Math.min(count, rooms);
+            // walk the rooms from a random start with a stride coprime to the
+            // room count, so the picked rooms are distinct.
+            int room = random.nextInt(rooms);
+            int stride = 1 + random.nextInt(rooms);
+            while (gcd(stride, rooms) != 1)
+               stride = stride % rooms + 1;
+            for (int i = 0; i < count && bookingID < this._bookings; ++i) {
+               row.setLength(0);
+               row.append(++bookingID).append(',').append(customer(random)).append(',')
+                  .append(hotelID).append(',').append(1 + room).append(',').append(date).append('\n');
+               out.append(row);
+               room = (room + stride) % rooms;
+            }//end for
+         }//end for
+      }//end for
+      out.close();
+      return bookingID;
+   }//end writeBookings
+
+   // one repair per thousand bookings, each with its request by the hotel's manager.
+   private void writeRepairs () throws IOException {
+      Random random = new Random(this._seed ^ 0x4E9A1L);
+      Writer repairs = open("roomRepairs.csv");
+      Writer requests = open("roomRepairRequests.csv");
+      StringBuilder row = new StringBuilder(64);
+      repairs.write("repairID,companyID,hotelID,roomNumber,repairDate\n");
+      requests.write("requestNumber,managerID,repairID\n");
+      long count = Math.max(10, this._bookings / 1000);
+      for (long repairID = 1; repairID <= count; ++repairID) {
+         int hotelID = 1 + random.nextInt(this._hotels);
+         row.setLength(0);
+         row.append(repairID).append(',').append(1 + random.nextInt(this._companies)).append(',')
+            .append(hotelID).append(',').append(1 + random.nextInt(roomsOf(hotelID))).append(',')
+            .append(this._days[random.nextInt(this._days.length)]).append('\n');
+         repairs.append(row);
+         row.setLength(0);
+         row.append(repairID).append(',').append(managerOf(hotelID)).append(',').append(repairID).append('\n');
+         requests.append(row);
+      }//end for
+      repairs.close();
+      requests.close();
+   }//end writeRepairs
+
+   // one room update per two hundred bookings, by the hotel's manager.
+   private void writeUpdates () throws IOException {
+      Random random = new Random(this._seed ^ 0x0DA7EL);
+      Writer out = open("roomUpdatesLog.csv");
+      StringBuilder row = new StringBuilder(64);
+      out.write("updateNumber,managerID,hotelID,roomNumber,updatedOn\n");
+      GregorianCalendar first = new GregorianCalendar(FIRST_YEAR, Calendar.JANUARY, 1);
+      long count = Math.max(50, this._bookings / 200);
+      for (long updateNumber = 1; updateNumber <= count; ++updateNumber) {
+         int hotelID = 1 + random.nextInt(this._hotels);
+         GregorianCalendar on = (GregorianCalendar) first.clone();
+         on.add(Calendar.DATE, random.nextInt(this._days.length));
+         row.setLength(0);
+         row.append(updateNumber).append(',').append(managerOf(hotelID)).append(',')
+            .append(hotelID).append(',').append(1 + random.nextInt(roomsOf(hotelID))).append(',')
+            .append(String.format("%04d-%02d-%02d %02d:%02d:00", on.get(Calendar.YEAR),
+                                  on.get(Calendar.MONTH) + 1, on.get(Calendar.DATE),
+                                  random.nextInt(24), random.nextInt(60)))
+            .append('\n');
+         out.append(row);
+      }//end for
+      out.close();
+   }//end writeUpdates
+
+   private int managerOf (int hotelID) {
+      return 2 + (hotelID - 1) % this._managers;
+   }//end managerOf
+
+   // popularity rank of a hotel; a fixed permutation of the hotelIDs so
+   // that popular hotels are spread over the ID range.
+   private int rankOf (int hotelID) {
+      long rank = ((hotelID - 1) * permutationStride(this._hotels)) % this._hotels;
+      return (int) rank + 1;
+   }//end rankOf
+
+   private int roomsOf (int hotelID) {
+      return this._rooms[hotelID];
+   }//end roomsOf
+
+   // a random customer; customers with a low rank book far more often.
+   private int customer (Random random) {
+      int rank = (int) (this._customers * Math.pow(random.nextDouble(), CUSTOMER_SKEW));
+      long scattered = (rank * permutationStride(this._customers)) % this._customers;
+      return 2 + this._managers + (int) scattered;
+   }//end customer
+
+   // a stride coprime to n, which makes i -> i * stride mod n a permutation.
+   private static long permutationStride (int n) {
+      long stride = 7919;
+      while (n > 1 && gcd((int) (stride % n), n) != 1)
+         stride += 2;
+      return stride;
+   }//end permutationStride
+
+   private static int gcd (int a, int b) {
+      while (b != 0) {
+         int t = a % b;
+         a = b;
+         b = t;
+      }//end while
+      return a;
+   }//end gcd
+
+   // a non-negative hash of a number (SplitMix64 finalizer).
+   private static long mix (long z) {
+      z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+      z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+      return (z ^ (z >>> 31)) >>> 1;
+   }//end mix
+
+   private static void word (StringBuilder row, Random random, int length) {
+      for (int i = 0; i < length; ++i)
+         row.append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+   }//end word
+
+   private Writer open (String name) throws IOException {
+      return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(this._dir, name)), "UTF-8"), 1 << 16);
+   }//end open
+
+}//end DataGenerator
@@ -14,6 +14,7 @@
 import java.sql.DriverManager;
 import java.sql.Connection;
 import java.sql.Statement;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
@@ -21,15 +22,27 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
+import java.io.PrintStream;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
 import java.lang.Math;
 import java.util.Scanner;
 import java.sql.Timestamp;
 import java.text.SimpleDateFormat;
+import java.text.ParseException;
 import java.sql.Date;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 /**
  * This class defines a simple embedded SQL utility class that is designed to
  * work with PostgreSQL JDBC drivers.
@@ -37,8 +50,111 @@ import java.util.regex.Pattern;
  */
 public class Hotel {
 
-   // reference to physical database connection.
-   private Connection _connection = null;
+   // pool of physical database connections shared by all sessions.
+   private ConnectionPool _pool = null;
+
+   // maximum number of prepared statements kept open per connection.
+   static final int STATEMENT_CACHE_SIZE = Integer.getInteger("hotel.stmtcache.size", 32);
+
+   // connection pool limits.
+   static final int POOL_SIZE = Integer.getInteger("hotel.pool.size", 8);
+   static final int POOL_MIN_IDLE = Integer.getInteger("hotel.pool.minIdle", 1);
+   static final long POOL_BORROW_TIMEOUT = Long.getLong("hotel.pool.borrowTimeoutMs", 30000L);
+   static final long POOL_IDLE_TIMEOUT = Long.getLong("hotel.pool.idleTimeoutMs", 300000L);
+   static final long POOL_VALIDATION_INTERVAL = Long.getLong("hotel.pool.validationIntervalMs", 5000L);
+
+   // calls, errors and latencies of the operations below, published over
+   // JMX; shared by all shards and owned by shard 0.
+   private final Metrics _metrics;
+   private final boolean _ownsMetrics;
+
+   // shard 0, which holds the state shared by all shards; this instance
+   // when not sharded.
+   private final Hotel _root;
+
+   // bumped whenever a user's role or the manager of a hotel changes on any
+   // shard, so that logged in sessions reload their permissions.
+   private final AtomicLong _permissionChanges = new AtomicLong();
+
+   // statements slower than hotel.slowlog.thresholdMs, with their plans;
+   // null unless that property is set.
+   private SlowQueryLog _slowLog = null;
+
+   static final long SLOW_LOG_THRESHOLD = Long.getLong("hotel.slowlog.thresholdMs", -1L);
+   static final int SLOW_LOG_EXPLAINS_PER_MINUTE = Integer.getInteger("hotel.slowlog.explainsPerMinute", 6);
+   static final String SLOW_LOG_FILE = System.getProperty("hotel.slowlog.file", "slow_queries.log");
+   static final long SLOW_LOG_MAX_BYTES = Long.getLong("hotel.slowlog.maxBytes", 10L * 1024 * 1024);
+   static final int SLOW_LOG_FILES = Integer.getInteger("hotel.slowlog.files", 5);
+
+   // where query results are printed; standard out unless redirected.
+   private PrintStream _out = System.out;
+
+   // booked rooms by hotel and date, answering availability without a query.
+   private AvailabilityCache _availability = null;
+
+   // availability cache limits; a capacity of 0 disables the cache.
+   static final int AVAILABILITY_CACHE_SIZE = Integer.getInteger("hotel.availability.size", 100000);
+   static final long AVAILABILITY_TTL = Long.getLong("hotel.availability.ttlMs", 60000L);
+   static final int AVAILABILITY_PAST_DAYS = Integer.getInteger("hotel.availability.pastDays", 0);
+   static final int AVAILABILITY_FUTURE_DAYS = Integer.getInteger("hotel.availability.futureDays", 400);
+
+   // rooms, prices and images of every hotel, kept current by notifications.
+   private RoomCatalog _catalog = null;
+
+   // how often the catalog checks for changes made by other processes;
+   // every check is a query on a connection of its own, so this is kept
+   // well above the time a change takes to commit. 0 disables the check.
+   static final long CATALOG_POLL = Long.getLong("hotel.catalog.pollMs", 250L);
+
+   // top customers by hotel, answering "View 5 regular Customers" without a query.
+   private RegularCustomers _regulars = null;
+
+   static final int REGULAR_CUSTOMERS = 5;
+   static final long REGULAR_CUSTOMERS_TTL = Long.getLong("hotel.regulars.ttlMs", 60000L);
+
+   // serializes bookings of the same room and date within this process.
+   private final LockStripes _bookingLocks = new LockStripes(
+      Integer.getInteger("hotel.booking.stripes", 16 * Runtime.getRuntime().availableProcessors()));
+
+   // groups concurrent bookings into multi-row inserts; null unless
+   // hotel.booking.groupCommit is set.
+   private BookingQueue _bookingQueue = null;
+
+   static final boolean GROUP_COMMIT = Boolean.getBoolean("hotel.booking.groupCommit");
+   static final long GROUP_COMMIT_WINDOW = Long.getLong("hotel.booking.groupCommit.windowMicros", 1000L);
+   static final int GROUP_COMMIT_MAX_BATCH = Integer.getInteger("hotel.booking.groupCommit.maxBatch", 64);
+   static final int GROUP_COMMIT_FLUSHERS = Integer.getInteger("hotel.booking.groupCommit.flushers", 1);
+
+   // the Hotel instances of the other shards when hotel.shards is set. This
+   // instance is then shard 0 and routes operations on a hotel to its shard.
+   private ShardRouter _shards = null;
+
+   // the other shards as [host:]port[/dbname], comma separated; the host
+   // defaults to localhost and the database to that of shard 0.
+   static final String SHARDS = System.getProperty("hotel.shards", "");
+   // the first hotelID of every other shard, comma separated; when not set,
+   // hotels are spread by the remainder of hotelID / number of shards.
+   static final String SHARD_RANGES = System.getProperty("hotel.shards.ranges");
+
+   // nights a stay can be booked for at most.
+   static final int MAX_STAY_NIGHTS = Integer.getInteger("hotel.booking.maxNights", 30);
+
+   // rooms listed at most by a search for free rooms.
+   static final int SEARCH_LIMIT = Integer.getInteger("hotel.search.limit", 50);
+
+   // rows fetched per round trip by streaming queries.
+   static final int FETCH_SIZE = Integer.getInteger("hotel.fetchSize", 500);
+
+   // rows per page of the interactive booking history.
+   static final int HISTORY_PAGE_SIZE = Integer.getInteger("hotel.history.pageSize", 100);
+
+   // characters of query output collected before they are written out.
+   static final int OUTPUT_BUFFER_SIZE = 8192;
+
+   static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+   // distance within which "View Hotels" searches.
+   static final double HOTEL_SEARCH_RADIUS = 30;
 
    // handling the keyboard inputs through a BufferedReader
    // This variable can be global for convenience.
@@ -55,15 +171,53 @@ public class Hotel {
     * @throws java.sql.SQLException when failed to make a connection.
     */
    public Hotel(String dbname, String dbport, String user, String passwd) throws SQLException {
+      this("localhost", dbport, dbname, user, passwd, 0, null);
+   }//end Hotel
+
+   // connects to one shard; shard 0 also connects to the other shards, which
+   // record into its metrics.
+   private Hotel(String host, String dbport, String dbname, String user, String passwd, int shard, Hotel root) throws SQLException {
+      this._root = root == null ? this : root;
+      this._ownsMetrics = root == null;
+      this._metrics = root == null ? new Metrics() : root._metrics;
 
       System.out.print("Connecting to database...");
       try{
          // constructs the connection URL
-         String url = "jdbc:postgresql://localhost:" + dbport + "/" + dbname;
+         String url = "jdbc:postgresql://" + host + ":" + dbport + "/" + dbname;
          System.out.println ("Connection URL: " + url + "\n");
 
-         // obtain a physical connection
-         this._connection = DriverManager.getConnection(url, user, passwd);
+         // open the connection pool, which obtains the first physical connection
+         this._pool = new ConnectionPool(url, user, passwd, POOL_SIZE, Math.max(1, POOL_MIN_IDLE),
+            POOL_BORROW_TIMEOUT, POOL_IDLE_TIMEOUT, POOL_VALIDATION_INTERVAL, STATEMENT_CACHE_SIZE);
+         this._catalog = new RoomCatalog(this, url, user, passwd, CATALOG_POLL);
+         this._catalog.start();
+         this._availability = new AvailabilityCache(this, AVAILABILITY_CACHE_SIZE, AVAILABILITY_TTL,
+            AVAILABILITY_PAST_DAYS, AVAILABILITY_FUTURE_DAYS);
+         this._regulars = new RegularCustomers(this, REGULAR_CUSTOMERS, REGULAR_CUSTOMERS_TTL);
+         if (GROUP_COMMIT)
+            this._bookingQueue = new BookingQueue(this, GROUP_COMMIT_WINDOW, GROUP_COMMIT_MAX_BATCH,
+               GROUP_COMMIT_FLUSHERS);
+         if (SLOW_LOG_THRESHOLD >= 0)
+            this._slowLog = new SlowQueryLog(url, user, passwd, SLOW_LOG_THRESHOLD,
+               SLOW_LOG_EXPLAINS_PER_MINUTE, shardFile(new File(SLOW_LOG_FILE), shard), SLOW_LOG_MAX_BYTES, SLOW_LOG_FILES);
+         if (shard == 0 && !SHARDS.trim().isEmpty()) {
+            String[] specs = SHARDS.split(",");
+            Hotel[] shards = new Hotel[specs.length + 1];
+            shards[0] = this;
+            for (int i = 0; i < specs.length; ++i) {
+               // [host:]port[/dbname]
+               String spec = specs[i].trim();
+               int slash = spec.indexOf('/');
+               String shardDB = slash < 0 ? dbname : spec.substring(slash + 1);
+               String address = slash < 0 ? spec : spec.substring(0, slash);
+               int colon = address.indexOf(':');
+               shards[i + 1] = new Hotel(colon < 0 ? "localhost" : address.substring(0, colon),
+                  address.substring(colon + 1), shardDB, user, passwd, i + 1, this);
+            }//end for
+            this._shards = new ShardRouter(shards, ShardRouter.parseRanges(SHARD_RANGES));
+            System.out.println(this._shards);
+         }//end if
          System.out.println("Done");
       }catch (Exception e){
          System.err.println("Error - Unable to Connect to Database: " + e.getMessage() );
@@ -72,6 +226,11 @@ public class Hotel {
       }//end catch
    }//end Hotel
 
+   // the slow query log of shard n > 0 goes to shard<n>-<name> next to that of shard 0.
+   private static File shardFile(File file, int shard) {
+      return shard == 0 ? file : new File(file.getParentFile(), "shard" + shard + "-" + file.getName());
+   }//end shardFile
+
    // Method to calculate euclidean distance between two latitude, longitude pairs. 
    public double calculateDistance (double lat1, double long1, double lat2, double long2){
       double t1 = (lat1 - lat2) * (lat1 - lat2);
@@ -86,16 +245,183 @@ public class Hotel {
     * @throws java.sql.SQLException when update failed
     */
    public void executeUpdate (String sql) throws SQLException {
-      // creates a statement object
-      Statement stmt = this._connection.createStatement ();
-
-      // issues the update instruction
-      stmt.executeUpdate (sql);
+      long start = System.nanoTime ();
+      boolean ok = false;
+      PooledConnection conn = this._pool.borrow ();
+      try {
+         // creates a statement object
+         Statement stmt = conn.connection ().createStatement ();
+
+         // issues the update instruction
+         stmt.executeUpdate (sql);
+
+         // close the instruction
+         stmt.close ();
+         ok = true;
+      }catch (SQLException e) {
+         conn.failed (e);
+         throw e;
+      }finally {
+         finish ("executeUpdate", sql, null, start, ok);
+         this._pool.release (conn);
+      }//end try
+   }//end executeUpdate
 
-      // close the instruction
-      stmt.close ();
+   /**
+    * Method to execute a parameterized update template through the
+    * statement cache.
+    *
+    * @param sql the parameterized SQL string
+    * @param params the values bound to the statement parameters, in order
+    * @return the number of rows affected
+    * @throws java.sql.SQLException when update failed
+    */
+   public int executeUpdate (String sql, Object... params) throws SQLException {
+      long start = System.nanoTime ();
+      boolean ok = false;
+      PooledConnection conn = this._pool.borrow ();
+      PreparedStatement stmt = null;
+      try {
+         stmt = conn.statements ().prepare (sql);
+         bind (stmt, params);
+         int rows = stmt.executeUpdate ();
+         ok = true;
+         return rows;
+      }catch (SQLException e) {
+         conn.failed (e);
+         throw e;
+      }finally {
+         finish ("executeUpdate", sql, params, start, ok);
+         conn.statements ().release (stmt);
+         this._pool.release (conn);
+      }//end try
    }//end executeUpdate
 
+   /**
+    * Method to execute an INSERT ... RETURNING template through the
+    * statement cache and return the key it generated, in the same round
+    * trip as the insert.
+    *
+    * @param sql the parameterized SQL string, returning one integer column
+    * @param params the values bound to the statement parameters, in order
+    * @return the generated key, or -1 when nothing was inserted
+    * @throws java.sql.SQLException when update failed
+    */
+   public int executeInsertAndReturnKey (String sql, Object... params) throws SQLException {
+      long start = System.nanoTime ();
+      boolean ok = false;
+      PooledConnection conn = this._pool.borrow ();
+      PreparedStatement stmt = null;
+      try {
+         stmt = conn.statements ().prepare (sql);
+         bind (stmt, params);
+         ResultSet rs = stmt.executeQuery ();
+         int key = rs.next () ? rs.getInt (1) : -1;
+         rs.close ();
+         ok = true;
+         return key;
+      }catch (SQLException e) {
+         conn.failed (e);
+         throw e;
+      }finally {
+         finish ("executeInsertAndReturnKey", sql, params, start, ok);
+         conn.statements ().release (stmt);
+         this._pool.release (conn);
+      }//end try
+   }//end executeInsertAndReturnKey
+
+   /**
+    * Method to execute a parameterized update template once per set of
+    * values, sent to the DBMS as one JDBC batch and committed as one
+    * transaction: either every statement is applied or none.
+    *
+    * @param sql the parameterized SQL string
+    * @param rows the values bound to the statement parameters, one array per execution
+    * @return the number of rows affected by each execution
+    * @throws java.sql.SQLException when update failed; nothing is applied then
+    */
+   public int[] executeBatch (String sql, List<Object[]> rows) throws SQLException {
+      long start = System.nanoTime ();
+      boolean ok = false;
+      PooledConnection conn = this._pool.borrow ();
+      PreparedStatement stmt = null;
+      try {
+         conn.connection ().setAutoCommit (false);
+         stmt = conn.statements ().prepare (sql);
+         for (Object[] row : rows) {
+            bind (stmt, row);
+            stmt.addBatch ();
+         }//end for
+         int[] counts;
+         try {
+            counts = stmt.executeBatch ();
+         }finally {
+            // a failed batch must not leave its statements queued on a
+            // cached statement.
+            stmt.clearBatch ();
+         }//end try
+         conn.connection ().commit ();
+         ok = true;
+         return counts;
+      }catch (SQLException e) {
+         conn.failed (e);
+         throw e;
+      }finally {
+         finish ("executeBatch", sql, rows.isEmpty () ? null : rows.get (0), start, ok);
+         // rolls back what was not committed.
+         conn.statements ().release (stmt);
+         this._pool.release (conn);
+      }//end try
+   }//end executeBatch
+
+   /*
+    * Records the latency of a statement run by an execute method, and logs
+    * the statement when it was slow.
+    */
+   private void finish (String operation, String sql, Object[] params, long start, boolean ok) {
+      long nanos = System.nanoTime () - start;
+      this._metrics.recordLatency (operation, nanos, ok);
+      if (this._slowLog != null)
+         this._slowLog.check (operation, sql, params, nanos);
+   }//end finish
+
+   /*
+    * Binds the given values to the parameters of a prepared statement.
+    */
+   private static void bind (PreparedStatement stmt, Object[] params) throws SQLException {
+      stmt.clearParameters ();
+      for (int i = 0; i < params.length; ++i)
+         stmt.setObject (i + 1, params[i]);
+   }//end bind
+
+   /**
+    * Converts a date entered as MM/DD/YYYY into a SQL date.
+    *
+    * @param date the date string
+    * @return the SQL date
+    * @throws java.text.ParseException when the date is not valid
+    */
+   public static Date parseDate (String date) throws ParseException {
+      SimpleDateFormat format = new SimpleDateFormat("MM/dd/yyyy");
+      format.setLenient(false);
+      return new Date(format.parse(date.trim()).getTime());
+   }//end parseDate
+
+   /**
+    * Returns the date a number of days after another in the local
+    * calendar, which stays right across daylight saving changes.
+    *
+    * @param date the date
+    * @param days the number of days to add
+    * @return the later date
+    */
+   public static Date addDays (Date date, int days) {
+      Calendar calendar = Calendar.getInstance ();
+      calendar.setTime (date);
+      calendar.add (Calendar.DATE, days);
+      return new Date(calendar.getTimeInMillis ());
+   }//end addDays
+
    /**
     * Method to execute an input query SQL instruction (i.e. SELECT).  This
     * method issues the query to the DBMS and outputs the results to
@@ -106,12 +432,81 @@ public class Hotel {
     * @throws java.sql.SQLException when failed to execute the query
     */
    public int executeQueryAndPrintResult (String query) throws SQLException {
-      // creates a statement object
-      Statement stmt = this._connection.createStatement ();
+      long start = System.nanoTime ();
+      boolean ok = false;
+      PooledConnection conn = this._pool.borrow ();
+      try {
+         // creates a statement object
+         Statement stmt = conn.connection ().createStatement ();
+
+         // issues the query instruction
+         ResultSet rs = stmt.executeQuery (query);
+
+         int rowCount = printResult (rs);
+         stmt.close ();
+         ok = true;
+         return rowCount;
+      }catch (SQLException e) {
+         conn.failed (e);
+         throw e;
+      }finally {
+         finish ("executeQueryAndPrintResult", query, null, start, ok);
+         this._pool.release (conn);
+      }//end try
+   }//end executeQuery
 
-      // issues the query instruction
-      ResultSet rs = stmt.executeQuery (query);
+   /**
+    * Method to execute a parameterized query template (i.e. SELECT) through
+    * the statement cache and output the results to standard out.
+    *
+    * @param query the parameterized query string
+    * @param params the values bound to the query parameters, in order
+    * @return the number of rows returned
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public int executeQueryAndPrintResult (String query, Object... params) throws SQLException {
+      long start = System.nanoTime ();
+      boolean ok = false;
+      PooledConnection conn = this._pool.borrow ();
+      PreparedStatement stmt = null;
+      try {
+         stmt = conn.statements ().prepare (query);
+         bind (stmt, params);
+         ResultSet rs = stmt.executeQuery ();
+         int rowCount = printResult (rs);
+         rs.close ();
+         ok = true;
+         return rowCount;
+      }catch (SQLException e) {
+         conn.failed (e);
+         throw e;
+      }finally {
+         finish ("executeQueryAndPrintResult", query, params, start, ok);
+         conn.statements ().release (stmt);
+         this._pool.release (conn);
+      }//end try
+   }//end executeQueryAndPrintResult
 
+   /*
+    * Outputs every row of a result set to standard out, preceded by a
+    * header line with the column names.
+    */
+   private int printResult (ResultSet rs) throws SQLException {
+      return printResult (rs, Integer.MAX_VALUE, null, true);
+   }//end printResult
+
+   private int printResult (ResultSet rs, int limit, String[] last) throws SQLException {
+      return printResult (rs, limit, last, true);
+   }//end printResult
+
+   /*
+    * Outputs at most limit rows of a result set, preceded by a header line.
+    * Rows are collected in a buffer that is written out whenever it fills,
+    * so memory stays constant however many rows there are. When last is
+    * given, it receives the values of the last row printed. The header is
+    * left out when header is false, for the later batches of a cursor.
+    */
+   private int printResult (ResultSet rs, int limit, String[] last, boolean header) throws SQLException {
       /*
        ** obtains the metadata object for the returned result set.  The metadata
        ** contains row and column info.
@@ -121,23 +516,83 @@ public class Hotel {
       int rowCount = 0;
 
       // iterates through the result set and output them to standard out.
-      boolean outputHeader = true;
-      while (rs.next()){
+      StringBuilder buffer = new StringBuilder(OUTPUT_BUFFER_SIZE);
+      boolean outputHeader = header;
+      while (rowCount < limit && rs.next()){
 		 if(outputHeader){
 			for(int i = 1; i <= numCol; i++){
-			System.out.print(rsmd.getColumnName(i) + "\t");
+			buffer.append(rsmd.getColumnName(i)).append('\t');
 			}
-			System.out.println();
+			buffer.append(LINE_SEPARATOR);
 			outputHeader = false;
 		 }
-         for (int i=1; i<=numCol; ++i)
-            System.out.print (rs.getString (i) + "\t");
-         System.out.println ();
+         for (int i=1; i<=numCol; ++i) {
+            String value = rs.getString (i);
+            buffer.append (value).append ('\t');
+            if (last != null)
+               last[i - 1] = value;
+         }
+         buffer.append (LINE_SEPARATOR);
          ++rowCount;
+         if (buffer.length () >= OUTPUT_BUFFER_SIZE) {
+            this._out.append (buffer);
+            buffer.setLength (0);
+         }//end if
       }//end while
-      stmt.close ();
+      this._out.append (buffer);
+      this._out.flush ();
       return rowCount;
-   }//end executeQuery
+   }//end printResult
+
+   /**
+    * Method to execute a parameterized query template (i.e. SELECT) and
+    * stream the results to the output through a server-side cursor: rows
+    * are fetched FETCH_SIZE at a time instead of all at once, so memory
+    * stays constant however many rows match. The cursor is declared and
+    * fetched from explicitly, since the bundled driver does not implement
+    * setFetchSize.
+    *
+    * @param query the parameterized query string
+    * @param params the values bound to the query parameters, in order
+    * @return the number of rows returned
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public int executeQueryAndStreamResult (String query, Object... params) throws SQLException {
+      long start = System.nanoTime ();
+      boolean ok = false;
+      PooledConnection conn = this._pool.borrow ();
+      PreparedStatement stmt = null;
+      Statement fetch = null;
+      try {
+         // a cursor only lives inside a transaction; releasing the
+         // connection rolls back a failed one.
+         conn.connection ().setAutoCommit (false);
+         stmt = conn.statements ().prepare ("DECLARE stream NO SCROLL CURSOR FOR " + query);
+         bind (stmt, params);
+         stmt.execute ();
+         fetch = conn.connection ().createStatement ();
+         int rowCount = 0;
+         int rows;
+         do {
+            ResultSet rs = fetch.executeQuery ("FETCH " + FETCH_SIZE + " FROM stream");
+            rows = printResult (rs, Integer.MAX_VALUE, null, rowCount == 0);
+            rs.close ();
+            rowCount += rows;
+         } while (rows == FETCH_SIZE);
+         conn.connection ().commit ();
+         ok = true;
+         return rowCount;
+      }catch (SQLException e) {
+         conn.failed (e);
+         throw e;
+      }finally {
+         finish ("executeQueryAndStreamResult", query, params, start, ok);
+         if (fetch != null)
+            fetch.close ();
+         conn.statements ().release (stmt);
+         this._pool.release (conn);
+      }//end try
+   }//end executeQueryAndStreamResult
 
    /**
     * Method to execute an input query SQL instruction (i.e. SELECT).  This
@@ -149,22 +604,250 @@ public class Hotel {
     * @throws java.sql.SQLException when failed to execute the query
     */
    public List<List<String>> executeQueryAndReturnResult (String query) throws SQLException {
-      // creates a statement object
-      Statement stmt = this._connection.createStatement ();
+      long start = System.nanoTime ();
+      boolean ok = false;
+      PooledConnection conn = this._pool.borrow ();
+      try {
+         // creates a statement object
+         Statement stmt = conn.connection ().createStatement ();
+
+         // issues the query instruction
+         ResultSet rs = stmt.executeQuery (query);
+
+         List<List<String>> result = readResult (rs);
+         stmt.close ();
+         ok = true;
+         return result;
+      }catch (SQLException e) {
+         conn.failed (e);
+         throw e;
+      }finally {
+         finish ("executeQueryAndReturnResult", query, null, start, ok);
+         this._pool.release (conn);
+      }//end try
+   }//end executeQueryAndReturnResult
+
+   /**
+    * Method to execute a parameterized query template (i.e. SELECT) through
+    * the statement cache and return the results as a list of records.
+    *
+    * @param query the parameterized query string
+    * @param params the values bound to the query parameters, in order
+    * @return the query result as a list of records
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public List<List<String>> executeQueryAndReturnResult (String query, Object... params) throws SQLException {
+      long start = System.nanoTime ();
+      boolean ok = false;
+      PooledConnection conn = this._pool.borrow ();
+      PreparedStatement stmt = null;
+      try {
+         stmt = conn.statements ().prepare (query);
+         bind (stmt, params);
+         ResultSet rs = stmt.executeQuery ();
+         List<List<String>> result = readResult (rs);
+         rs.close ();
+         ok = true;
+         return result;
+      }catch (SQLException e) {
+         conn.failed (e);
+         throw e;
+      }finally {
+         finish ("executeQueryAndReturnResult", query, params, start, ok);
+         conn.statements ().release (stmt);
+         this._pool.release (conn);
+      }//end try
+   }//end executeQueryAndReturnResult
+
+   /**
+    * Method to execute a parameterized query template (i.e. SELECT) through
+    * the statement cache and turn each row into an object with a mapper,
+    * which reads the columns with their typed getters.
+    *
+    * @param query the parameterized query string
+    * @param mapper maps the current row to an object
+    * @param params the values bound to the query parameters, in order
+    * @return the mapped rows, in order
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public <T> List<T> executeQueryAndMap (String query, RowMapper<T> mapper, Object... params) throws SQLException {
+      long start = System.nanoTime ();
+      boolean ok = false;
+      PooledConnection conn = this._pool.borrow ();
+      PreparedStatement stmt = null;
+      try {
+         stmt = conn.statements ().prepare (query);
+         bind (stmt, params);
+         ResultSet rs = stmt.executeQuery ();
+         List<T> result = new ArrayList<T>();
+         while (rs.next ())
+            result.add (mapper.map (rs));
+         rs.close ();
+         ok = true;
+         return result;
+      }catch (SQLException e) {
+         conn.failed (e);
+         throw e;
+      }finally {
+         finish ("executeQueryAndMap", query, params, start, ok);
+         conn.statements ().release (stmt);
+         this._pool.release (conn);
+      }//end try
+   }//end executeQueryAndMap
+
+   /**
+    * Method to execute a parameterized query template (i.e. SELECT) through
+    * the statement cache and map its first row only.
+    *
+    * @param query the parameterized query string
+    * @param mapper maps the current row to an object
+    * @param params the values bound to the query parameters, in order
+    * @return the first row mapped, or null when there are no rows
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public <T> T executeQueryForObject (String query, RowMapper<T> mapper, Object... params) throws SQLException {
+      long start = System.nanoTime ();
+      boolean ok = false;
+      PooledConnection conn = this._pool.borrow ();
+      PreparedStatement stmt = null;
+      try {
+         stmt = conn.statements ().prepare (query);
+         bind (stmt, params);
+         ResultSet rs = stmt.executeQuery ();
+         T result = rs.next () ? mapper.map (rs) : null;
+         rs.close ();
+         ok = true;
+         return result;
+      }catch (SQLException e) {
+         conn.failed (e);
+         throw e;
+      }finally {
+         finish ("executeQueryForObject", query, params, start, ok);
+         conn.statements ().release (stmt);
+         this._pool.release (conn);
+      }//end try
+   }//end executeQueryForObject
+
+   /**
+    * Method to execute a parameterized query template (i.e. SELECT) whose
+    * columns are all integers, and read them into one primitive column each.
+    * SQL NULL is read as 0.
+    *
+    * @param query the parameterized query string
+    * @param params the values bound to the query parameters, in order
+    * @return the columns of the result, in select list order
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public IntColumn[] executeQueryForInts (String query, Object... params) throws SQLException {
+      long start = System.nanoTime ();
+      boolean ok = false;
+      PooledConnection conn = this._pool.borrow ();
+      PreparedStatement stmt = null;
+      try {
+         stmt = conn.statements ().prepare (query);
+         bind (stmt, params);
+         ResultSet rs = stmt.executeQuery ();
+         IntColumn[] columns = new IntColumn[rs.getMetaData ().getColumnCount ()];
+         for (int i = 0; i < columns.length; ++i)
+            columns[i] = new IntColumn();
+         while (rs.next ()) {
+            for (int i = 0; i < columns.length; ++i)
+               columns[i].add (rs.getInt (i + 1));
+         }//end while
+         rs.close ();
+         ok = true;
+         return columns;
+      }catch (SQLException e) {
+         conn.failed (e);
+         throw e;
+      }finally {
+         finish ("executeQueryForInts", query, params, start, ok);
+         conn.statements ().release (stmt);
+         this._pool.release (conn);
+      }//end try
+   }//end executeQueryForInts
 
-      // issues the query instruction
-      ResultSet rs = stmt.executeQuery (query);
+   /**
+    * Method to execute an existence probe (i.e. SELECT 1 ... LIMIT 1)
+    * through the statement cache. The query limits itself to one row, as
+    * the cached statement is shared with other callers of the same query.
+    *
+    * @param query the parameterized query string
+    * @param params the values bound to the query parameters, in order
+    * @return true when the query returns a row
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public boolean exists (String query, Object... params) throws SQLException {
+      long start = System.nanoTime ();
+      boolean ok = false;
+      PooledConnection conn = this._pool.borrow ();
+      PreparedStatement stmt = null;
+      try {
+         stmt = conn.statements ().prepare (query);
+         bind (stmt, params);
+         ResultSet rs = stmt.executeQuery ();
+         boolean found = rs.next ();
+         rs.close ();
+         ok = true;
+         return found;
+      }catch (SQLException e) {
+         conn.failed (e);
+         throw e;
+      }finally {
+         finish ("exists", query, params, start, ok);
+         conn.statements ().release (stmt);
+         this._pool.release (conn);
+      }//end try
+   }//end exists
+
+   /**
+    * Method to run several existence probes in one round trip. The query
+    * returns a single row of booleans, typically one EXISTS (...) per check.
+    *
+    * @param query the parameterized query string
+    * @param params the values bound to the query parameters, in order
+    * @return the answer of each check, in select list order
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public boolean[] existsAll (String query, Object... params) throws SQLException {
+      long start = System.nanoTime ();
+      boolean ok = false;
+      PooledConnection conn = this._pool.borrow ();
+      PreparedStatement stmt = null;
+      try {
+         stmt = conn.statements ().prepare (query);
+         bind (stmt, params);
+         ResultSet rs = stmt.executeQuery ();
+         boolean[] found = new boolean[rs.getMetaData ().getColumnCount ()];
+         if (rs.next ()) {
+            for (int i = 0; i < found.length; ++i)
+               found[i] = rs.getBoolean (i + 1);
+         }//end if
+         rs.close ();
+         ok = true;
+         return found;
+      }catch (SQLException e) {
+         conn.failed (e);
+         throw e;
+      }finally {
+         finish ("existsAll", query, params, start, ok);
+         conn.statements ().release (stmt);
+         this._pool.release (conn);
+      }//end try
+   }//end existsAll
 
+   /*
+    * Saves every row of a result set as a list of attribute values.
+    */
+   private List<List<String>> readResult (ResultSet rs) throws SQLException {
       /*
        ** obtains the metadata object for the returned result set.  The metadata
        ** contains row and column info.
        */
       ResultSetMetaData rsmd = rs.getMetaData ();
       int numCol = rsmd.getColumnCount ();
-      int rowCount = 0;
 
       // iterates through the result set and saves the data returned by the query.
-      boolean outputHeader = false;
       List<List<String>> result  = new ArrayList<List<String>>();
       while (rs.next()){
         List<String> record = new ArrayList<String>();
@@ -172,9 +855,8 @@ public class Hotel {
 			record.add(rs.getString (i));
         result.add(record);
       }//end while
-      stmt.close ();
       return result;
-   }//end executeQueryAndReturnResult
+   }//end readResult
 
    /**
     * Method to execute an input query SQL instruction (i.e. SELECT).  This
@@ -185,58 +867,425 @@ public class Hotel {
     * @throws java.sql.SQLException when failed to execute the query
     */
    public int executeQuery (String query) throws SQLException {
-       // creates a statement object
-       Statement stmt = this._connection.createStatement ();
+       long start = System.nanoTime ();
+       boolean ok = false;
+       PooledConnection conn = this._pool.borrow ();
+       try {
+          // creates a statement object
+          Statement stmt = conn.connection ().createStatement ();
+
+          // issues the query instruction
+          ResultSet rs = stmt.executeQuery (query);
+
+          int rowCount = 0;
+
+          // iterates through the result set and count nuber of results.
+          while (rs.next()){
+             rowCount++;
+          }//end while
+          stmt.close ();
+          ok = true;
+          return rowCount;
+       }catch (SQLException e) {
+          conn.failed (e);
+          throw e;
+       }finally {
+          finish ("executeQuery", query, null, start, ok);
+          this._pool.release (conn);
+       }//end try
+   }
+
+   /**
+    * Method to execute a parameterized query template (i.e. SELECT) through
+    * the statement cache and return the number of results
+    *
+    * @param query the parameterized query string
+    * @param params the values bound to the query parameters, in order
+    * @return the number of rows returned
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public int executeQuery (String query, Object... params) throws SQLException {
+      long start = System.nanoTime ();
+      boolean ok = false;
+      PooledConnection conn = this._pool.borrow ();
+      PreparedStatement stmt = null;
+      try {
+         stmt = conn.statements ().prepare (query);
+         bind (stmt, params);
+         ResultSet rs = stmt.executeQuery ();
+         int rowCount = 0;
+         while (rs.next ()){
+            rowCount++;
+         }//end while
+         rs.close ();
+         ok = true;
+         return rowCount;
+      }catch (SQLException e) {
+         conn.failed (e);
+         throw e;
+      }finally {
+         finish ("executeQuery", query, params, start, ok);
+         conn.statements ().release (stmt);
+         this._pool.release (conn);
+      }//end try
+   }//end executeQuery
 
-       // issues the query instruction
-       ResultSet rs = stmt.executeQuery (query);
+   /*
+    * Prints one page of the booking history. One row more than the page is
+    * requested to tell whether another page follows.
+    */
+   private BookingPage printBookingPage (Date lowerBound, Date upperBound, BookingPage after, int pageSize) throws SQLException {
+      if (this._shards != null) {
+         // the next pageSize rows of every shard hold the next page of all.
+         TextRows text = new TextRows();
+         List<String[]> rows = this._shards.scatter (Queries.HOTEL_BOOKING_HISTORY_PAGE, text, lowerBound, upperBound,
+            after.getLastDate (), after.getLastBookingID (), pageSize + 1);
+         Collections.sort (rows, BY_BOOKING);
+         boolean more = rows.size () > pageSize;
+         if (more)
+            rows = rows.subList (0, pageSize);
+         if (rows.isEmpty ())
+            return new BookingPage(after.getLastDate (), after.getLastBookingID (), 0, false);
+         printRows (text.columns, rows);
+         String[] last = rows.get (rows.size () - 1);
+         return new BookingPage(Date.valueOf (last[4].trim ()), Integer.parseInt (last[0].trim ()), rows.size (), more);
+      }//end if
 
-       int rowCount = 0;
+      PooledConnection conn = this._pool.borrow ();
+      PreparedStatement stmt = null;
+      try {
+         stmt = conn.statements ().prepare (Queries.HOTEL_BOOKING_HISTORY_PAGE);
+         bind (stmt, new Object[] { lowerBound, upperBound, after.getLastDate (),
+                                    after.getLastBookingID (), pageSize + 1 });
+         ResultSet rs = stmt.executeQuery ();
+         String[] last = new String[5];
+         int rowCount = printResult (rs, pageSize, last);
+         boolean more = rowCount == pageSize && rs.next ();
+         rs.close ();
+         if (rowCount == 0)
+            return new BookingPage(after.getLastDate (), after.getLastBookingID (), 0, false);
+         return new BookingPage(Date.valueOf (last[4].trim ()), Integer.parseInt (last[0].trim ()), rowCount, more);
+      }catch (SQLException e) {
+         conn.failed (e);
+         throw e;
+      }finally {
+         conn.statements ().release (stmt);
+         this._pool.release (conn);
+      }//end try
+   }//end printBookingPage
 
-       // iterates through the result set and count nuber of results.
-       while (rs.next()){
-          rowCount++;
-       }//end while
-       stmt.close ();
-       return rowCount;
-   }
+   /*
+    * Prints the five earliest bookings of a customer, billed at the room
+    * prices of the catalog.
+    */
+   private int printRecentBookings (int userID) throws SQLException {
+      List<Object[]> rows = executeQueryOnShards (Queries.RECENT_CUSTOMER_BOOKINGS, BOOKED_ROOM, userID);
+      if (this._shards != null) {
+         // the first five of every shard hold the first five of all.
+         Collections.sort (rows, BY_BOOKING_DATE);
+         if (rows.size () > 5)
+            rows = rows.subList (0, 5);
+      }//end if
+      if (rows.isEmpty ())
+         return 0;
+      StringBuilder buffer = new StringBuilder(OUTPUT_BUFFER_SIZE);
+      buffer.append ("hotel\troom\tbookingdate\tbillinginfo\t").append (LINE_SEPARATOR);
+      for (Object[] row : rows) {
+         int hotelID = (Integer) row[0];
+         int roomNumber = (Integer) row[1];
+         buffer.append (hotelID).append ('\t').append (roomNumber).append ('\t')
+               .append (row[2]).append ('\t').append (shardFor (hotelID)._catalog.price (hotelID, roomNumber))
+               .append ('\t').append (LINE_SEPARATOR);
+      }//end for
+      this._out.append (buffer);
+      this._out.flush ();
+      return rows.size ();
+   }//end printRecentBookings
+
+   // reads a (hotelID, roomNumber, bookingDate) row.
+   static final RowMapper<Object[]> BOOKED_ROOM = new RowMapper<Object[]>() {
+      public Object[] map (ResultSet rs) throws SQLException {
+         return new Object[] { rs.getInt (1), rs.getInt (2), rs.getDate (3) };
+      }
+   };
+
+   // orders BOOKED_ROOM rows by bookingDate.
+   static final Comparator<Object[]> BY_BOOKING_DATE = new Comparator<Object[]>() {
+      public int compare (Object[] a, Object[] b) {
+         return ((Date) a[2]).compareTo ((Date) b[2]);
+      }
+   };
+
+   /*
+    * Reads rows as the strings printResult prints and remembers the column
+    * names, so that rows gathered from several shards can be merged and
+    * then printed as if one query had returned them.
+    */
+   private static final class TextRows implements RowMapper<String[]> {
+      volatile String[] columns;
+
+      public String[] map (ResultSet rs) throws SQLException {
+         ResultSetMetaData rsmd = rs.getMetaData ();
+         int numCol = rsmd.getColumnCount ();
+         if (this.columns == null) {
+            String[] names = new String[numCol];
+            for (int i = 1; i <= numCol; ++i)
+               names[i - 1] = rsmd.getColumnName (i);
+            this.columns = names;
+         }//end if
+         String[] row = new String[numCol];
+         for (int i = 1; i <= numCol; ++i)
+            row[i - 1] = rs.getString (i);
+         return row;
+      }
+   }//end TextRows
+
+   // orders hotels by their distance column.
+   private static final Comparator<String[]> BY_DISTANCE = new Comparator<String[]>() {
+      public int compare (String[] a, String[] b) {
+         return Double.compare (Double.parseDouble (a[3].trim ()), Double.parseDouble (b[3].trim ()));
+      }
+   };
+
+   // orders free rooms by their distance, then price, hotel and room columns.
+   private static final Comparator<String[]> BY_DISTANCE_AND_PRICE = new Comparator<String[]>() {
+      public int compare (String[] a, String[] b) {
+         int c = Double.compare (Double.parseDouble (a[4].trim ()), Double.parseDouble (b[4].trim ()));
+         for (int i : new int[] { 3, 0, 2 }) {
+            if (c != 0)
+               break;
+            c = Integer.compare (Integer.parseInt (a[i].trim ()), Integer.parseInt (b[i].trim ()));
+         }//end for
+         return c;
+      }
+   };
+
+   // orders room updates by their updatedOn column.
+   private static final Comparator<String[]> BY_UPDATE_TIME = new Comparator<String[]>() {
+      public int compare (String[] a, String[] b) {
+         return Timestamp.valueOf (a[3].trim ()).compareTo (Timestamp.valueOf (b[3].trim ()));
+      }
+   };
+
+   // orders the booking history by (bookingDate, bookingID).
+   private static final Comparator<String[]> BY_BOOKING = new Comparator<String[]>() {
+      public int compare (String[] a, String[] b) {
+         int c = Date.valueOf (a[4].trim ()).compareTo (Date.valueOf (b[4].trim ()));
+         return c != 0 ? c : Integer.compare (Integer.parseInt (a[0].trim ()), Integer.parseInt (b[0].trim ()));
+      }
+   };
+
+   /*
+    * Outputs rows gathered with TextRows in the format of printResult.
+    */
+   private int printRows (String[] columns, List<String[]> rows) {
+      if (rows.isEmpty ())
+         return 0;
+      StringBuilder buffer = new StringBuilder(OUTPUT_BUFFER_SIZE);
+      for (String column : columns)
+         buffer.append (column).append ('\t');
+      buffer.append (LINE_SEPARATOR);
+      for (String[] row : rows) {
+         for (String value : row)
+            buffer.append (value).append ('\t');
+         buffer.append (LINE_SEPARATOR);
+         if (buffer.length () >= OUTPUT_BUFFER_SIZE) {
+            this._out.append (buffer);
+            buffer.setLength (0);
+         }//end if
+      }//end for
+      this._out.append (buffer);
+      this._out.flush ();
+      return rows.size ();
+   }//end printRows
+
+   /*
+    * Runs a query on every shard, orders the rows of all shards and prints
+    * the first limit of them, or the last limit when last is set.
+    */
+   private int printFromShards (String query, Comparator<String[]> order, int limit, boolean last, Object... params) throws SQLException {
+      TextRows text = new TextRows();
+      List<String[]> rows = this._shards.scatter (query, text, params);
+      if (order != null)
+         Collections.sort (rows, order);
+      if (rows.size () > limit)
+         rows = last ? rows.subList (rows.size () - limit, rows.size ()) : rows.subList (0, limit);
+      return printRows (text.columns, rows);
+   }//end printFromShards
+
+   /*
+    * Applies room updates and logs those that matched a room, in one
+    * transaction.
+    */
+   private int applyRoomUpdates (int managerID, List<RoomUpdate> updates) throws SQLException {
+      PooledConnection conn = this._pool.borrow ();
+      PreparedStatement update = null;
+      PreparedStatement log = null;
+      try {
+         conn.connection ().setAutoCommit (false);
+         update = conn.statements ().prepare (Queries.UPDATE_ROOM);
+         for (RoomUpdate room : updates) {
+            bind (update, new Object[] { room.getPrice (), room.getImageURL (),
+                                         room.getHotelID (), room.getRoomNumber () });
+            update.addBatch ();
+         }//end for
+         int[] counts;
+         try {
+            counts = update.executeBatch ();
+         }finally {
+            update.clearBatch ();
+         }//end try
+
+         Timestamp timestamp = new Timestamp(System.currentTimeMillis());
+         int updated = 0;
+         log = conn.statements ().prepare (Queries.LOG_ROOM_UPDATE);
+         for (int i = 0; i < counts.length; ++i) {
+            if (counts[i] == 0)
+               continue;
+            RoomUpdate room = updates.get (i);
+            bind (log, new Object[] { managerID, room.getHotelID (), room.getRoomNumber (), timestamp });
+            log.addBatch ();
+            ++updated;
+         }//end for
+         if (updated > 0) {
+            try {
+               log.executeBatch ();
+            }finally {
+               log.clearBatch ();
+            }//end try
+         }//end if
+         conn.connection ().commit ();
+         return updated;
+      }catch (SQLException e) {
+         conn.failed (e);
+         throw e;
+      }finally {
+         // rolls back what was not committed.
+         conn.statements ().release (log);
+         conn.statements ().release (update);
+         this._pool.release (conn);
+      }//end try
+   }//end applyRoomUpdates
 
    /**
-    * Method to fetch the last value from sequence. This
-    * method issues the query to the DBMS and returns the current
-    * value of sequence used for autogenerated keys
+    * Redirects the query results printed by executeQueryAndPrintResult.
     *
-    * @param sequence name of the DB sequence
-    * @return current value of a sequence
+    * @param out the stream to print to
+    */
+   public void setOutput(PrintStream out){
+      this._out = out;
+      if (this._shards != null) {
+         for (int i = 1; i < this._shards.size(); ++i)
+            this._shards.get(i).setOutput(out);
+      }//end if
+   }//end setOutput
+
+   /**
+    * @return the room availability cache of this instance
+    */
+   public AvailabilityCache getAvailability(){
+      return this._availability;
+   }//end getAvailability
+
+   /**
+    * @param hotelID a hotel
+    * @return the Hotel instance of the shard the hotel lives on; this one
+    *         when there are no shards
+    */
+   public Hotel shardFor(int hotelID){
+      return this._shards == null ? this : this._shards.forHotel(hotelID);
+   }//end shardFor
+
+   /**
+    * @return the shard router, or null when there are no shards
+    */
+   public ShardRouter getShards(){
+      return this._shards;
+   }//end getShards
+
+   /**
+    * Method to execute a parameterized query template on every shard at
+    * the same time, for reads that span hotels. Without shards this is
+    * executeQueryAndMap.
+    *
+    * @param query the parameterized query string
+    * @param mapper maps the current row to an object
+    * @param params the values bound to the query parameters, in order
+    * @return the mapped rows of every shard, shard by shard
     * @throws java.sql.SQLException when failed to execute the query
     */
-   public int getCurrSeqVal(String sequence) throws SQLException {
-      Statement stmt = this._connection.createStatement ();
+   public <T> List<T> executeQueryOnShards (String query, RowMapper<T> mapper, Object... params) throws SQLException {
+      if (this._shards == null)
+         return executeQueryAndMap (query, mapper, params);
+      return this._shards.scatter (query, mapper, params);
+   }//end executeQueryOnShards
 
-      ResultSet rs = stmt.executeQuery (String.format("Select currval('%s')", sequence));
-      if (rs.next())
-         return rs.getInt(1);
-      return -1;
-   }
+   /**
+    * @return the room catalog of this instance
+    */
+   public RoomCatalog getRoomCatalog(){
+      return this._catalog;
+   }//end getRoomCatalog
+
+   /**
+    * @return the top customers cache of this instance
+    */
+   public RegularCustomers getRegularCustomers(){
+      return this._regulars;
+   }//end getRegularCustomers
+
+   /**
+    * @return the connection pool shared by all sessions of this instance
+    */
+   public ConnectionPool getPool(){
+      return this._pool;
+   }//end getPool
 
-   public int getNewUserID(String sql) throws SQLException {
-      Statement stmt = this._connection.createStatement ();
-      ResultSet rs = stmt.executeQuery (sql);
-      if (rs.next())
-         return rs.getInt(1);
-      return -1;
-   }
    /**
-    * Method to close the physical connection if it is open.
+    * @return a number that changes whenever a user's role or the manager of
+    *         a hotel may have changed
+    */
+   public long getPermissionChanges(){
+      return this._root._permissionChanges.get();
+   }//end getPermissionChanges
+
+   /**
+    * Tells the sessions that a user's role or the manager of a hotel may
+    * have changed; called by the room catalog listener of every shard.
+    */
+   public void permissionsChanged(){
+      this._root._permissionChanges.incrementAndGet();
+   }//end permissionsChanged
+
+   /**
+    * @return the per operation calls, errors and latencies of this instance
+    */
+   public Metrics getMetrics(){
+      return this._metrics;
+   }//end getMetrics
+
+   /**
+    * Method to close the connection pool and its physical connections.
     */
    public void cleanup(){
-      try{
-         if (this._connection != null){
-            this._connection.close ();
-         }//end if
-      }catch (SQLException e){
-         // ignored.
-      }//end try
+      if (this._shards != null){
+         this._shards.close ();
+      }//end if
+      if (this._bookingQueue != null){
+         this._bookingQueue.close ();
+      }//end if
+      if (this._catalog != null){
+         this._catalog.close ();
+      }//end if
+      if (this._pool != null){
+         this._pool.close ();
+      }//end if
+      if (this._slowLog != null){
+         this._slowLog.close ();
+      }//end if
+      if (this._ownsMetrics){
+         this._metrics.close ();
+      }//end if
    }//end cleanup
 
    /**
@@ -245,16 +1294,19 @@ public class Hotel {
     * @param args the command line arguments this inclues the <mysql|pgsql> <login file>
     */
    public static void main (String[] args) {
-      if (args.length != 3) {
+      boolean batch = args.length >= 5 && args.length <= 6 && args[3].equals("--batch");
+      boolean serve = args.length >= 5 && args.length <= 6 && args[3].equals("--serve");
+      if (args.length != 3 && !batch && !serve) {
          System.err.println (
             "Usage: " +
             "java [-classpath <classpath>] " +
             Hotel.class.getName () +
-            " <dbname> <port> <user>");
+            " <dbname> <port> <user> [--batch <workload file> [threads] | --serve <http port> [threads]]");
          return;
       }//end if
 
-      Greeting();
+      if (!batch && !serve)
+         Greeting();
       Hotel esql = null;
       try{
          // use postgres JDBC driver.
@@ -266,6 +1318,18 @@ public class Hotel {
          String user = args[2];
          esql = new Hotel (dbname, dbport, user, "");
 
+         if (batch) {
+            int threads = args.length == 6 ? Integer.parseInt(args[5]) : 1;
+            BatchRunner.run(esql, args[4], threads);
+            return;
+         }//end if
+
+         if (serve) {
+            int threads = args.length == 6 ? Integer.parseInt(args[5]) : HotelServer.THREADS;
+            HotelServer.run(esql, Integer.parseInt(args[4]), threads);
+            return;
+         }//end if
+
          boolean keepon = true;
          while(keepon) {
             // These are sample SQL statements
@@ -274,7 +1338,7 @@ public class Hotel {
             System.out.println("1. Create user");
             System.out.println("2. Log in");
             System.out.println("9. < EXIT");
-            String authorisedUser = null;
+            Session authorisedUser = null;
             switch (readChoice()){
                case 1: CreateUser(esql); break;
                case 2: authorisedUser = LogIn(esql); break;
@@ -298,6 +1362,7 @@ public class Hotel {
                 System.out.println("8. View 5 regular Customers");
                 System.out.println("9. Place room repair Request to a company");
                 System.out.println("10. View room repair Requests history");
+                System.out.println("11. Search free rooms near a location");
 
                 System.out.println(".........................");
                 System.out.println("20. Log out");
@@ -312,6 +1377,7 @@ public class Hotel {
                    case 8: viewRegularCustomers(esql, authorisedUser); break;
                    case 9: placeRoomRepairRequests(esql, authorisedUser); break;
                    case 10: viewRoomRepairHistory(esql, authorisedUser); break;
+                   case 11: searchRooms(esql); break;
                    case 20: usermenu = false; break;
                    default : System.out.println("Unrecognized choice!"); break;
                 }
@@ -324,6 +1390,8 @@ public class Hotel {
          // make sure to cleanup the created table and close the connection.
          try{
             if(esql != null) {
+               System.out.println(esql.getPool());
+               esql.getMetrics().summary(System.out);
                System.out.print("Disconnecting from database...");
                esql.cleanup ();
                System.out.println("Done\n\nBye !");
@@ -361,6 +1429,23 @@ public class Hotel {
       return input;
    }//end readChoice
 
+   // reads a number of nights, 1 when nothing is entered.
+   private static int readNights() throws java.io.IOException {
+      while (true) {
+         String input = in.readLine().trim();
+         if (input.isEmpty())
+            return 1;
+         try {
+            int nights = Integer.parseInt(input);
+            if (nights >= 1 && nights <= MAX_STAY_NIGHTS)
+               return nights;
+         }catch (NumberFormatException e) {
+            // asked again below.
+         }
+         System.out.print("\nPlease enter a number of nights from 1 to " + MAX_STAY_NIGHTS + ": ");
+      }//end while
+   }//end readNights
+
    /*
     * Creates a new user
     **/
@@ -370,10 +1455,7 @@ public class Hotel {
          String name = in.readLine();
          System.out.print("\tEnter password: ");
          String password = in.readLine(); 
-         String type="Customer";
-			String query = String.format("INSERT INTO USERS (name, password, userType) VALUES ('%s','%s', '%s')", name, password, type);
-         esql.executeUpdate(query);
-         System.out.println ("User successfully created with userID = " + esql.getNewUserID("SELECT last_value FROM users_userID_seq"));
+         System.out.println ("User successfully created with userID = " + createUser(esql, name, password));
          
       }catch(Exception e){
          System.err.println (e.getMessage ());
@@ -383,20 +1465,16 @@ public class Hotel {
 
    /*
     * Check log in credentials for an existing user
-    * @return User login or null is the user does not exist
+    * @return the session of the user, or null if the credentials are wrong
     **/
-   public static String LogIn(Hotel esql){
+   public static Session LogIn(Hotel esql){
       try{
          System.out.print("\tEnter userID: ");
          String userID = in.readLine();
          System.out.print("\tEnter password: ");
          String password = in.readLine();
 
-         String query = String.format("SELECT * FROM USERS WHERE userID = '%s' AND password = '%s'", userID, password);
-         int userNum = esql.executeQuery(query);
-         if (userNum > 0)
-            return userID;
-         return null;
+         return Session.open(esql, Integer.parseInt(userID.trim()), password);
       }catch(Exception e){
          System.err.println (e.getMessage ());
          return null;
@@ -424,12 +1502,12 @@ public class Hotel {
             else break;
          }
 
-         String query = String.format(
-            "SELECT r.roomNumber as room, r.price " +
-            "FROM Rooms r " +
-            "WHERE r.hotelID = %s AND NOT EXISTS (SELECT b.roomNumber " +
-            "FROM RoomBookings b WHERE r.roomNumber = b.roomNumber AND b.bookingDate = '%s');", hotelID, date);
-         int available_rooms = esql.executeQueryAndPrintResult(query);
+         System.out.print("\tEnter the number of nights: ");
+         int nights = readNights();
+         Date checkIn = parseDate(date);
+         int available_rooms = nights == 1
+            ? viewRooms(esql, Integer.parseInt(hotelID.trim()), checkIn)
+            : viewRooms(esql, Integer.parseInt(hotelID.trim()), checkIn, addDays(checkIn, nights));
       }catch(Exception e){
          System.err.println (e.getMessage ());
       }
@@ -458,14 +1536,60 @@ public class Hotel {
          }
          System.out.println("\nLongitude: " + longitude);
 
-         String query = String.format("SELECT hotelID, hotelName, dateEstablished FROM Hotel WHERE calculate_distance(%f, %f, latitude, longitude) <= 30;", latitude, longitude);
-         int rows = esql.executeQueryAndPrintResult(query);
+         int rows = viewHotels(esql, latitude, longitude);
          System.out.println("\nTotal number of hotels within 30 units of your location: " + rows);
       }catch(Exception e){
          System.err.println (e.getMessage());
       }
    }
-   public static void bookRooms(Hotel esql, String userID) 
+   public static void searchRooms(Hotel esql)
+   {
+      try{
+         double latitude = 100;
+         double longitude = 1000;
+         Scanner scanner = new Scanner(System.in);
+         System.out.print("\nEnter Latitude: ");
+         while(latitude > 90 || latitude < -90)
+         {
+            latitude = Math.round(scanner.nextDouble() * 1e6) / 1e6;
+            if (latitude > 90 || latitude < -90)
+            System.out.print("\nInvalid latitude. Please enter another value: ");
+         }
+         System.out.print("\nEnter Longitude: ");
+         while(longitude > 180 || longitude < -180)
+         {
+            longitude = Math.round(scanner.nextDouble() * 1e6) / 1e6;
+            if (longitude > 180 || longitude < -180)
+            System.out.print("\nInvalid longitude. Please enter another value: ");
+         }
+         String date = "";
+         String dateRegex = "^(0?[1-9]|1[0-2])\\/(0?[1-9]|[12][0-9]|3[01])\\/\\d{4}$";
+         Pattern pattern = Pattern.compile(dateRegex);
+         System.out.print("\nEnter the first night in the format MM/DD/YYYY: ");
+         Matcher matcher = pattern.matcher(date);
+
+         while (!matcher.find())
+         {
+            date = in.readLine();
+            matcher = pattern.matcher(date);
+            if (!matcher.find())
+            System.out.print("\nInvalid date. Please enter another date: ");
+            else break;
+         }
+         System.out.print("\nEnter the number of nights: ");
+         int nights = Math.max(1, scanner.nextInt());
+         System.out.print("\nEnter the maximum price: ");
+         int maxPrice = scanner.nextInt();
+
+         Date checkIn = parseDate(date);
+         Date checkOut = addDays(checkIn, nights);
+         int rows = searchRooms(esql, latitude, longitude, HOTEL_SEARCH_RADIUS, checkIn, checkOut, maxPrice, SEARCH_LIMIT);
+         System.out.println("\nTotal number of free rooms found: " + rows);
+      }catch(Exception e){
+         System.err.println (e.getMessage());
+      }
+   }
+   public static void bookRooms(Hotel esql, Session session) 
    {
       try{
          Scanner scanner = new Scanner(System.in);
@@ -490,83 +1614,70 @@ public class Hotel {
             else break;
          }
 
-         String query = String.format(
-            "SELECT H.hotelID, R.price, R.roomNumber " +
-            "FROM Rooms R, Hotel H " +
-            "WHERE H.hotelID = %d AND R.hotelID = %d AND R.roomNumber = %d AND NOT EXISTS(" +
-            "SELECT B.roomNumber " +
-            "FROM RoomBookings B " +
-            "WHERE H.hotelID = %d AND B.roomNumber = %d AND bookingDate = '%s');", hotelID, hotelID, roomNumber, hotelID, roomNumber, date);
-         
-         int rows = esql.executeQueryAndPrintResult(query);
-         
-
-         if (rows == 0)
+         System.out.println("Enter the number of nights: ");
+         int nights = readNights();
+         Date checkIn = parseDate(date);
+         BookingResult result = nights == 1
+            ? book(esql, session.getUserID(), hotelID, roomNumber, checkIn)
+            : bookStay(esql, session.getUserID(), hotelID, roomNumber, checkIn, addDays(checkIn, nights));
+         if (result.getStatus() == BookingResult.Status.NO_SUCH_ROOM)
          {
-            System.out.println("\nSorry, this room is not available at this date.");
+            System.out.println("\nThere is no room number " + roomNumber + " in hotel " + hotelID + ".");
+            return;
+         }
+         if (!result.isBooked())
+         {
+            System.out.println(nights == 1 ? "\nSorry, this room is not available at this date."
+               : "\nSorry, this room is not available for all of these nights.");
             return;
          }
 
-         String query2 = String.format(
-            "INSERT INTO RoomBookings (customerID, hotelID, roomNumber, bookingDate) VALUES ('%s', %d, %d, '%s');",
-            userID, hotelID, roomNumber, date
-         );
-
-         esql.executeUpdate(query2);
-         System.out.println("\nBooking made for " + date + " in Hotel " + hotelID + ", Room " + roomNumber);
+         System.out.println("\nBooking made for " + date + (nights == 1 ? "" : " and " + (nights - 1) + " more night(s)") +
+            " in Hotel " + hotelID + ", Room " + roomNumber +
+            " at price " + result.getPrice() + " (bookingID " + result.getBookingID() + ")");
          
       }catch(Exception e){
          System.err.println (e.getMessage());
       }
    }
-   public static void viewRecentBookingsfromCustomer(Hotel esql, String userID) {
+   public static void viewRecentBookingsfromCustomer(Hotel esql, Session session) {
       try{
          System.out.print("\tDisplaying your last 5 recent bookings... \n");
 
-         String query = String.format("SELECT * FROM (SELECT b.hotelID as hotel, b.roomNumber as room, b.bookingDate, r.price as billingInfo "+
-         "FROM RoomBookings b, Rooms r WHERE b.customerID = %s " +
-         "AND b.hotelID = r.hotelID AND b.roomNumber = r.roomNumber " +
-         "ORDER BY b.bookingDate LIMIT 5) as Top5 " +
-         "ORDER BY bookingDate ASC;", userID);
-
-         int top5bookings = esql.executeQueryAndPrintResult(query);
+         int top5bookings = viewRecentBookingsfromCustomer(esql, session.getUserID());
       }catch(Exception e){
          System.err.println (e.getMessage());
       }
    }
-   public static void updateRoomInfo(Hotel esql, String userID) {
+   public static void updateRoomInfo(Hotel esql, Session session) {
       try{
-         String user_query = String.format("SELECT u.userType FROM Users u WHERE u.userID = %s AND (u.userType = 'manager' OR u.userType = 'admin');", userID);
-         int user_type = esql.executeQuery(user_query);
-
-         if(user_type == 0){
+         int managerID = session.getUserID();
+         if(!session.isManager()){
+            session.invalidate();
             System.out.print("\tYou must be a manager to update room info.\n");
             return;
          }
 
-         int hotels_managed = 0;
+         boolean hotel_managed = false;
          String hotelID = "";
 
-         while(hotels_managed == 0){
+         while(!hotel_managed){
             System.out.print("\tEnter hotelID: ");
             hotelID = in.readLine();
-            String hotelstring = String.format("SELECT * FROM Hotel h WHERE h.managerUserID = %s " +
-            "AND h.hotelID = %s;", userID, hotelID);
-            hotels_managed = esql.executeQuery(hotelstring);
-            if(hotels_managed == 0){
+            hotel_managed = session.managesHotel(Integer.parseInt(hotelID.trim()));
+            if(!hotel_managed){
+               session.invalidate();
                System.out.print("\tPlease pick a hotel you manage.\n");
             }
          }
 
-         int room_exists = 0;
+         boolean room_exists = false;
          String roomNumber = "";
-         while(room_exists ==0){
+         while(!room_exists){
             System.out.print("\tEnter room number to update: ");
             roomNumber = in.readLine();
-            String roomstring = String.format("SELECT * FROM Rooms WHERE " +
-            "hotelID = %s AND roomNumber = %s;", hotelID, roomNumber);
-            room_exists = esql.executeQuery(roomstring);
-            if(room_exists == 0){
+            room_exists = roomExists(esql, Integer.parseInt(hotelID.trim()), Integer.parseInt(roomNumber.trim()));
+            if(!room_exists){
                String printthis = String.format("\tThere is no room number %s in hotel %s.\n", roomNumber, hotelID);
                System.out.print(printthis);
             }
@@ -577,16 +1688,8 @@ public class Hotel {
          System.out.print("\tUpdate image url: ");
          String image_url = in.readLine();
 
-         String query = String.format("UPDATE Rooms " +
-         "SET price = %s, imageURL = '%s' " +
-         "WHERE roomNumber = %s;", price, image_url, roomNumber);
-         esql.executeUpdate(query);
-
-         Timestamp temp = new Timestamp(System.currentTimeMillis());
-         String timestamp = temp.toString(); // just to be safe... i think it turns into a timestamp in postgre
-         String query2 = String.format("INSERT INTO RoomUpdatesLog (managerID, hotelID, roomNumber, updatedOn) " +
-         "VALUES (%s, %s, %s, '%s');", userID, hotelID, roomNumber, timestamp);
-         esql.executeUpdate(query2);
+         updateRoomInfo(esql, managerID, Integer.parseInt(hotelID.trim()),
+            Integer.parseInt(roomNumber.trim()), Integer.parseInt(price.trim()), image_url);
 
          System.out.print("\tRoom info has been successfully updated!\n");
 
@@ -594,37 +1697,27 @@ public class Hotel {
          System.err.println (e.getMessage ());
       }
    }
-   public static void viewRecentUpdates(Hotel esql, String userID) {
+   public static void viewRecentUpdates(Hotel esql, Session session) {
       try{
-         String user_query = String.format("SELECT u.userType FROM Users u WHERE u.userID = %s AND " +
-         "(u.userType = 'manager' OR u.userType = 'admin');", userID);
-         int user_type = esql.executeQuery(user_query);
-
-         if(user_type == 0){
+         int managerID = session.getUserID();
+         if(!session.isManager()){
+            session.invalidate();
             System.out.print("\tYou must be a manager to view update info.\n");
             return;
          }
 
          System.out.print("\tViewing the last 5 recent updates...\n");
-         String query3 = String.format("SELECT updateNumber as update, hotelID as hotel, " +
-         "roomNumber as room, updatedOn FROM (SELECT * FROM roomUpdatesLog WHERE managerID = %s " +
-         "ORDER BY updatedOn DESC LIMIT 5) AS last5 ORDER BY updatedOn ASC;", userID);
-         int last_updated = esql.executeQueryAndPrintResult(query3);
+         int last_updated = viewRecentUpdates(esql, managerID);
       }catch(Exception e){
          System.err.println (e.getMessage());
       }
    }
-   public static void viewBookingHistoryofHotel(Hotel esql, String userID) 
+   public static void viewBookingHistoryofHotel(Hotel esql, Session session) 
    {
       try{
-         String checkManager = String.format(
-            "SELECT userType " +
-            "FROM Users " +
-            "WHERE (userType = 'manager' OR userType = 'admin') AND userID = %s;", userID
-         );
-         int isManager = esql.executeQuery(checkManager);
-         if (isManager == 0)
+         if (!session.isManager())
          {
+            session.invalidate();
             System.out.println("\nYou do not have permission for this option!");
             return;
          }
@@ -658,32 +1751,35 @@ public class Hotel {
             else break;
          }
 
-         String query = String.format(
-            "SELECT B.bookingID, U.name, B.hotelID, B.roomNumber, B.bookingDate " +
-            "FROM RoomBookings B, Users U, Hotel H " +
-            "WHERE H.hotelID = B.hotelID AND B.customerID = U.userID " +
-            "AND B.bookingDate >= '%s' AND B.bookingDate <= '%s' " +
-            "ORDER BY B.bookingDate ASC;" , lowerBoundDate, upperBoundDate
-         );
-
-         int rows = esql.executeQueryAndPrintResult(query);
-         System.out.println("\nTotal number of bookings for your hotels within the range of " + lowerBoundDate + " and " + upperBoundDate + ": " + rows);
+         // show the history one page at a time, each page continuing after
+         // the last booking of the previous one.
+         Date lower = parseDate(lowerBoundDate);
+         Date upper = parseDate(upperBoundDate);
+         BookingPage page = BookingPage.FIRST;
+         int rows = 0;
+         while (true)
+         {
+            page = viewBookingHistoryPage(esql, lower, upper, page, HISTORY_PAGE_SIZE);
+            rows += page.getRows();
+            if (!page.hasMore())
+               break;
+            System.out.print("\nPress Enter for the next " + HISTORY_PAGE_SIZE + " bookings, or q to stop: ");
+            String answer = in.readLine();
+            if (answer == null || answer.trim().equalsIgnoreCase("q"))
+               break;
+         }
+         System.out.println("\nTotal number of bookings shown for your hotels within the range of " + lowerBoundDate + " and " + upperBoundDate + ": " + rows);
 
          }catch(Exception e){
          System.err.println (e.getMessage());
          }
    }
-   public static void viewRegularCustomers(Hotel esql, String userID) 
+   public static void viewRegularCustomers(Hotel esql, Session session) 
    {
       try{
-         String checkManager = String.format(
-            "SELECT userType " +
-            "FROM Users " +
-            "WHERE (userType = 'manager' OR userType = 'admin') AND userID = %s;", userID
-         );
-         int isManager = esql.executeQuery(checkManager);
-         if (isManager == 0)
+         if (!session.isManager())
          {
+            session.invalidate();
             System.out.println("\nYou do not have permission for this option!");
             return;
          }
@@ -692,59 +1788,39 @@ public class Hotel {
          System.out.println("\nEnter a hotel ID: ");
          hotelID = scanner.nextInt();
 
-         String checkIfManager = String.format(
-            "SELECT managerUserID " +
-            "FROM Hotel " +
-            "WHERE managerUserID = %s AND hotelID = %d;",
-            userID, hotelID
-         );
-
-         int managesHotel = esql.executeQuery(checkIfManager);
-
-         if (managesHotel == 0)
+         if (!session.managesHotel(hotelID))
          {
+            session.invalidate();
             System.out.println("\nYou do not manage this hotel!");
             return;
          }
 
-         String query = String.format(
-            "SELECT U.name, COUNT(*) as NumBookings " +
-            "FROM Users U, RoomBookings B " +
-            "WHERE U.userID = B.customerID AND B.hotelID = %d" +
-            "GROUP BY U.name " +
-            "ORDER BY NumBookings DESC " +
-            "LIMIT 5", hotelID
-         );
-
-         int rows = esql.executeQueryAndPrintResult(query);
+         int rows = viewRegularCustomers(esql, hotelID);
 
          }catch(Exception e){
          System.err.println (e.getMessage());
          }
    }
-   public static void placeRoomRepairRequests(Hotel esql, String userID) {
+   public static void placeRoomRepairRequests(Hotel esql, Session session) {
       try{
-         String user_query = String.format("SELECT u.userType FROM Users u WHERE u.userID = %s AND " +
-         "(u.userType = 'manager' OR u.userType = 'admin');", userID);
-         int user_type = esql.executeQuery(user_query);
-
-         if(user_type == 0){
+         int managerID = session.getUserID();
+         if(!session.isManager()){
+            session.invalidate();
             System.out.print("\tYou must be a manager to view update info.\n");
             return;
          }
 
          System.out.print("\tFill in the following information to submit a room repair request.\n");
 
-         int hotels_managed = 0;
+         boolean hotel_managed = false;
          String hotelID = "";
 
-         while(hotels_managed == 0){
+         while(!hotel_managed){
             System.out.print("\tEnter hotelID: ");
             hotelID = in.readLine();
-            String hotelstring = String.format("SELECT * FROM Hotel h WHERE h.managerUserID = %s " +
-            "AND h.hotelID = %s;", userID, hotelID);
-            hotels_managed = esql.executeQuery(hotelstring);
-            if(hotels_managed == 0){
+            hotel_managed = session.managesHotel(Integer.parseInt(hotelID.trim()));
+            if(!hotel_managed){
+               session.invalidate();
                System.out.print("\tPlease pick a hotel you manage.\n");
             }
          }
@@ -753,15 +1829,13 @@ public class Hotel {
 
          //System.out.print("\tEnter roomNumber: ");
          //String roomNumber = in.readLine();
-         int room_exists = 0;
+         boolean room_exists = false;
          String roomNumber = "";
-         while(room_exists ==0){
+         while(!room_exists){
             System.out.print("\tEnter room number: ");
             roomNumber = in.readLine();
-            String roomstring = String.format("SELECT * FROM Rooms WHERE " +
-            "hotelID = %s AND roomNumber = %s;", hotelID, roomNumber);
-            room_exists = esql.executeQuery(roomstring);
-            if(room_exists == 0){
+            room_exists = roomExists(esql, Integer.parseInt(hotelID.trim()), Integer.parseInt(roomNumber.trim()));
+            if(!room_exists){
                String printthis = String.format("\tThere is no room number %s in hotel %s.\n", roomNumber, hotelID);
                System.out.print(printthis);
             }
@@ -770,45 +1844,552 @@ public class Hotel {
          System.out.print("\tEnter companyID: ");
          String companyID = in.readLine();
 
-         //update RoomRepairs
-         String repair = String.format("INSERT INTO roomRepairs (companyID, hotelID, roomNumber, repairDate) " +
-         "VALUES (%s, %s, %s, (SELECT CURRENT_DATE));", companyID, hotelID, roomNumber);
-         esql.executeUpdate(repair);
+         int repairID = placeRoomRepairRequests(esql, managerID, Integer.parseInt(hotelID.trim()),
+            Integer.parseInt(roomNumber.trim()), Integer.parseInt(companyID.trim()));
 
-         //update RoomRepairRequests
-         String repair_id = "SELECT count(*) FROM roomRepairs;";
-         List<List<String>> repairID = esql.executeQueryAndReturnResult(repair_id);
-         String query2 = String.format("INSERT INTO roomRepairRequests (managerID, repairID) " +
-         "VALUES (%s, %s);", userID, repairID.get(0).get(0));
-         esql.executeUpdate(query2);
-
-         System.out.print("\tRequest has been submitted!\n");
+         System.out.print("\tRequest has been submitted! (repairID " + repairID + ")\n");
       }catch(Exception e){
          System.err.println (e.getMessage());
       }
    }
-   public static void viewRoomRepairHistory(Hotel esql, String userID) {
+   public static void viewRoomRepairHistory(Hotel esql, Session session) {
       try{
-         String user_query = String.format("SELECT u.userType FROM Users u WHERE u.userID = %s AND " +
-         "(u.userType = 'manager' OR u.userType = 'admin');", userID);
-         int user_type = esql.executeQuery(user_query);
-
-         if(user_type == 0){
+         int managerID = session.getUserID();
+         if(!session.isManager()){
+            session.invalidate();
             System.out.print("\tYou must be a manager to view update info.\n");
             return;
          }
 
          System.out.print("\tViewing room request history...\n");
-         String query = String.format("SELECT a.companyID as company, " +
-         "a.hotelID as hotel, a.roomNumber as room, a.repairDate " +
-         "FROM roomRepairs a, roomRepairRequests b " +
-         "WHERE b.managerID = %s " +
-         "AND  a.repairID = b.repairID;", userID);
-         int last_updated = esql.executeQueryAndPrintResult(query);
+         int last_updated = viewRoomRepairHistory(esql, managerID);
       }catch(Exception e){
          System.err.println (e.getMessage());
       }
    }
 
-}//end Hotel
+   /*
+    * The operations below carry out the menu options once their input has
+    * been read. They do not prompt, so the menu and the batch mode share
+    * them. Query results are printed to the output of the Hotel instance.
+    **/
 
+   public static int createUser(Hotel esql, String name, String password) throws SQLException {
+      long start = System.nanoTime();
+      boolean ok = false;
+      try {
+         String type="Customer";
+         int result = esql.executeInsertAndReturnKey(Queries.CREATE_USER, name, password, type);
+         // users are kept on every shard, under the userID shard 0 gave.
+         if (esql._shards != null) {
+            for (int i = 1; i < esql._shards.size(); ++i)
+               esql._shards.get(i).executeUpdate(Queries.COPY_USER, result, name, password, type);
+         }
+         ok = true;
+         return result;
+      }finally {
+         esql._metrics.record("createUser", start, ok);
+      }
+   }
+
+   public static boolean checkCredentials(Hotel esql, int userID, String password) throws SQLException {
+      long start = System.nanoTime();
+      boolean ok = false;
+      try {
+         boolean result = esql.exists(Queries.LOG_IN, userID, password);
+         ok = true;
+         return result;
+      }finally {
+         esql._metrics.record("checkCredentials", start, ok);
+      }
+   }
+
+   public static boolean isManager(Hotel esql, int userID) throws SQLException {
+      long start = System.nanoTime();
+      boolean ok = false;
+      try {
+         boolean result = esql.exists(Queries.IS_MANAGER, userID);
+         ok = true;
+         return result;
+      }finally {
+         esql._metrics.record("isManager", start, ok);
+      }
+   }
+
+   public static boolean managesHotel(Hotel esql, int userID, int hotelID) throws SQLException {
+      long start = System.nanoTime();
+      boolean ok = false;
+      try {
+         boolean result = esql.shardFor(hotelID).exists(Queries.MANAGES_HOTEL, userID, hotelID);
+         ok = true;
+         return result;
+      }finally {
+         esql._metrics.record("managesHotel", start, ok);
+      }
+   }
+
+   public static boolean roomExists(Hotel esql, int hotelID, int roomNumber) throws SQLException {
+      long start = System.nanoTime();
+      boolean ok = false;
+      try {
+         boolean result = esql.shardFor(hotelID).exists(Queries.ROOM_EXISTS, hotelID, roomNumber);
+         ok = true;
+         return result;
+      }finally {
+         esql._metrics.record("roomExists", start, ok);
+      }
+   }
+
+   // isManager and managesHotel in one round trip.
+   public static boolean canManageHotel(Hotel esql, int userID, int hotelID) throws SQLException {
+      long start = System.nanoTime();
+      boolean ok = false;
+      try {
+         boolean[] checks = esql.shardFor(hotelID).existsAll(Queries.CAN_MANAGE_HOTEL, userID, userID, hotelID);
+         boolean result = checks[0] && checks[1];
+         ok = true;
+         return result;
+      }finally {
+         esql._metrics.record("canManageHotel", start, ok);
+      }
+   }
+
+   // isManager, managesHotel and roomExists in one round trip.
+   public static boolean canManageRoom(Hotel esql, int userID, int hotelID, int roomNumber) throws SQLException {
+      long start = System.nanoTime();
+      boolean ok = false;
+      try {
+         boolean[] checks = esql.shardFor(hotelID).existsAll(Queries.CAN_MANAGE_ROOM, userID, userID, hotelID, hotelID, roomNumber);
+         boolean result = checks[0] && checks[1] && checks[2];
+         ok = true;
+         return result;
+      }finally {
+         esql._metrics.record("canManageRoom", start, ok);
+      }
+   }
+
+   /*
+    * Lists the hotels within HOTEL_SEARCH_RADIUS of a location, nearest
+    * first, searching all shards at once
+    * @return the number of hotels found
+    **/
+   public static int viewHotels(Hotel esql, double latitude, double longitude) throws SQLException {
+      long start = System.nanoTime();
+      boolean ok = false;
+      try {
+         double r = HOTEL_SEARCH_RADIUS;
+         Object[] params = { latitude, longitude, latitude - r, longitude - r, latitude + r, longitude + r,
+                             latitude, longitude, r, latitude, longitude };
+         int result = esql._shards == null
+            ? esql.executeQueryAndPrintResult(Queries.HOTELS_NEARBY, params)
+            : esql.printFromShards(Queries.HOTELS_NEARBY, BY_DISTANCE, Integer.MAX_VALUE, false, params);
+         ok = true;
+         return result;
+      }finally {
+         esql._metrics.record("viewHotels", start, ok);
+      }
+   }
+
+   public static int viewRooms(Hotel esql, int hotelID, Date date) throws SQLException {
+      long start = System.nanoTime();
+      boolean ok = false;
+      try {
+         Hotel shard = esql.shardFor(hotelID);
+         int result = shard._availability.covers(date)
+            ? shard._availability.printAvailableRooms(hotelID, date, esql._out)
+            : shard.executeQueryAndPrintResult(Queries.AVAILABLE_ROOMS, hotelID, date);
+         ok = true;
+         return result;
+      }finally {
+         esql._metrics.record("viewRooms", start, ok);
+      }
+   }
+
+   /*
+    * Lists the rooms free every night from checkIn to the night before
+    * checkOut at no more than maxPrice, in the hotels within radius of a
+    * location, nearest and cheapest first, in one query instead of a
+    * viewRooms per nearby hotel. At most limit rows are read, in one round trip.
+    * @return the number of rooms listed, at most limit
+    **/
+   public static int searchRooms(Hotel esql, double latitude, double longitude, double radius,
+                                 Date checkIn, Date checkOut, int maxPrice, int limit) throws SQLException {
+      long start = System.nanoTime();
+      boolean ok = false;
+      try {
+         Object[] params = { latitude, longitude, latitude - radius, longitude - radius,
+                             latitude + radius, longitude + radius, latitude, longitude, radius,
+                             maxPrice, checkIn, checkOut, latitude, longitude, limit };
+         int result = esql._shards == null
+            ? esql.executeQueryAndPrintResult(Queries.FREE_ROOMS_NEARBY, params)
+            : esql.printFromShards(Queries.FREE_ROOMS_NEARBY, BY_DISTANCE_AND_PRICE, limit, false, params);
+         ok = true;
+         return result;
+      }finally {
+         esql._metrics.record("searchRooms", start, ok);
+      }
+   }
+
+   /*
+    * Lists the rooms of a hotel free every night from checkIn to the night
+    * before checkOut, in one lookup whatever the number of nights.
+    * @return the number of free rooms
+    **/
+   public static int viewRooms(Hotel esql, int hotelID, Date checkIn, Date checkOut) throws SQLException {
+      long start = System.nanoTime();
+      boolean ok = false;
+      try {
+         Hotel shard = esql.shardFor(hotelID);
+         int result = shard._availability.covers(checkIn, checkOut)
+            ? shard._availability.printAvailableRooms(hotelID, checkIn, checkOut, esql._out)
+            : shard.executeQueryAndPrintResult(Queries.AVAILABLE_ROOMS_FOR_STAY, hotelID, hotelID, checkIn, checkOut);
+         ok = true;
+         return result;
+      }finally {
+         esql._metrics.record("viewStayRooms", start, ok);
+      }
+   }
+
+   /*
+    * Books a room for one night
+    * @return false if the room is not available at this date
+    **/
+   public static boolean bookRooms(Hotel esql, int userID, int hotelID, int roomNumber, Date date) throws SQLException {
+      return book(esql, userID, hotelID, roomNumber, date).isBooked();
+   }
+
+   /*
+    * Books a room for one night with a single conditional statement, so the
+    * availability check and the insert cannot be split by another booking.
+    * Bookings of the same room and date in this process queue on a lock
+    * stripe; the unique constraint settles races with other processes.
+    * With group commit on, the booking is sent with the others queued at
+    * the same time instead.
+    * @return the outcome of the booking
+    **/
+   public static BookingResult book(Hotel esql, int userID, int hotelID, int roomNumber, Date date) throws SQLException {
+      long start = System.nanoTime();
+      boolean ok = false;
+      try {
+         Hotel shard = esql.shardFor(hotelID);
+         BookingResult result = shard._bookingQueue != null
+            ? shard._bookingQueue.book(userID, hotelID, roomNumber, date)
+            : bookRoom(shard, userID, hotelID, roomNumber, date);
+         ok = true;
+         return result;
+      }finally {
+         esql._metrics.record("book", start, ok);
+      }
+   }
+
+   /*
+    * Books a room for one night without waiting for the outcome. With group
+    * commit off the booking is made before returning
+    * @return the future outcome of the booking
+    **/
+   public static Future<BookingResult> bookAsync(Hotel esql, int userID, int hotelID, int roomNumber, Date date) throws SQLException {
+      Hotel shard = esql.shardFor(hotelID);
+      if (shard._bookingQueue != null)
+         return shard._bookingQueue.submit(userID, hotelID, roomNumber, date);
+      return BookingQueue.completed(book(esql, userID, hotelID, roomNumber, date));
+   }
+
+   /*
+    * Books a room for every night from checkIn to the night before checkOut
+    * with a single statement, so either all nights are booked or none is.
+    * Stays do not go through the booking locks or the group commit queue:
+    * a night booked at the same time makes the unique constraint fail the
+    * whole statement, which is then answered as taken.
+    * @return the outcome of the booking
+    **/
+   public static BookingResult bookStay(Hotel esql, int userID, int hotelID, int roomNumber, Date checkIn, Date checkOut) throws SQLException {
+      long start = System.nanoTime();
+      boolean ok = false;
+      try {
+         Hotel shard = esql.shardFor(hotelID);
+         BookingResult result = bookStayRoom(shard, userID, hotelID, roomNumber, checkIn, checkOut);
+         ok = true;
+         return result;
+      }finally {
+         esql._metrics.record("bookStay", start, ok);
+      }
+   }
+
+   static BookingResult bookStayRoom(Hotel esql, int userID, int hotelID, int roomNumber, Date checkIn, Date checkOut) throws SQLException {
+      AvailabilityCache availability = esql._availability;
+      if (!esql._catalog.exists(hotelID, roomNumber))
+         return BookingResult.NO_SUCH_ROOM;
+      boolean cached = availability.covers(checkIn, checkOut);
+      if (cached && !availability.isAvailable(hotelID, roomNumber, checkIn, checkOut))
+         return BookingResult.TAKEN;
+
+      BookingResult result;
+      try {
+         result = esql.executeQueryForObject(Queries.BOOK_STAY_IF_FREE, STAY_OUTCOME,
+            hotelID, roomNumber, checkIn, checkOut, userID, checkIn, checkOut);
+      }catch (SQLException e) {
+         if (!isUniqueViolation(e))
+            throw e;
+         result = BookingResult.TAKEN;
+      }
+
+      for (Date night = checkIn; night.before(checkOut); night = addDays(night, 1)) {
+         if (result.getStatus() == BookingResult.Status.TAKEN && availability.covers(night))
+            availability.invalidate(hotelID, night);
+         if (result.isBooked())
+            availability.markBooked(hotelID, roomNumber, night);
+      }//end for
+      if (result.isBooked())
+         esql._regulars.recordBooking(hotelID, userID, result.getCustomerBookings());
+      return result;
+   }
+
+   static BookingResult bookRoom(Hotel esql, int userID, int hotelID, int roomNumber, Date date) throws SQLException {
+      AvailabilityCache availability = esql._availability;
+      boolean cached = availability.covers(date);
+      ReentrantLock lock = esql._bookingLocks.lockFor(hotelID, roomNumber, date.getTime());
+      lock.lock();
+      try {
+         if (!esql._catalog.exists(hotelID, roomNumber))
+            return BookingResult.NO_SUCH_ROOM;
+         // a room this process knows to be taken is refused without a query;
+         // a free one is still checked by the database.
+         if (cached && !availability.isAvailable(hotelID, roomNumber, date))
+            return BookingResult.TAKEN;
+
+         BookingResult result;
+         try {
+            result = esql.executeQueryForObject(Queries.BOOK_ROOM_IF_FREE, BOOKING_OUTCOME,
+               hotelID, roomNumber, userID, date, date);
+         }catch (SQLException e) {
+            if (!isUniqueViolation(e))
+               throw e;
+            result = BookingResult.TAKEN;
+         }
+
+         settleBooking(esql, userID, hotelID, roomNumber, date, result);
+         return result;
+      }finally {
+         lock.unlock();
+      }
+   }
+
+   // brings the availability cache and the top customers in line with the
+   // outcome of a booking.
+   static void settleBooking(Hotel esql, int userID, int hotelID, int roomNumber, Date date, BookingResult result) {
+      AvailabilityCache availability = esql._availability;
+      if (result.getStatus() == BookingResult.Status.TAKEN && availability.covers(date))
+         availability.invalidate(hotelID, date);
+      if (result.isBooked())
+      {
+         availability.markBooked(hotelID, roomNumber, date);
+         esql._regulars.recordBooking(hotelID, userID, result.getCustomerBookings());
+      }
+   }
+
+   // reads the (price, bookingID, earlier bookings) row of BOOK_ROOM_IF_FREE.
+   private static final RowMapper<BookingResult> BOOKING_OUTCOME = new RowMapper<BookingResult>() {
+      public BookingResult map (ResultSet rs) throws SQLException {
+         int price = rs.getInt(1);
+         if (rs.wasNull())
+            return BookingResult.NO_SUCH_ROOM;
+         int bookingID = rs.getInt(2);
+         if (rs.wasNull())
+            return BookingResult.TAKEN;
+         return BookingResult.booked(bookingID, price, rs.getInt(3) + 1);
+      }
+   };
+
+   // reads the (price, first bookingID, nights, earlier bookings) row of BOOK_STAY_IF_FREE.
+   private static final RowMapper<BookingResult> STAY_OUTCOME = new RowMapper<BookingResult>() {
+      public BookingResult map (ResultSet rs) throws SQLException {
+         int price = rs.getInt(1);
+         if (rs.wasNull())
+            return BookingResult.NO_SUCH_ROOM;
+         int bookingID = rs.getInt(2);
+         if (rs.wasNull())
+            return BookingResult.TAKEN;
+         int nights = rs.getInt(3);
+         return BookingResult.stay(bookingID, price, nights, rs.getInt(4) + nights);
+      }
+   };
+
+   // tells whether an insert failed on a unique constraint.
+   static boolean isUniqueViolation(SQLException e) {
+      if ("23505".equals(e.getSQLState()))
+         return true;
+      String message = e.getMessage();
+      return message != null && message.indexOf("duplicate key") >= 0;
+   }
+
+   public static int viewRecentBookingsfromCustomer(Hotel esql, int userID) throws SQLException {
+      long start = System.nanoTime();
+      boolean ok = false;
+      try {
+         int result = esql.printRecentBookings(userID);
+         ok = true;
+         return result;
+      }finally {
+         esql._metrics.record("viewRecentBookingsfromCustomer", start, ok);
+      }
+   }
+
+   public static void updateRoomInfo(Hotel esql, int managerID, int hotelID, int roomNumber, int price, String imageURL) throws SQLException {
+      updateRooms(esql, managerID, Collections.singletonList(new RoomUpdate(hotelID, roomNumber, price, imageURL)));
+   }
+
+   /*
+    * Changes the price and image of many rooms, for instance to reprice a
+    * hotel for the season, in one transaction: the updates go out as one
+    * batch and their RoomUpdatesLog rows as another
+    * @return the number of rooms updated; rooms that do not exist are skipped
+    **/
+   public static int updateRooms(Hotel esql, int managerID, List<RoomUpdate> updates) throws SQLException {
+      long start = System.nanoTime();
+      boolean ok = false;
+      try {
+         // each shard applies the updates of its hotels in a transaction of its own.
+         Map<Hotel, List<RoomUpdate>> byShard = new LinkedHashMap<Hotel, List<RoomUpdate>>();
+         for (RoomUpdate room : updates) {
+            Hotel shard = esql.shardFor(room.getHotelID());
+            List<RoomUpdate> shardUpdates = byShard.get(shard);
+            if (shardUpdates == null) {
+               shardUpdates = new ArrayList<RoomUpdate>();
+               byShard.put(shard, shardUpdates);
+            }
+            shardUpdates.add(room);
+         }
+         int result = 0;
+         for (Map.Entry<Hotel, List<RoomUpdate>> shardUpdates : byShard.entrySet())
+            result += shardUpdates.getKey().applyRoomUpdates(managerID, shardUpdates.getValue());
+         // the catalog also hears of the change from the database, but this
+         // process sees its own updates at once.
+         Set<Integer> hotelIDs = new HashSet<Integer>();
+         for (RoomUpdate room : updates) {
+            if (hotelIDs.add(room.getHotelID()))
+               esql.shardFor(room.getHotelID())._catalog.reload(room.getHotelID());
+         }
+         ok = true;
+         return result;
+      }finally {
+         esql._metrics.record("updateRooms", start, ok);
+      }
+   }
+
+   public static int viewRecentUpdates(Hotel esql, int managerID) throws SQLException {
+      long start = System.nanoTime();
+      boolean ok = false;
+      try {
+         // the last five of every shard hold the last five of all.
+         int result = esql._shards == null
+            ? esql.executeQueryAndPrintResult(Queries.RECENT_ROOM_UPDATES, managerID)
+            : esql.printFromShards(Queries.RECENT_ROOM_UPDATES, BY_UPDATE_TIME, 5, true, managerID);
+         ok = true;
+         return result;
+      }finally {
+         esql._metrics.record("viewRecentUpdates", start, ok);
+      }
+   }
+
+   public static int viewBookingHistoryofHotel(Hotel esql, Date lowerBound, Date upperBound) throws SQLException {
+      long start = System.nanoTime();
+      boolean ok = false;
+      try {
+         int result = 0;
+         if (esql._shards == null) {
+            result = esql.executeQueryAndStreamResult(Queries.HOTEL_BOOKING_HISTORY, lowerBound, upperBound);
+         }else {
+            // merged a page of FETCH_SIZE rows at a time.
+            BookingPage page = BookingPage.FIRST;
+            do {
+               page = esql.printBookingPage(lowerBound, upperBound, page, FETCH_SIZE);
+               result += page.getRows();
+            } while (page.hasMore());
+         }
+         ok = true;
+         return result;
+      }finally {
+         esql._metrics.record("viewBookingHistoryofHotel", start, ok);
+      }
+   }
+
+   /*
+    * Prints the next page of the booking history after a given page
+    * @return the page printed, which the following page continues from
+    **/
+   public static BookingPage viewBookingHistoryPage(Hotel esql, Date lowerBound, Date upperBound, BookingPage after, int pageSize) throws SQLException {
+      long start = System.nanoTime();
+      boolean ok = false;
+      try {
+         BookingPage result = esql.printBookingPage(lowerBound, upperBound, after, pageSize);
+         ok = true;
+         return result;
+      }finally {
+         esql._metrics.record("viewBookingHistoryPage", start, ok);
+      }
+   }
+
+   public static int viewRegularCustomers(Hotel esql, int hotelID) throws SQLException {
+      long start = System.nanoTime();
+      boolean ok = false;
+      try {
+         int result = esql.shardFor(hotelID)._regulars.print(hotelID, esql._out);
+         ok = true;
+         return result;
+      }finally {
+         esql._metrics.record("viewRegularCustomers", start, ok);
+      }
+   }
+
+   /*
+    * Places a repair and its request in one statement
+    * @return the repairID of the new repair
+    **/
+   public static int placeRoomRepairRequests(Hotel esql, int managerID, int hotelID, int roomNumber, int companyID) throws SQLException {
+      long start = System.nanoTime();
+      boolean ok = false;
+      try {
+         int result = esql.shardFor(hotelID).executeInsertAndReturnKey(Queries.PLACE_REPAIR_RETURNING_ID, companyID, hotelID, roomNumber, managerID);
+         ok = true;
+         return result;
+      }finally {
+         esql._metrics.record("placeRoomRepairRequests", start, ok);
+      }
+   }
+
+   /*
+    * Places repairs of several rooms of a hotel, for instance after an
+    * inspection, as one batch in one transaction
+    * @return the number of repairs placed
+    **/
+   public static int placeRoomRepairRequests(Hotel esql, int managerID, int hotelID, int[] roomNumbers, int companyID) throws SQLException {
+      long start = System.nanoTime();
+      boolean ok = false;
+      try {
+         List<Object[]> rows = new ArrayList<Object[]>(roomNumbers.length);
+         for (int roomNumber : roomNumbers)
+            rows.add(new Object[] { companyID, hotelID, roomNumber, managerID });
+         int[] counts = esql.shardFor(hotelID).executeBatch(Queries.PLACE_REPAIR, rows);
+         int result = counts.length;
+         ok = true;
+         return result;
+      }finally {
+         esql._metrics.record("placeRoomRepairRequests", start, ok);
+      }
+   }
+
+   public static int viewRoomRepairHistory(Hotel esql, int managerID) throws SQLException {
+      long start = System.nanoTime();
+      boolean ok = false;
+      try {
+         int result = esql._shards == null
+            ? esql.executeQueryAndPrintResult(Queries.REPAIR_HISTORY, managerID)
+            : esql.printFromShards(Queries.REPAIR_HISTORY, null, Integer.MAX_VALUE, false, managerID);
+         ok = true;
+         return result;
+      }finally {
+         esql._metrics.record("viewRoomRepairHistory", start, ok);
+      }
+   }
+
+}//end Hotel
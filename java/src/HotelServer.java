@@ -0,0 +1,639 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class serves the Hotel operations as JSON over HTTP, so that many
+ * clients can use one process at the same time.
+ *
+ * Connections are accepted and parsed by the selector thread of the JDK
+ * HTTP server, which hands every request to a fixed pool of worker
+ * threads that share the connection pool of the Hotel instance. At most
+ * hotel.http.queue requests wait for a worker; the selector thread answers
+ * any further one 503 at once, without queueing it or touching the
+ * database, so an overload shows up as fast refusals instead of ever
+ * growing latencies.
+ *
+ * Parameters are taken from the query string and, for POST, from a form
+ * encoded body. Dates are given as YYYY-MM-DD; a "to" date makes a stay of
+ * every night from "date" to the night before "to". Operations on behalf of a
+ * user are POSTs carrying the user and password parameters in the body,
+ * which are checked on every request; a password in the query string, where
+ * proxies and access logs would keep it, is refused.
+ *
+ *    GET  /hotels?lat=&lon=
+ *    GET  /rooms?hotel=&date= [&to=]
+ *    GET  /search?lat=&lon=&from= [&to=&maxPrice=&radius=&limit=]
+ *    POST /bookings           user, password, hotel, room, date [, to]
+ *    POST /bookings/recent    user, password
+ *    POST /bookings/history   user, password, hotel, from, to [, afterDate, afterID, limit]
+ *    POST /rooms/update       user, password, hotel, price, imageURL, room [, room ...]
+ *    POST /repairs            user, password, hotel, company, room [, room ...]
+ *
+ * Successful requests are answered 200 with a JSON object; failed ones
+ * with a 4xx or 5xx status and {"error": message}. Every endpoint is
+ * recorded in the metrics of the Hotel instance as "<method> <path>".
+ *
+ */
+public class HotelServer {
+
+   static final int THREADS = Integer.getInteger("hotel.http.threads", 64);
+   static final int QUEUE_LIMIT = Integer.getInteger("hotel.http.queue", 1024);
+   static final int BACKLOG = Integer.getInteger("hotel.http.backlog", 1024);
+   static final int MAX_BODY = Integer.getInteger("hotel.http.maxBody", 64 * 1024);
+   static final int MAX_PAGE_SIZE = 1000;
+
+   // seconds given to running requests when the server stops.
+   static final int STOP_DELAY = Integer.getInteger("hotel.http.stopDelaySeconds", 2);
+
+   private final Hotel _esql;
+   private final HttpServer _server;
+   private final ThreadPoolExecutor _workers;
+   private final CountDownLatch _stopped = new CountDownLatch(1);
+
+   // a request that cannot be served, with the status to answer it with.
+   private static final class RequestException extends Exception {
+      private static final long serialVersionUID = 1L;
+
+      final int status;
+
+      RequestException (int status, String message) {
+         super(message);
+         this.status = status;
+      }
+   }//end RequestException
+
+   /**
+    * Serves HTTP requests until the process is asked to stop, for instance
+    * with Ctrl-C, and returns once running requests are done.
+    *
+    * @param esql the Hotel instance to run the operations through
+    * @param port the port to listen on
+    * @param threads the number of worker threads
+    * @throws java.io.IOException when the port cannot be bound
+    * @throws java.lang.InterruptedException when interrupted while serving
+    */
+   public static void run (Hotel esql, int port, int threads) throws IOException, InterruptedException {
+      final HotelServer server = new HotelServer(esql, port, Math.max(1, threads));
+      final Thread main = Thread.currentThread ();
+      Runtime.getRuntime ().addShutdownHook (new Thread(new Runnable() {
+         public void run () {
+            server.stop ();
+            // let the caller print its report and close the pool first.
+            try {
+               main.join (10000);
+            }catch (InterruptedException e) {
+               // exiting anyway.
+            }//end try
+         }
+      }, "http-shutdown"));
+      server.start ();
+      System.out.println("Serving HTTP on port " + port + " with " + threads + " worker(s)...");
+      server.awaitStop ();
+   }//end run
+
+   private HotelServer (Hotel esql, int port, int threads) throws IOException {
+      this._esql = esql;
+      final AtomicInteger count = new AtomicInteger();
+      this._workers = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+         new ArrayBlockingQueue<Runnable>(Math.max (1, QUEUE_LIMIT)), new ThreadFactory() {
+            public Thread newThread (Runnable task) {
+               Thread thread = new Thread(task, "http-" + count.getAndIncrement ());
+               thread.setDaemon (true);
+               return thread;
+            }
+         });
+      this._server = HttpServer.create (new InetSocketAddress(port), BACKLOG);
+      // handlers run on the selector thread and pass the request on to the
+      // workers themselves, so that they can refuse it when the queue is full.
+      this._server.setExecutor (null);
+
+      this._server.createContext ("/hotels", new Endpoint("GET", "/hotels") {
+         String serve (Map<String, List<String>> params) throws SQLException, RequestException {
+            return hotels (param (params, "lat", -90, 90), param (params, "lon", -180, 180));
+         }
+      });
+      this._server.createContext ("/rooms", new Endpoint("GET", "/rooms") {
+         String serve (Map<String, List<String>> params) throws SQLException, RequestException {
+            Date date = dateParam (params, "date");
+            return rooms (intParam (params, "hotel"), date, checkOut (params, date));
+         }
+      });
+      this._server.createContext ("/search", new Endpoint("GET", "/search") {
+         String serve (Map<String, List<String>> params) throws SQLException, RequestException {
+            return search (params);
+         }
+      });
+      this._server.createContext ("/bookings/recent", new Endpoint("POST", "/bookings/recent") {
+         String serve (Map<String, List<String>> params) throws SQLException, RequestException {
+            return recentBookings (customer (params));
+         }
+      });
+      this._server.createContext ("/bookings", new Endpoint("POST", "/bookings") {
+         String serve (Map<String, List<String>> params) throws SQLException, RequestException {
+            Date date = dateParam (params, "date");
+            return book (customer (params), intParam (params, "hotel"), intParam (params, "room"),
+                         date, checkOut (params, date));
+         }
+      });
+      this._server.createContext ("/bookings/history", new Endpoint("POST", "/bookings/history") {
+         String serve (Map<String, List<String>> params) throws SQLException, RequestException {
+            int managerID = customer (params);
+            int hotelID = intParam (params, "hotel");
+            if (!Hotel.canManageHotel (HotelServer.this._esql, managerID, hotelID))
+               throw new RequestException(403, "you do not manage this hotel");
+            return bookingHistory (hotelID, params);
+         }
+      });
+      this._server.createContext ("/rooms/update", new Endpoint("POST", "/rooms/update") {
+         String serve (Map<String, List<String>> params) throws SQLException, RequestException {
+            return updateRooms (manager (params), params);
+         }
+      });
+      this._server.createContext ("/repairs", new Endpoint("POST", "/repairs") {
+         String serve (Map<String, List<String>> params) throws SQLException, RequestException {
+            return repairs (manager (params), params);
+         }
+      });
+   }//end HotelServer
+
+   private void start () {
+      this._server.start ();
+   }//end start
+
+   // stops accepting requests and waits for the running ones.
+   private void stop () {
+      this._server.stop (STOP_DELAY);
+      this._workers.shutdown ();
+      try {
+         this._workers.awaitTermination (STOP_DELAY, TimeUnit.SECONDS);
+      }catch (InterruptedException e) {
+         Thread.currentThread ().interrupt ();
+      }//end try
+      this._stopped.countDown ();
+   }//end stop
+
+   private void awaitStop () throws InterruptedException {
+      this._stopped.await ();
+   }//end awaitStop
+
+   /*
+    * The operations below answer one endpoint each with a JSON object.
+    **/
+
+   private String hotels (double latitude, double longitude) throws SQLException {
+      double r = Hotel.HOTEL_SEARCH_RADIUS;
+      // (distance, JSON) of the hotels of every shard, merged nearest first.
+      List<Object[]> hotels = this._esql.executeQueryOnShards (Queries.HOTELS_NEARBY, new RowMapper<Object[]>() {
+            public Object[] map (ResultSet rs) throws SQLException {
+               return new Object[] { rs.getDouble (4), Json.ROW.map (rs) };
+            }
+         }, latitude, longitude, latitude - r, longitude - r, latitude + r, longitude + r,
+         latitude, longitude, r, latitude, longitude);
+      if (this._esql.getShards () != null)
+         Collections.sort (hotels, BY_KEY);
+      return array (new StringBuilder("{\"hotels\":"), json (hotels)).append ('}').toString ();
+   }//end hotels
+
+   private String rooms (int hotelID, Date checkIn, Date checkOut) throws SQLException {
+      Hotel shard = this._esql.shardFor (hotelID);
+      AvailabilityCache availability = shard.getAvailability ();
+      StringBuilder out = new StringBuilder("{\"rooms\":");
+      if (!availability.covers (checkIn, checkOut))
+         return array (out, shard.executeQueryAndMap (Queries.AVAILABLE_ROOMS_FOR_STAY, Json.ROW,
+            hotelID, hotelID, checkIn, checkOut)).append ('}').toString ();
+
+      IntColumn[] free = availability.availableRooms (hotelID, checkIn, checkOut);
+      out.append ('[');
+      for (int i = 0; i < free[0].size (); ++i) {
+         if (i > 0)
+            out.append (',');
+         out.append ("{\"room\":").append (free[0].get (i))
+            .append (",\"price\":").append (free[1].get (i)).append ('}');
+      }//end for
+      return out.append ("]}").toString ();
+   }//end rooms
+
+   // the rooms free every night from "from" to the night before "to" (by
+   // default one night) near a location, nearest and cheapest first.
+   private String search (Map<String, List<String>> params) throws SQLException, RequestException {
+      double latitude = param (params, "lat", -90, 90);
+      double longitude = param (params, "lon", -180, 180);
+      double r = params.containsKey ("radius") ? param (params, "radius", 0, 360) : Hotel.HOTEL_SEARCH_RADIUS;
+      Date checkIn = dateParam (params, "from");
+      Date checkOut = checkOut (params, checkIn);
+      int maxPrice = params.containsKey ("maxPrice") ? intParam (params, "maxPrice") : Integer.MAX_VALUE;
+      int limit = params.containsKey ("limit") ? intParam (params, "limit") : Hotel.SEARCH_LIMIT;
+      if (limit < 1 || limit > MAX_PAGE_SIZE)
+         throw new RequestException(400, "limit must be between 1 and " + MAX_PAGE_SIZE);
+
+      // (distance, price, hotelID, roomNumber, JSON) of the rooms of every
+      // shard, merged nearest and cheapest first.
+      List<Object[]> rooms = this._esql.executeQueryOnShards (Queries.FREE_ROOMS_NEARBY, new RowMapper<Object[]>() {
+            public Object[] map (ResultSet rs) throws SQLException {
+               return new Object[] { rs.getDouble (5), rs.getInt (4), rs.getInt (1), rs.getInt (3), Json.ROW.map (rs) };
+            }
+         }, latitude, longitude, latitude - r, longitude - r, latitude + r, longitude + r,
+         latitude, longitude, r, maxPrice, checkIn, checkOut, latitude, longitude, limit);
+      if (this._esql.getShards () != null) {
+         Collections.sort (rooms, BY_KEY);
+         if (rooms.size () > limit)
+            rooms = rooms.subList (0, limit);
+      }//end if
+      return array (new StringBuilder("{\"rooms\":"), json (rooms)).append ('}').toString ();
+   }//end search
+
+   private String book (int userID, int hotelID, int roomNumber, Date checkIn, Date checkOut) throws SQLException, RequestException {
+      BookingResult result = checkOut.equals (Hotel.addDays (checkIn, 1))
+         ? Hotel.book (this._esql, userID, hotelID, roomNumber, checkIn)
+         : Hotel.bookStay (this._esql, userID, hotelID, roomNumber, checkIn, checkOut);
+      switch (result.getStatus ()) {
+         case NO_SUCH_ROOM:
+            throw new RequestException(404, "no such room");
+         case TAKEN:
+            throw new RequestException(409, "the room is already booked on that date");
+         default:
+            return "{\"bookingID\":" + result.getBookingID () + ",\"price\":" + result.getPrice ()
+               + ",\"nights\":" + result.getNights () + "}";
+      }//end switch
+   }//end book
+
+   private String recentBookings (int userID) throws SQLException {
+      List<Object[]> rows = this._esql.executeQueryOnShards (Queries.RECENT_CUSTOMER_BOOKINGS, Hotel.BOOKED_ROOM, userID);
+      if (this._esql.getShards () != null) {
+         Collections.sort (rows, Hotel.BY_BOOKING_DATE);
+         if (rows.size () > 5)
+            rows = rows.subList (0, 5);
+      }//end if
+      StringBuilder out = new StringBuilder("{\"bookings\":[");
+      boolean first = true;
+      for (Object[] row : rows) {
+         int hotelID = (Integer) row[0];
+         int roomNumber = (Integer) row[1];
+         if (!first)
+            out.append (',');
+         first = false;
+         out.append ("{\"hotel\":").append (hotelID).append (",\"room\":").append (roomNumber)
+            .append (",\"bookingdate\":\"").append (row[2])
+            .append ("\",\"billinginfo\":")
+            .append (this._esql.shardFor (hotelID).getRoomCatalog ().price (hotelID, roomNumber)).append ('}');
+      }//end for
+      return out.append ("]}").toString ();
+   }//end recentBookings
+
+   // one keyset page of the booking history of a hotel; the next page
+   // continues from the afterDate and afterID returned with it.
+   private String bookingHistory (int hotelID, Map<String, List<String>> params) throws SQLException, RequestException {
+      Date lowerBound = dateParam (params, "from");
+      Date upperBound = dateParam (params, "to");
+      Date afterDate = params.containsKey ("afterDate") ? dateParam (params, "afterDate") : BookingPage.FIRST.getLastDate ();
+      int afterID = params.containsKey ("afterID") ? intParam (params, "afterID") : BookingPage.FIRST.getLastBookingID ();
+      int limit = params.containsKey ("limit") ? intParam (params, "limit") : Hotel.HISTORY_PAGE_SIZE;
+      if (limit < 1 || limit > MAX_PAGE_SIZE)
+         throw new RequestException(400, "limit must be between 1 and " + MAX_PAGE_SIZE);
+
+      // (bookingDate, bookingID, JSON) of the next rows, from the shard of the hotel.
+      List<Object[]> rows = this._esql.shardFor (hotelID).executeQueryAndMap (Queries.ONE_HOTEL_BOOKING_HISTORY_PAGE,
+         new RowMapper<Object[]>() {
+            public Object[] map (ResultSet rs) throws SQLException {
+               return new Object[] { rs.getDate (5), rs.getInt (1), Json.ROW.map (rs) };
+            }
+         }, hotelID, lowerBound, upperBound, afterDate, afterID, limit + 1);
+      boolean more = rows.size () > limit;
+      if (more)
+         rows = rows.subList (0, limit);
+
+      StringBuilder out = array (new StringBuilder("{\"bookings\":"), json (rows));
+      out.append (",\"more\":").append (more);
+      if (more) {
+         // the key of the last row returned, not of the extra one read.
+         Object[] last = rows.get (limit - 1);
+         out.append (",\"afterDate\":");
+         Json.quote (out, last[0].toString ());
+         out.append (",\"afterID\":").append (last[1]);
+      }//end if
+      return out.append ('}').toString ();
+   }//end bookingHistory
+
+   private String updateRooms (int managerID, Map<String, List<String>> params) throws SQLException, RequestException {
+      int hotelID = intParam (params, "hotel");
+      int price = intParam (params, "price");
+      String imageURL = param (params, "imageURL");
+      int[] roomNumbers = intParams (params, "room");
+      if (!Hotel.canManageHotel (this._esql, managerID, hotelID))
+         throw new RequestException(403, "you do not manage this hotel");
+      List<RoomUpdate> updates = new ArrayList<RoomUpdate>(roomNumbers.length);
+      for (int roomNumber : roomNumbers)
+         updates.add (new RoomUpdate(hotelID, roomNumber, price, imageURL));
+      int updated = Hotel.updateRooms (this._esql, managerID, updates);
+      return "{\"updated\":" + updated + "}";
+   }//end updateRooms
+
+   private String repairs (int managerID, Map<String, List<String>> params) throws SQLException, RequestException {
+      int hotelID = intParam (params, "hotel");
+      int companyID = intParam (params, "company");
+      int[] roomNumbers = intParams (params, "room");
+      if (!Hotel.canManageHotel (this._esql, managerID, hotelID))
+         throw new RequestException(403, "you do not manage this hotel");
+      if (roomNumbers.length == 1) {
+         if (!Hotel.roomExists (this._esql, hotelID, roomNumbers[0]))
+            throw new RequestException(404, "no such room");
+         int repairID = Hotel.placeRoomRepairRequests (this._esql, managerID, hotelID, roomNumbers[0], companyID);
+         return "{\"placed\":1,\"repairID\":" + repairID + "}";
+      }//end if
+      int placed = Hotel.placeRoomRepairRequests (this._esql, managerID, hotelID, roomNumbers, companyID);
+      return "{\"placed\":" + placed + "}";
+   }//end repairs
+
+   /*
+    * Request handling.
+    **/
+
+   // answers the requests of one path and method, recording their latency
+   // as the operation "<method> <path>".
+   private abstract class Endpoint implements HttpHandler {
+      private final String _method;
+      private final String _path;
+      private final String _operation;
+
+      Endpoint (String method, String path) {
+         this._method = method;
+         this._path = path;
+         this._operation = method + " " + path;
+      }
+
+      abstract String serve (Map<String, List<String>> params) throws SQLException, RequestException;
+
+      // admits the request to the worker queue, or refuses it at once.
+      public void handle (final HttpExchange exchange) throws IOException {
+         try {
+            HotelServer.this._workers.execute (new Runnable() {
+               public void run () {
+                  try {
+                     process (exchange);
+                  }catch (IOException e) {
+                     // the client is gone.
+                  }finally {
+                     exchange.close ();
+                  }//end try
+               }
+            });
+         }catch (RejectedExecutionException e) {
+            HotelServer.this._esql.getMetrics ().record (this._operation, System.nanoTime(), false);
+            send (exchange, 503, error ("server busy"));
+         }//end try
+      }//end handle
+
+      private void process (HttpExchange exchange) throws IOException {
+         long start = System.nanoTime();
+         boolean ok = false;
+         int status;
+         String body;
+         try {
+            body = serve (exchange);
+            status = 200;
+            ok = true;
+         }catch (RequestException e) {
+            status = e.status;
+            body = error (e.getMessage ());
+            // refusing a bad request is the server doing its job.
+            ok = status < 500;
+         }catch (SQLException e) {
+            status = 500;
+            body = error (e.getMessage ());
+         }catch (RuntimeException e) {
+            status = 500;
+            body = error (String.valueOf (e));
+         }finally {
+            HotelServer.this._esql.getMetrics ().record (this._operation, start, ok);
+         }//end try
+         send (exchange, status, body);
+      }//end process
+
+      private String serve (HttpExchange exchange) throws IOException, SQLException, RequestException {
+         if (!exchange.getRequestURI ().getPath ().equals (this._path))
+            throw new RequestException(404, "no such resource");
+         if (!exchange.getRequestMethod ().equals (this._method))
+            throw new RequestException(405, this._path + " takes " + this._method + " requests");
+         Map<String, List<String>> params = new HashMap<String, List<String>>();
+         decode (exchange.getRequestURI ().getRawQuery (), params);
+         if (params.containsKey ("password"))
+            throw new RequestException(400, "send the password in a POST body, not in the URL");
+         if (this._method.equals ("POST"))
+            decode (readBody (exchange), params);
+         return serve (params);
+      }//end serve
+   }//end Endpoint
+
+   private static void send (HttpExchange exchange, int status, String body) throws IOException {
+      byte[] bytes = body.getBytes ("UTF-8");
+      exchange.getResponseHeaders ().set ("Content-Type", "application/json; charset=utf-8");
+      try {
+         exchange.sendResponseHeaders (status, bytes.length);
+         OutputStream out = exchange.getResponseBody ();
+         out.write (bytes);
+         out.close ();
+      }finally {
+         exchange.close ();
+      }//end try
+   }//end send
+
+   private static String readBody (HttpExchange exchange) throws IOException, RequestException {
+      InputStream in = exchange.getRequestBody ();
+      try {
+         ByteArrayOutputStream body = new ByteArrayOutputStream();
+         byte[] buffer = new byte[4096];
+         int n;
+         while ((n = in.read (buffer)) > 0) {
+            body.write (buffer, 0, n);
+            if (body.size () > MAX_BODY)
+               throw new RequestException(413, "request body larger than " + MAX_BODY + " bytes");
+         }//end while
+         return body.toString ("UTF-8");
+      }finally {
+         in.close ();
+      }//end try
+   }//end readBody
+
+   // adds the name=value pairs of a form encoded string to params.
+   private static void decode (String form, Map<String, List<String>> params) throws RequestException {
+      if (form == null || form.isEmpty ())
+         return;
+      try {
+         for (String pair : form.split ("&")) {
+            if (pair.isEmpty ())
+               continue;
+            int eq = pair.indexOf ('=');
+            String name = URLDecoder.decode (eq < 0 ? pair : pair.substring (0, eq), "UTF-8");
+            String value = eq < 0 ? "" : URLDecoder.decode (pair.substring (eq + 1), "UTF-8");
+            List<String> values = params.get (name);
+            if (values == null) {
+               values = new ArrayList<String>(1);
+               params.put (name, values);
+            }//end if
+            values.add (value);
+         }//end for
+      }catch (UnsupportedEncodingException e) {
+         throw new AssertionError(e);
+      }catch (IllegalArgumentException e) {
+         throw new RequestException(400, "malformed parameters");
+      }//end try
+   }//end decode
+
+   /*
+    * Parameters and authentication.
+    **/
+
+   // the user of the request, once the password was checked.
+   private int customer (Map<String, List<String>> params) throws SQLException, RequestException {
+      int userID = intParam (params, "user");
+      if (!Hotel.checkCredentials (this._esql, userID, param (params, "password")))
+         throw new RequestException(401, "wrong user or password");
+      return userID;
+   }//end customer
+
+   // the user of the request, once checked to be a manager.
+   private int manager (Map<String, List<String>> params) throws SQLException, RequestException {
+      int userID = customer (params);
+      if (!Hotel.isManager (this._esql, userID))
+         throw new RequestException(403, "only managers can do this");
+      return userID;
+   }//end manager
+
+   private static String param (Map<String, List<String>> params, String name) throws RequestException {
+      List<String> values = params.get (name);
+      if (values == null)
+         throw new RequestException(400, "missing parameter " + name);
+      return values.get (0);
+   }//end param
+
+   private static int intParam (Map<String, List<String>> params, String name) throws RequestException {
+      try {
+         return Integer.parseInt (param (params, name).trim ());
+      }catch (NumberFormatException e) {
+         throw new RequestException(400, name + " must be an integer");
+      }//end try
+   }//end intParam
+
+   private static int[] intParams (Map<String, List<String>> params, String name) throws RequestException {
+      List<String> values = params.get (name);
+      if (values == null)
+         throw new RequestException(400, "missing parameter " + name);
+      int[] result = new int[values.size ()];
+      try {
+         for (int i = 0; i < result.length; ++i)
+            result[i] = Integer.parseInt (values.get (i).trim ());
+      }catch (NumberFormatException e) {
+         throw new RequestException(400, name + " must be an integer");
+      }//end try
+      return result;
+   }//end intParams
+
+   private static double param (Map<String, List<String>> params, String name, double min, double max) throws RequestException {
+      double value;
+      try {
+         value = Double.parseDouble (param (params, name).trim ());
+      }catch (NumberFormatException e) {
+         throw new RequestException(400, name + " must be a number");
+      }//end try
+      if (!(value >= min && value <= max))
+         throw new RequestException(400, name + " must be between " + min + " and " + max);
+      return value;
+   }//end param
+
+   // the "to" date of a stay starting on checkIn, the next day by default.
+   private static Date checkOut (Map<String, List<String>> params, Date checkIn) throws RequestException {
+      if (!params.containsKey ("to"))
+         return Hotel.addDays (checkIn, 1);
+      Date checkOut = dateParam (params, "to");
+      if (!checkOut.after (checkIn) || checkOut.after (Hotel.addDays (checkIn, Hotel.MAX_STAY_NIGHTS)))
+         throw new RequestException(400, "to must be 1 to " + Hotel.MAX_STAY_NIGHTS + " days after the first night");
+      return checkOut;
+   }//end checkOut
+
+   private static Date dateParam (Map<String, List<String>> params, String name) throws RequestException {
+      try {
+         return Date.valueOf (param (params, name).trim ());
+      }catch (IllegalArgumentException e) {
+         throw new RequestException(400, name + " must be a date as YYYY-MM-DD");
+      }//end try
+   }//end dateParam
+
+   /*
+    * JSON output.
+    **/
+
+   // orders (key..., JSON) rows by their keys.
+   private static final Comparator<Object[]> BY_KEY = new Comparator<Object[]>() {
+      @SuppressWarnings("unchecked")
+      public int compare (Object[] a, Object[] b) {
+         for (int i = 0; i < a.length - 1; ++i) {
+            int c = ((Comparable<Object>) a[i]).compareTo (b[i]);
+            if (c != 0)
+               return c;
+         }//end for
+         return 0;
+      }
+   };
+
+   // the JSON of (key..., JSON) rows.
+   private static List<String> json (List<Object[]> keyed) {
+      List<String> rows = new ArrayList<String>(keyed.size ());
+      for (Object[] row : keyed)
+         rows.add ((String) row[row.length - 1]);
+      return rows;
+   }//end json
+
+   private static StringBuilder array (StringBuilder out, List<String> rows) {
+      out.append ('[');
+      for (int i = 0; i < rows.size (); ++i) {
+         if (i > 0)
+            out.append (',');
+         out.append (rows.get (i));
+      }//end for
+      return out.append (']');
+   }//end array
+
+   private static String error (String message) {
+      StringBuilder out = new StringBuilder("{\"error\":");
+      Json.quote (out, message == null ? "unknown error" : message);
+      return out.append ('}').toString ();
+   }//end error
+
+}//end HotelServer
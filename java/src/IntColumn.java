@@ -0,0 +1,92 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.util.Arrays;
+
+/**
+ * This class holds the values of one integer column of a query result in a
+ * growable int array, so that bulk reads of IDs, room numbers or prices need
+ * neither a String nor a boxed Integer per value.
+ *
+ */
+public class IntColumn {
+
+   private int[] _values;
+   private int _size;
+
+   /**
+    * Creates an empty column
+    */
+   public IntColumn () {
+      this(16);
+   }//end IntColumn
+
+   /**
+    * Creates an empty column
+    *
+    * @param capacity the number of values expected
+    */
+   public IntColumn (int capacity) {
+      this._values = new int[Math.max (capacity, 1)];
+   }//end IntColumn
+
+   /**
+    * Appends a value.
+    *
+    * @param value the value
+    */
+   public void add (int value) {
+      if (this._size == this._values.length)
+         this._values = Arrays.copyOf (this._values, this._size * 2);
+      this._values[this._size++] = value;
+   }//end add
+
+   /**
+    * @param index the row, from 0
+    * @return the value of that row
+    */
+   public int get (int index) {
+      if (index >= this._size)
+         throw new IndexOutOfBoundsException("row " + index + " of " + this._size);
+      return this._values[index];
+   }//end get
+
+   /**
+    * @return the number of values
+    */
+   public int size () {
+      return this._size;
+   }//end size
+
+   /**
+    * @return true when the column has no values
+    */
+   public boolean isEmpty () {
+      return this._size == 0;
+   }//end isEmpty
+
+   /**
+    * Removes every value, keeping the capacity.
+    */
+   public void clear () {
+      this._size = 0;
+   }//end clear
+
+   /**
+    * @return the values in row order, in an array of their own
+    */
+   public int[] toArray () {
+      return Arrays.copyOf (this._values, this._size);
+   }//end toArray
+
+}//end IntColumn
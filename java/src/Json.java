@@ -0,0 +1,109 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * This class writes the small pieces of JSON the slow query log and the
+ * HTTP server produce.
+ *
+ */
+public final class Json {
+
+   private Json () {
+   }
+
+   /**
+    * Maps the current row to a JSON object keyed by column label. Numbers
+    * and booleans are written as such, everything else as trimmed strings.
+    */
+   public static final RowMapper<String> ROW = new RowMapper<String>() {
+      public String map (ResultSet rs) throws SQLException {
+         ResultSetMetaData rsmd = rs.getMetaData ();
+         StringBuilder out = new StringBuilder(64);
+         out.append ('{');
+         for (int i = 1; i <= rsmd.getColumnCount (); ++i) {
+            if (i > 1)
+               out.append (',');
+            quote (out, rsmd.getColumnLabel (i));
+            out.append (':');
+            String value = rs.getString (i);
+            if (value == null)
+               out.append ("null");
+            else if (isNumeric (rsmd.getColumnType (i)))
+               out.append (value.trim ());
+            else if (rsmd.getColumnType (i) == Types.BOOLEAN || rsmd.getColumnType (i) == Types.BIT)
+               out.append (rs.getBoolean (i));
+            else
+               quote (out, value.trim ());
+         }//end for
+         return out.append ('}').toString ();
+      }
+   };
+
+   /**
+    * Appends a value: null, a number or boolean as such, anything else as
+    * a string.
+    *
+    * @param out the JSON being written
+    * @param value the value
+    */
+   public static void value (StringBuilder out, Object value) {
+      if (value == null)
+         out.append ("null");
+      else if (value instanceof Number || value instanceof Boolean)
+         out.append (value);
+      else
+         quote (out, value.toString ());
+   }//end value
+
+   /**
+    * Appends a string as a JSON string literal.
+    *
+    * @param out the JSON being written
+    * @param value the string
+    */
+   public static void quote (StringBuilder out, String value) {
+      out.append ('"');
+      for (int i = 0; i < value.length (); ++i) {
+         char c = value.charAt (i);
+         switch (c) {
+            case '"': out.append ("\\\""); break;
+            case '\\': out.append ("\\\\"); break;
+            case '\n': out.append ("\\n"); break;
+            case '\r': out.append ("\\r"); break;
+            case '\t': out.append ("\\t"); break;
+            default:
+               if (c < 0x20)
+                  out.append (String.format ("\\u%04x", (int) c));
+               else
+                  out.append (c);
+         }//end switch
+      }//end for
+      out.append ('"');
+   }//end quote
+
+   private static boolean isNumeric (int type) {
+      switch (type) {
+         case Types.TINYINT: case Types.SMALLINT: case Types.INTEGER: case Types.BIGINT:
+         case Types.REAL: case Types.FLOAT: case Types.DOUBLE: case Types.NUMERIC: case Types.DECIMAL:
+            return true;
+         default:
+            return false;
+      }//end switch
+   }//end isNumeric
+
+}//end Json
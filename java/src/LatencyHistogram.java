@@ -0,0 +1,113 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class counts latencies in logarithmic buckets without locking, so
+ * that recording costs a few atomic increments whatever the number of
+ * samples and threads.
+ *
+ * Each power of two of nanoseconds is split into SUB_BUCKETS equal buckets,
+ * so a percentile is reported with at most 1/SUB_BUCKETS relative error.
+ *
+ */
+public class LatencyHistogram {
+
+   private static final int SUB_BITS = 3;
+   private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+   private final AtomicLongArray _buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+   private final AtomicLong _count = new AtomicLong();
+   private final AtomicLong _sum = new AtomicLong();
+   private final AtomicLong _max = new AtomicLong();
+
+   /**
+    * Records one latency.
+    *
+    * @param nanos the latency in nanoseconds
+    */
+   public void record (long nanos) {
+      if (nanos < 0)
+         nanos = 0;
+      this._buckets.incrementAndGet (bucket (nanos));
+      this._count.incrementAndGet ();
+      this._sum.addAndGet (nanos);
+      long max = this._max.get ();
+      while (nanos > max && !this._max.compareAndSet (max, nanos))
+         max = this._max.get ();
+   }//end record
+
+   /**
+    * @return the number of latencies recorded
+    */
+   public long count () {
+      return this._count.get ();
+   }//end count
+
+   /**
+    * @return the mean latency in nanoseconds
+    */
+   public double mean () {
+      long count = this._count.get ();
+      return count == 0 ? 0.0 : (double) this._sum.get () / count;
+   }//end mean
+
+   /**
+    * @return the largest latency in nanoseconds
+    */
+   public long max () {
+      return this._max.get ();
+   }//end max
+
+   /**
+    * @param p the fraction of latencies, e.g. 0.99
+    * @return the latency in nanoseconds that this fraction does not exceed,
+    *         rounded up to the end of its bucket
+    */
+   public long percentile (double p) {
+      long count = 0;
+      for (int i = 0; i < this._buckets.length (); ++i)
+         count += this._buckets.get (i);
+      if (count == 0)
+         return 0;
+      long rank = Math.max (1, (long) Math.ceil (p * count));
+      long seen = 0;
+      for (int i = 0; i < this._buckets.length (); ++i) {
+         seen += this._buckets.get (i);
+         if (seen >= rank)
+            return Math.min (upperBound (i), this._max.get ());
+      }//end for
+      return this._max.get ();
+   }//end percentile
+
+   // values below SUB_BUCKETS get a bucket each; above, the bucket is given
+   // by the highest bit and the SUB_BITS bits after it.
+   private static int bucket (long nanos) {
+      if (nanos < SUB_BUCKETS)
+         return (int) nanos;
+      int shift = 63 - Long.numberOfLeadingZeros (nanos) - SUB_BITS;
+      return (shift + 1) * SUB_BUCKETS + (int) ((nanos >>> shift) - SUB_BUCKETS);
+   }//end bucket
+
+   // the largest value falling in a bucket.
+   private static long upperBound (int bucket) {
+      if (bucket < SUB_BUCKETS)
+         return bucket;
+      int shift = bucket / SUB_BUCKETS - 1;
+      long first = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+      return first + (1L << shift) - 1;
+   }//end upperBound
+
+}//end LatencyHistogram
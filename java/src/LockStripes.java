@@ -0,0 +1,66 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This class holds a fixed set of locks that keys are spread over by hash.
+ * Threads working on the same key always take the same lock, while threads
+ * working on different keys rarely do, so unrelated work runs in parallel
+ * without one lock per key.
+ *
+ */
+public class LockStripes {
+
+   private final ReentrantLock[] _locks;
+
+   // stripe count minus one; the count is a power of two.
+   private final int _mask;
+
+   /**
+    * Creates a new set of lock stripes
+    *
+    * @param stripes the minimum number of locks, rounded up to a power of two
+    */
+   public LockStripes (int stripes) {
+      int count = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+      this._locks = new ReentrantLock[count];
+      for (int i = 0; i < count; ++i)
+         this._locks[i] = new ReentrantLock();
+      this._mask = count - 1;
+   }//end LockStripes
+
+   /**
+    * Returns the lock guarding a key made of three numbers.
+    *
+    * @param a the first part of the key
+    * @param b the second part of the key
+    * @param c the third part of the key
+    * @return the lock of the key's stripe
+    */
+   public ReentrantLock lockFor (long a, long b, long c) {
+      long h = a * 0x9E3779B97F4A7C15L + b;
+      h = h * 0x9E3779B97F4A7C15L + c;
+      h ^= h >>> 32;
+      h ^= h >>> 16;
+      return this._locks[(int) h & this._mask];
+   }//end lockFor
+
+   /**
+    * @return the number of locks
+    */
+   public int size () {
+      return this._locks.length;
+   }//end size
+
+}//end LockStripes
@@ -0,0 +1,132 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * This class keeps an OperationMetrics per Hotel operation, created on the
+ * first call, and publishes each one as an MBean named
+ * hotel:type=Operation,name=<operation> on the platform MBean server, where
+ * jconsole or any JMX client can read it.
+ *
+ */
+public class Metrics {
+
+   private final ConcurrentMap<String, OperationMetrics> _operations =
+      new ConcurrentHashMap<String, OperationMetrics>();
+
+   private final MBeanServer _server = ManagementFactory.getPlatformMBeanServer ();
+
+   // operations whose MBean this instance registered.
+   private final Set<String> _published =
+      Collections.newSetFromMap (new ConcurrentHashMap<String, Boolean>());
+
+   /**
+    * Records one call of an operation.
+    *
+    * @param operation the operation name
+    * @param start System.nanoTime() when the call started
+    * @param ok false when the call failed
+    */
+   public void record (String operation, long start, boolean ok) {
+      recordLatency (operation, System.nanoTime () - start, ok);
+   }//end record
+
+   /**
+    * Records one call of an operation whose latency was already measured.
+    *
+    * @param operation the operation name
+    * @param nanos how long the call took
+    * @param ok false when the call failed
+    */
+   public void recordLatency (String operation, long nanos, boolean ok) {
+      OperationMetrics metrics = this._operations.get (operation);
+      if (metrics == null)
+         metrics = register (operation);
+      metrics.record (nanos, ok);
+   }//end recordLatency
+
+   /**
+    * @param operation the operation name
+    * @return the metrics of the operation, or null before its first call
+    */
+   public OperationMetrics get (String operation) {
+      return this._operations.get (operation);
+   }//end get
+
+   /**
+    * Prints the calls, errors and latencies of every operation called so far.
+    *
+    * @param out the stream to print to
+    */
+   public void summary (PrintStream out) {
+      Map<String, OperationMetrics> sorted = new TreeMap<String, OperationMetrics>(this._operations);
+      if (sorted.isEmpty ())
+         return;
+      out.println (String.format("%-32s %8s %6s %9s %10s %10s %10s %10s %10s",
+                                 "operation", "count", "errors", "ops/s",
+                                 "mean ms", "p50 ms", "p99 ms", "p999 ms", "max ms"));
+      for (Map.Entry<String, OperationMetrics> entry : sorted.entrySet ()) {
+         OperationMetrics m = entry.getValue ();
+         out.println (String.format("%-32s %8d %6d %9.1f %10.3f %10.3f %10.3f %10.3f %10.3f",
+                                    entry.getKey (), m.getCount (), m.getErrors (), m.getThroughput (),
+                                    m.getMeanMicros () / 1e3, m.getP50Micros () / 1e3,
+                                    m.getP99Micros () / 1e3, m.getP999Micros () / 1e3,
+                                    m.getMaxMicros () / 1e3));
+      }//end for
+   }//end summary
+
+   /**
+    * Removes the MBeans of this instance from the MBean server.
+    */
+   public void close () {
+      for (String operation : this._published) {
+         try {
+            this._server.unregisterMBean (name (operation));
+         }catch (JMException e) {
+            // already gone.
+         }//end try
+      }//end for
+      this._published.clear ();
+   }//end close
+
+   private OperationMetrics register (String operation) {
+      OperationMetrics metrics = new OperationMetrics();
+      OperationMetrics existing = this._operations.putIfAbsent (operation, metrics);
+      if (existing != null)
+         return existing;
+      try {
+         this._server.registerMBean (metrics, name (operation));
+         this._published.add (operation);
+      }catch (JMException e) {
+         // another Hotel instance in this JVM published the name first; the
+         // metrics are still kept and summarized.
+      }//end try
+      return metrics;
+   }//end register
+
+   private static ObjectName name (String operation) throws JMException {
+      return new ObjectName("hotel:type=Operation,name=" + ObjectName.quote (operation));
+   }//end name
+
+}//end Metrics
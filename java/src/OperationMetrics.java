@@ -0,0 +1,73 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class holds the latencies, the number of calls and the number of
+ * failed calls of one Hotel operation. Recording takes no lock.
+ *
+ */
+public class OperationMetrics implements OperationMetricsMBean {
+
+   private final LatencyHistogram _latencies = new LatencyHistogram();
+   private final AtomicLong _errors = new AtomicLong();
+   private final long _since = System.nanoTime();
+
+   /**
+    * Records one call.
+    *
+    * @param nanos how long the call took
+    * @param ok false when the call failed
+    */
+   public void record (long nanos, boolean ok) {
+      this._latencies.record (nanos);
+      if (!ok)
+         this._errors.incrementAndGet ();
+   }//end record
+
+   public long getCount () {
+      return this._latencies.count ();
+   }//end getCount
+
+   public long getErrors () {
+      return this._errors.get ();
+   }//end getErrors
+
+   // calls per second since the first call.
+   public double getThroughput () {
+      double seconds = (System.nanoTime () - this._since) / 1e9;
+      return seconds <= 0 ? 0.0 : getCount () / seconds;
+   }//end getThroughput
+
+   public double getMeanMicros () {
+      return this._latencies.mean () / 1e3;
+   }//end getMeanMicros
+
+   public double getP50Micros () {
+      return this._latencies.percentile (0.50) / 1e3;
+   }//end getP50Micros
+
+   public double getP99Micros () {
+      return this._latencies.percentile (0.99) / 1e3;
+   }//end getP99Micros
+
+   public double getP999Micros () {
+      return this._latencies.percentile (0.999) / 1e3;
+   }//end getP999Micros
+
+   public double getMaxMicros () {
+      return this._latencies.max () / 1e3;
+   }//end getMaxMicros
+
+}//end OperationMetrics
@@ -0,0 +1,37 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+/**
+ * The management interface of OperationMetrics, published over JMX as
+ * hotel:type=Operation,name=<operation>. Latencies are in microseconds.
+ *
+ */
+public interface OperationMetricsMBean {
+
+   long getCount ();
+
+   long getErrors ();
+
+   double getThroughput ();
+
+   double getMeanMicros ();
+
+   double getP50Micros ();
+
+   double getP99Micros ();
+
+   double getP999Micros ();
+
+   double getMaxMicros ();
+
+}//end OperationMetricsMBean
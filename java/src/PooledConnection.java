@@ -0,0 +1,125 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * This class wraps one physical connection handed out by the ConnectionPool,
+ * together with the prepared statements cached on it.
+ *
+ */
+public class PooledConnection {
+
+   // reference to physical database connection.
+   private final Connection _connection;
+
+   // prepared statements of the physical connection, keyed by SQL text.
+   private final StatementCache _statements;
+
+   // when the connection was last handed back to the pool.
+   private long _lastUsed;
+
+   // set once a statement failed in a way that may have broken the connection.
+   private volatile boolean _broken;
+
+   /**
+    * Creates a new pooled connection
+    *
+    * @param connection the physical connection
+    * @param cacheSize the maximum number of prepared statements kept open
+    */
+   PooledConnection (Connection connection, int cacheSize) {
+      this._connection = connection;
+      this._statements = new StatementCache(connection, cacheSize);
+      this._lastUsed = System.currentTimeMillis();
+   }//end PooledConnection
+
+   /**
+    * @return the physical connection
+    */
+   public Connection connection () {
+      return this._connection;
+   }//end connection
+
+   /**
+    * @return the prepared statement cache of this connection
+    */
+   public StatementCache statements () {
+      return this._statements;
+   }//end statements
+
+   long lastUsed () {
+      return this._lastUsed;
+   }//end lastUsed
+
+   void touch () {
+      this._lastUsed = System.currentTimeMillis();
+   }//end touch
+
+   /**
+    * Records a failed statement. Failures that may come from the connection
+    * itself keep the pool from handing the connection out again: those of
+    * SQLState class 08, and those without a state that the server did not
+    * report. The 7.3 driver sets no state at all, but passes the server's
+    * errors on as "ERROR: ...", which leave the connection usable.
+    *
+    * @param e the failure
+    */
+   public void failed (SQLException e) {
+      String state = e.getSQLState ();
+      String message = e.getMessage ();
+      if (state == null ? message == null || !message.trim ().startsWith ("ERROR") : state.startsWith ("08"))
+         this._broken = true;
+   }//end failed
+
+   boolean isBroken () {
+      return this._broken;
+   }//end isBroken
+
+   /**
+    * Checks that the connection is still usable by running a trivial query.
+    *
+    * @return true when the connection answered
+    */
+   boolean validate () {
+      try {
+         if (this._connection.isClosed ())
+            return false;
+         Statement stmt = this._connection.createStatement ();
+         try {
+            ResultSet rs = stmt.executeQuery ("SELECT 1");
+            return rs.next ();
+         }finally {
+            stmt.close ();
+         }//end try
+      }catch (SQLException e) {
+         return false;
+      }//end try
+   }//end validate
+
+   /**
+    * Closes the cached statements and the physical connection.
+    */
+   void close () {
+      this._statements.close ();
+      try {
+         this._connection.close ();
+      }catch (SQLException e) {
+         // ignored.
+      }//end try
+   }//end close
+
+}//end PooledConnection
@@ -0,0 +1,286 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+/**
+ * This class holds the parameterized SQL templates used by the Hotel menu
+ * operations. Every template is prepared once per connection through the
+ * StatementCache, so repeated calls only bind their parameters and execute.
+ *
+ */
+public final class Queries {
+
+   private Queries () {
+   }
+
+   // the existence probes below select a constant and stop at the first
+   // match; they are run through Hotel.exists, or combined in one round trip
+   // with EXISTS (...) as in CAN_MANAGE_ROOM.
+
+   // users
+   static final String CREATE_USER =
+      "INSERT INTO Users (name, password, userType) VALUES (?, ?, ?) RETURNING userID";
+
+   // copies a user created on shard 0 to the other shards.
+   static final String COPY_USER =
+      "INSERT INTO Users (userID, name, password, userType) VALUES (?, ?, ?, ?)";
+
+   static final String LOG_IN =
+      "SELECT 1 FROM Users WHERE userID = ? AND password = ? LIMIT 1";
+
+   static final String IS_MANAGER =
+      "SELECT 1 FROM Users u WHERE u.userID = ? " +
+      "AND (u.userType = 'manager' OR u.userType = 'admin') LIMIT 1";
+
+   // the role and hotels a session is allowed to manage
+   static final String USER_TYPE =
+      "SELECT userType FROM Users WHERE userID = ?";
+
+   static final String USER_NAME =
+      "SELECT name FROM Users WHERE userID = ?";
+
+   static final String MANAGED_HOTELS =
+      "SELECT hotelID FROM Hotel WHERE managerUserID = ? ORDER BY hotelID";
+
+   static final String MANAGES_HOTEL =
+      "SELECT 1 FROM Hotel h WHERE h.managerUserID = ? AND h.hotelID = ? LIMIT 1";
+
+   // hotels and rooms
+   // the bounding box of the search circle is answered by the GiST index on
+   // the hotel position, which also returns the hotels nearest first.
+   static final String HOTEL_POSITION =
+      "point(latitude::float8, longitude::float8)";
+
+   static final String HOTELS_NEARBY =
+      "SELECT hotelID, hotelName, dateEstablished, " +
+      "round((" + HOTEL_POSITION + " <-> point(?, ?))::numeric, 2) as distance FROM Hotel " +
+      "WHERE " + HOTEL_POSITION + " <@ box(point(?, ?), point(?, ?)) " +
+      "AND " + HOTEL_POSITION + " <-> point(?, ?) <= ? " +
+      "ORDER BY " + HOTEL_POSITION + " <-> point(?, ?)";
+
+   // the rooms free every night of a stay in the hotels near a location,
+   // nearest and cheapest first. The GiST index on the hotel position
+   // returns the hotels in distance order, so the query stops once limit
+   // rooms are found. params: latitude, longitude, the bounding box
+   // corners, latitude, longitude, radius, maxPrice, first night, checkout
+   // date, latitude, longitude, limit
+   static final String FREE_ROOMS_NEARBY =
+      "SELECT h.hotelID as hotel, h.hotelName, r.roomNumber as room, r.price, " +
+      "round((" + HOTEL_POSITION + " <-> point(?, ?))::numeric, 2) as distance " +
+      "FROM Hotel h JOIN Rooms r ON r.hotelID = h.hotelID " +
+      "WHERE " + HOTEL_POSITION + " <@ box(point(?, ?), point(?, ?)) " +
+      "AND " + HOTEL_POSITION + " <-> point(?, ?) <= ? " +
+      "AND r.price <= ? AND NOT EXISTS (SELECT 1 FROM RoomBookings b " +
+      "WHERE b.hotelID = r.hotelID AND b.roomNumber = r.roomNumber " +
+      "AND b.bookingDate >= ? AND b.bookingDate < ?) " +
+      "ORDER BY " + HOTEL_POSITION + " <-> point(?, ?), r.price, r.hotelID, r.roomNumber " +
+      "LIMIT ?";
+
+   static final String ROOM_EXISTS =
+      "SELECT 1 FROM Rooms WHERE hotelID = ? AND roomNumber = ? LIMIT 1";
+
+   // params: userID, userID, hotelID
+   static final String CAN_MANAGE_HOTEL =
+      "SELECT EXISTS (" + IS_MANAGER + "), EXISTS (" + MANAGES_HOTEL + ")";
+
+   // params: userID, userID, hotelID, hotelID, roomNumber
+   static final String CAN_MANAGE_ROOM =
+      "SELECT EXISTS (" + IS_MANAGER + "), EXISTS (" + MANAGES_HOTEL + "), " +
+      "EXISTS (" + ROOM_EXISTS + ")";
+
+   static final String AVAILABLE_ROOMS =
+      "SELECT r.roomNumber as room, r.price " +
+      "FROM Rooms r " +
+      "WHERE r.hotelID = ? AND NOT EXISTS (SELECT b.roomNumber " +
+      "FROM RoomBookings b WHERE b.hotelID = r.hotelID AND r.roomNumber = b.roomNumber " +
+      "AND b.bookingDate = ?) " +
+      "ORDER BY r.roomNumber";
+
+   // the rooms of a hotel free every night from the first night to the
+   // night before the checkout date. The bookings of the hotel during the
+   // stay are read with one range scan of the (hotelID, bookingDate) index
+   // into a hash, so the cost grows with the rooms and bookings of the
+   // hotel rather than rooms times nights.
+   // params: hotelID, hotelID, first night, checkout date
+   static final String AVAILABLE_ROOMS_FOR_STAY =
+      "SELECT r.roomNumber as room, r.price " +
+      "FROM Rooms r " +
+      "WHERE r.hotelID = ? AND r.roomNumber NOT IN (SELECT b.roomNumber " +
+      "FROM RoomBookings b WHERE b.hotelID = ? AND b.bookingDate >= ? AND b.bookingDate < ?) " +
+      "ORDER BY r.roomNumber";
+
+   // the room catalog: every room, ordered by hotel, and the rooms of one hotel.
+   static final String ROOM_CATALOG =
+      "SELECT hotelID, roomNumber, price, imageURL FROM Rooms ORDER BY hotelID, roomNumber";
+
+   static final String HOTEL_ROOM_CATALOG =
+      "SELECT roomNumber, price, imageURL FROM Rooms WHERE hotelID = ? ORDER BY roomNumber";
+
+   static final String LAST_ROOM_CHANGE =
+      "SELECT coalesce(max(changeID), 0) FROM RoomChanges";
+
+   // the changes past the last changeID seen, and those of the given
+   // changeIDs below it (as an array literal) that have committed since.
+   static final String ROOM_CHANGES =
+      "SELECT changeID, hotelID, bookingDate FROM RoomChanges WHERE changeID > ? OR changeID = ANY (?::bigint[]) " +
+      "ORDER BY changeID";
+
+   static final String BOOKED_ROOMS =
+      "SELECT roomNumber FROM RoomBookings WHERE hotelID = ? AND bookingDate = ?";
+
+   static final String UPDATE_ROOM =
+      "UPDATE Rooms SET price = ?, imageURL = ? WHERE hotelID = ? AND roomNumber = ?";
+
+   static final String LOG_ROOM_UPDATE =
+      "INSERT INTO RoomUpdatesLog (managerID, hotelID, roomNumber, updatedOn) VALUES (?, ?, ?, ?)";
+
+   static final String RECENT_ROOM_UPDATES =
+      "SELECT updateNumber as update, hotelID as hotel, " +
+      "roomNumber as room, updatedOn FROM (SELECT * FROM roomUpdatesLog WHERE managerID = ? " +
+      "ORDER BY updatedOn DESC LIMIT 5) AS last5 ORDER BY updatedOn ASC";
+
+   // bookings
+   // checks that the room exists and is free and books it, in one statement.
+   // Returns the room price (null: no such room), the new bookingID (null:
+   // already booked) and the number of bookings of the customer at the hotel
+   // before this one, as counted in CustomerBookingCounts. The unique
+   // (hotelID, roomNumber, bookingDate) constraint rejects the loser of two
+   // concurrent bookings.
+   // params: hotelID, roomNumber, userID, bookingDate, bookingDate
+   static final String BOOK_ROOM_IF_FREE =
+      "WITH room AS (SELECT hotelID, roomNumber, price FROM Rooms WHERE hotelID = ? AND roomNumber = ?), " +
+      "booked AS (INSERT INTO RoomBookings (customerID, hotelID, roomNumber, bookingDate) " +
+      "SELECT ?, r.hotelID, r.roomNumber, ? FROM room r WHERE NOT EXISTS (" +
+      "SELECT 1 FROM RoomBookings b " +
+      "WHERE b.hotelID = r.hotelID AND b.roomNumber = r.roomNumber AND b.bookingDate = ?) " +
+      "RETURNING bookingID, customerID, hotelID) " +
+      "SELECT (SELECT price FROM room), (SELECT bookingID FROM booked), " +
+      "(SELECT coalesce(sum(c.numBookings), 0) FROM CustomerBookingCounts c, booked b " +
+      "WHERE c.hotelID = b.hotelID AND c.customerID = b.customerID)";
+
+   // books a room for every night from the first night to the night before
+   // the checkout date in one statement, or for none of them when any night
+   // is taken. Returns the room price (null when there is no such room), the
+   // bookingID of the first night (null when the room was taken), the
+   // number of nights booked and the customer's earlier bookings at the
+   // hotel. params: hotelID, roomNumber, first night, checkout date,
+   // customerID, first night, checkout date
+   static final String BOOK_STAY_IF_FREE =
+      "WITH room AS (SELECT hotelID, roomNumber, price FROM Rooms WHERE hotelID = ? AND roomNumber = ?), " +
+      "nights AS (SELECT d::date AS bookingDate FROM generate_series(?::date, ?::date - 1, interval '1 day') d), " +
+      "booked AS (INSERT INTO RoomBookings (customerID, hotelID, roomNumber, bookingDate) " +
+      "SELECT ?, r.hotelID, r.roomNumber, n.bookingDate FROM room r, nights n WHERE NOT EXISTS (" +
+      "SELECT 1 FROM RoomBookings b WHERE b.hotelID = r.hotelID AND b.roomNumber = r.roomNumber " +
+      "AND b.bookingDate >= ? AND b.bookingDate < ?) " +
+      "RETURNING bookingID, customerID, hotelID) " +
+      "SELECT (SELECT price FROM room), (SELECT min(bookingID) FROM booked), (SELECT count(*) FROM booked), " +
+      "(SELECT coalesce(sum(c.numBookings), 0) FROM CustomerBookingCounts c, " +
+      "(SELECT DISTINCT customerID, hotelID FROM booked) b " +
+      "WHERE c.hotelID = b.hotelID AND c.customerID = b.customerID)";
+
+   // BOOK_ROOM_IF_FREE for a group of bookings given as four parallel
+   // arrays (customerIDs, hotelIDs, roomNumbers, dates), inserted in one
+   // statement. Returns one row per booking, in order: the room price (null
+   // when there is no such room), the bookingID (null when the room was
+   // taken), the customer's userID (null when there is no such user) and
+   // the customer's earlier bookings at the hotel. A room and date must
+   // appear at most once per group.
+   static final String BOOK_ROOMS_IF_FREE =
+      "WITH req AS (SELECT * FROM unnest(?::integer[], ?::integer[], ?::integer[], ?::date[]) " +
+      "WITH ORDINALITY AS q(customerID, hotelID, roomNumber, bookingDate, slot)), " +
+      "booked AS (INSERT INTO RoomBookings (customerID, hotelID, roomNumber, bookingDate) " +
+      "SELECT q.customerID, q.hotelID, q.roomNumber, q.bookingDate FROM req q, Rooms r, Users u " +
+      "WHERE r.hotelID = q.hotelID AND r.roomNumber = q.roomNumber AND u.userID = q.customerID " +
+      "ON CONFLICT (hotelID, roomNumber, bookingDate) DO NOTHING " +
+      "RETURNING bookingID, customerID, hotelID, roomNumber, bookingDate) " +
+      "SELECT r.price, b.bookingID, u.userID, coalesce(c.numBookings, 0) FROM req q " +
+      "LEFT JOIN Rooms r ON r.hotelID = q.hotelID AND r.roomNumber = q.roomNumber " +
+      "LEFT JOIN Users u ON u.userID = q.customerID " +
+      "LEFT JOIN booked b ON b.hotelID = q.hotelID AND b.roomNumber = q.roomNumber " +
+      "AND b.bookingDate = q.bookingDate " +
+      "LEFT JOIN CustomerBookingCounts c ON c.hotelID = b.hotelID AND c.customerID = b.customerID " +
+      "ORDER BY q.slot";
+
+   // the room prices come from the room catalog.
+   static final String RECENT_CUSTOMER_BOOKINGS =
+      "SELECT hotelID, roomNumber, bookingDate FROM RoomBookings WHERE customerID = ? " +
+      "ORDER BY bookingDate LIMIT 5";
+
+   static final String HOTEL_BOOKING_HISTORY =
+      "SELECT B.bookingID, U.name, B.hotelID, B.roomNumber, B.bookingDate " +
+      "FROM RoomBookings B, Users U, Hotel H " +
+      "WHERE H.hotelID = B.hotelID AND B.customerID = U.userID " +
+      "AND B.bookingDate >= ? AND B.bookingDate <= ? " +
+      "ORDER BY B.bookingDate ASC";
+
+   // one page of the booking history, continuing after the (bookingDate,
+   // bookingID) of the last row of the previous page.
+   static final String HOTEL_BOOKING_HISTORY_PAGE =
+      "SELECT B.bookingID, U.name, B.hotelID, B.roomNumber, B.bookingDate " +
+      "FROM RoomBookings B, Users U, Hotel H " +
+      "WHERE H.hotelID = B.hotelID AND B.customerID = U.userID " +
+      "AND B.bookingDate >= ? AND B.bookingDate <= ? " +
+      "AND (B.bookingDate, B.bookingID) > (?, ?) " +
+      "ORDER BY B.bookingDate ASC, B.bookingID ASC " +
+      "LIMIT ?";
+
+   // the same page for one hotel.
+   // params: hotelID, lowerBound, upperBound, afterDate, afterID, limit
+   static final String ONE_HOTEL_BOOKING_HISTORY_PAGE =
+      "SELECT B.bookingID, U.name, B.hotelID, B.roomNumber, B.bookingDate " +
+      "FROM RoomBookings B, Users U " +
+      "WHERE B.hotelID = ? AND B.customerID = U.userID " +
+      "AND B.bookingDate >= ? AND B.bookingDate <= ? " +
+      "AND (B.bookingDate, B.bookingID) > (?, ?) " +
+      "ORDER BY B.bookingDate ASC, B.bookingID ASC " +
+      "LIMIT ?";
+
+   // the customers of a hotel with the most bookings, from the counts kept
+   // by the RoomBookings triggers.
+   // params: hotelID, limit
+   static final String REGULAR_CUSTOMERS =
+      "SELECT U.userID, U.name, C.numBookings " +
+      "FROM CustomerBookingCounts C, Users U " +
+      "WHERE C.hotelID = ? AND U.userID = C.customerID " +
+      "ORDER BY C.numBookings DESC, C.customerID ASC " +
+      "LIMIT ?";
+
+   // repairs
+   // inserts the repair and the manager's request for it, which takes the
+   // repairID generated by the first insert.
+   // params: companyID, hotelID, roomNumber, managerID
+   static final String PLACE_REPAIR =
+      "WITH repair AS (INSERT INTO roomRepairs (companyID, hotelID, roomNumber, repairDate) " +
+      "VALUES (?, ?, ?, CURRENT_DATE) RETURNING repairID) " +
+      "INSERT INTO roomRepairRequests (managerID, repairID) SELECT ?, repairID FROM repair";
+
+   static final String PLACE_REPAIR_RETURNING_ID =
+      PLACE_REPAIR + " RETURNING repairID";
+
+   static final String REPAIR_HISTORY =
+      "SELECT a.companyID as company, " +
+      "a.hotelID as hotel, a.roomNumber as room, a.repairDate " +
+      "FROM roomRepairs a, roomRepairRequests b " +
+      "WHERE b.managerID = ? " +
+      "AND a.repairID = b.repairID";
+
+   // bulk load
+   // CustomerBookingCounts counted again from RoomBookings, for bookings
+   // loaded with its triggers disabled.
+   static final String CLEAR_CUSTOMER_BOOKING_COUNTS =
+      "DELETE FROM CustomerBookingCounts";
+
+   static final String COUNT_CUSTOMER_BOOKINGS =
+      "INSERT INTO CustomerBookingCounts (hotelID, customerID, numBookings) " +
+      "SELECT hotelID, customerID, count(*) FROM RoomBookings GROUP BY hotelID, customerID";
+
+}//end Queries
@@ -0,0 +1,220 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class keeps the top customers of each hotel, by number of bookings,
+ * so that viewRegularCustomers is answered from memory.
+ *
+ * A hotel's list is read from CustomerBookingCounts on first use, which the
+ * database keeps current on every booking. Bookings made through this
+ * process then update the list in place with the customer's new count, as
+ * returned by the booking statement. Bookings made by other processes
+ * become visible when the list is older than the time to live and reloaded.
+ *
+ */
+public class RegularCustomers {
+
+   // the Hotel instance lists are loaded through.
+   private final Hotel _esql;
+
+   private final int _size;
+   private final long _ttl;
+
+   // top customers by hotelID.
+   private final Map<Integer, TopCustomers> _hotels = new HashMap<Integer, TopCustomers>();
+
+   // the customers of one hotel with the most bookings, most first; ties
+   // are ordered by userID. A name is null until it is first printed.
+   static final class TopCustomers {
+      final int[] userIDs;
+      final String[] names;
+      final int[] counts;
+      int length;
+      final long loadedAt;
+
+      TopCustomers (int size) {
+         this.userIDs = new int[size];
+         this.names = new String[size];
+         this.counts = new int[size];
+         this.loadedAt = System.currentTimeMillis();
+      }
+
+      // records the new booking count of a customer, keeping the order.
+      void offer (int userID, int count) {
+         int i = 0;
+         while (i < this.length && this.userIDs[i] != userID)
+            ++i;
+         String name = null;
+         if (i < this.length) {
+            name = this.names[i];
+         }else if (this.length < this.userIDs.length) {
+            i = this.length++;
+         }else if (ranksBefore (count, userID, this.counts[i - 1], this.userIDs[i - 1])) {
+            --i;
+         }else {
+            return;
+         }//end if
+         // moves the customer up past those it now outranks.
+         while (i > 0 && ranksBefore (count, userID, this.counts[i - 1], this.userIDs[i - 1])) {
+            this.userIDs[i] = this.userIDs[i - 1];
+            this.names[i] = this.names[i - 1];
+            this.counts[i] = this.counts[i - 1];
+            --i;
+         }//end while
+         this.userIDs[i] = userID;
+         this.names[i] = name;
+         this.counts[i] = count;
+      }
+
+      static boolean ranksBefore (int count, int userID, int otherCount, int otherUserID) {
+         return count > otherCount || (count == otherCount && userID < otherUserID);
+      }
+   }//end TopCustomers
+
+   /**
+    * Creates the cache of top customers
+    *
+    * @param esql the Hotel instance lists are loaded through
+    * @param size how many customers are kept per hotel
+    * @param ttl milliseconds after which a list is reloaded
+    */
+   public RegularCustomers (Hotel esql, int size, long ttl) {
+      this._esql = esql;
+      this._size = size;
+      this._ttl = ttl;
+   }//end RegularCustomers
+
+   /**
+    * Outputs the top customers of a hotel in the same format as
+    * executeQueryAndPrintResult.
+    *
+    * @param hotelID the hotel
+    * @param out the stream to print to
+    * @return the number of customers printed
+    * @throws java.sql.SQLException when the list cannot be loaded
+    */
+   public int print (int hotelID, java.io.PrintStream out) throws SQLException {
+      TopCustomers top = top (hotelID);
+      int count;
+      int[] userIDs;
+      String[] names;
+      int[] counts;
+      synchronized (top) {
+         count = top.length;
+         userIDs = top.userIDs.clone ();
+         names = top.names.clone ();
+         counts = top.counts.clone ();
+      }
+      // the missing names are queried without the lock, so bookings are not
+      // held up behind them, and kept for the customers still in the list.
+      boolean loaded = false;
+      for (int i = 0; i < count; ++i) {
+         if (names[i] == null) {
+            names[i] = name (userIDs[i]);
+            loaded = true;
+         }//end if
+      }//end for
+      if (loaded) {
+         synchronized (top) {
+            for (int i = 0; i < top.length; ++i) {
+               for (int j = 0; top.names[i] == null && j < count; ++j) {
+                  if (top.userIDs[i] == userIDs[j])
+                     top.names[i] = names[j];
+               }//end for
+            }//end for
+         }
+      }//end if
+      StringBuilder rows = new StringBuilder();
+      for (int i = 0; i < count; ++i)
+         rows.append (names[i]).append ('\t').append (counts[i]).append ("\t\n");
+      if (count > 0)
+         out.print ("name\tnumbookings\t\n" + rows);
+      return count;
+   }//end print
+
+   /**
+    * Records a booking made by this process.
+    *
+    * @param hotelID the hotel
+    * @param userID the customer
+    * @param count the customer's number of bookings at the hotel, this one included
+    */
+   public void recordBooking (int hotelID, int userID, int count) {
+      TopCustomers top;
+      synchronized (this) {
+         top = this._hotels.get (hotelID);
+      }
+      if (top != null) {
+         synchronized (top) {
+            top.offer (userID, count);
+         }
+      }//end if
+   }//end recordBooking
+
+   /**
+    * Drops the list of one hotel, for instance after bookings were deleted.
+    *
+    * @param hotelID the hotel
+    */
+   public synchronized void invalidate (int hotelID) {
+      this._hotels.remove (hotelID);
+   }//end invalidate
+
+   /**
+    * Drops every list.
+    */
+   public synchronized void invalidateAll () {
+      this._hotels.clear ();
+   }//end invalidateAll
+
+   // returns the top customers of a hotel, loading them if needed.
+   private TopCustomers top (int hotelID) throws SQLException {
+      synchronized (this) {
+         TopCustomers top = this._hotels.get (hotelID);
+         if (top != null && System.currentTimeMillis() - top.loadedAt < this._ttl)
+            return top;
+      }
+
+      final TopCustomers top = new TopCustomers(this._size);
+      this._esql.executeQueryAndMap (Queries.REGULAR_CUSTOMERS, new RowMapper<Void>() {
+         public Void map (ResultSet rs) throws SQLException {
+            int i = top.length++;
+            top.userIDs[i] = rs.getInt (1);
+            top.names[i] = rs.getString (2);
+            top.counts[i] = rs.getInt (3);
+            return null;
+         }
+      }, hotelID, this._size);
+
+      synchronized (this) {
+         this._hotels.put (hotelID, top);
+      }
+      return top;
+   }//end top
+
+   private static final RowMapper<String> NAME = new RowMapper<String>() {
+      public String map (ResultSet rs) throws SQLException {
+         return rs.getString (1);
+      }
+   };
+
+   private String name (int userID) throws SQLException {
+      return this._esql.executeQueryForObject (Queries.USER_NAME, NAME, userID);
+   }//end name
+
+}//end RegularCustomers
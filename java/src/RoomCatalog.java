@@ -0,0 +1,573 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * This class keeps the rooms of every hotel in memory (room number, price
+ * and image), so that reads of Rooms rows do not go to the database.
+ *
+ * Rooms are held per hotel in an open addressing table keyed by the int
+ * hotelID, each hotel as sorted primitive arrays that are searched by room
+ * number. Readers never lock. A hotel's arrays are replaced as a whole
+ * when they change, and the table itself only when it is half full.
+ *
+ * The catalog is loaded at startup and read through for hotels it does not
+ * know yet. Hotels without rooms are not added, so lookups of unknown
+ * hotelIDs cannot grow the catalog; they go to the database each time.
+ * Triggers on Rooms record the changed hotels in RoomChanges and
+ * NOTIFY room_changes; a listener thread LISTENs on its own connection and
+ * reloads the hotels that changed, so writes made by other processes show
+ * up within a poll interval. The bundled driver only reads notifications
+ * while it runs a statement, so the listener issues an empty query every
+ * poll interval. After the listener loses its connection it reloads
+ * everything, since changes may have been missed meanwhile.
+ *
+ * Triggers on RoomBookings record the hotel and date of every booking made
+ * or deleted in RoomChanges as well, and the listener drops those dates
+ * from the availability cache, so bookings made by other processes are seen
+ * within a poll interval too. Where the listener reloads everything, it
+ * drops the whole availability cache.
+ *
+ * The listener also LISTENs on permission_changes, which triggers on Users
+ * and Hotel notify when a user's role or a hotel's manager changes, and
+ * passes it on to Hotel.permissionsChanged so sessions reload.
+ *
+ * changeIDs are taken when a change is made but become visible when its
+ * transaction commits, not necessarily in order. The changeIDs skipped
+ * below the last one seen are therefore asked for again on every poll
+ * until they show up, or for hotel.catalog.gapTimeoutMs when they belong
+ * to a transaction that rolled back.
+ *
+ */
+public class RoomCatalog {
+
+   static final String CHANNEL = "room_changes";
+   static final String PERMISSIONS_CHANNEL = "permission_changes";
+
+   // how long a skipped changeID is waited for.
+   static final long GAP_TIMEOUT = Long.getLong("hotel.catalog.gapTimeoutMs", 60000L);
+
+   // skipped changeIDs waited for at most; a larger jump reloads everything.
+   static final int MAX_GAPS = 10000;
+
+   // the Hotel instance rooms are loaded through.
+   private final Hotel _esql;
+
+   private final String _url;
+   private final String _user;
+   private final String _passwd;
+   private final long _pollMs;
+
+   // hotelID -> rooms; replaced by a larger copy when half full.
+   private volatile Table _hotels = new Table(16);
+
+   private Thread _listener = null;
+   private volatile boolean _closed = false;
+
+   // used by the listener thread only.
+   private Connection _conn;
+   private long _lastChange;
+   // skipped changeIDs below _lastChange -> when they were first missed.
+   private final Map<Long, Long> _gaps = new HashMap<Long, Long>();
+
+   /**
+    * The rooms of one hotel, by ascending room number.
+    */
+   public static final class HotelRooms {
+      final int hotelID;
+      final int[] roomNumbers;
+      final int[] prices;
+      final String[] imageURLs;
+
+      HotelRooms (int hotelID, int[] roomNumbers, int[] prices, String[] imageURLs) {
+         this.hotelID = hotelID;
+         this.roomNumbers = roomNumbers;
+         this.prices = prices;
+         this.imageURLs = imageURLs;
+      }
+
+      public int size () {
+         return this.roomNumbers.length;
+      }
+
+      public int roomNumber (int i) {
+         return this.roomNumbers[i];
+      }
+
+      public int price (int i) {
+         return this.prices[i];
+      }
+
+      public String imageURL (int i) {
+         return this.imageURLs[i];
+      }
+
+      /**
+       * @param roomNumber a room number
+       * @return the position of the room, or a negative number when the
+       *         hotel has no such room
+       */
+      public int indexOf (int roomNumber) {
+         return Arrays.binarySearch (this.roomNumbers, roomNumber);
+      }
+   }//end HotelRooms
+
+   // open addressing map from hotelID to rooms. A slot is used once its
+   // value is set; the key is written before the value, so a reader that
+   // sees the value sees the key too. Keys are never removed.
+   private static final class Table {
+      final int[] keys;
+      final AtomicReferenceArray<HotelRooms> values;
+      int size;
+
+      Table (int capacity) {
+         this.keys = new int[capacity];
+         this.values = new AtomicReferenceArray<HotelRooms>(capacity);
+      }
+
+      // the slot of a key, or of the free slot where it belongs.
+      int slot (int key) {
+         int mask = this.keys.length - 1;
+         int h = key * 0x9E3779B9;
+         int i = (h ^ (h >>> 16)) & mask;
+         while (this.values.get (i) != null && this.keys[i] != key)
+            i = (i + 1) & mask;
+         return i;
+      }
+
+      HotelRooms get (int key) {
+         return this.values.get (slot (key));
+      }
+
+      // true when one more key keeps the table at most half full.
+      boolean fits () {
+         return 2 * (this.size + 1) <= this.keys.length;
+      }
+
+      // adds or replaces a key. Adding needs room, see fits().
+      void add (int key, HotelRooms rooms) {
+         int i = slot (key);
+         if (this.values.get (i) == null) {
+            this.keys[i] = key;
+            ++this.size;
+         }//end if
+         this.values.set (i, rooms);
+      }
+
+      // a copy with room for at least count keys at half load.
+      Table grow (int count) {
+         int capacity = this.keys.length;
+         while (capacity < 2 * count)
+            capacity <<= 1;
+         Table copy = new Table(capacity);
+         for (int i = 0; i < this.keys.length; ++i) {
+            HotelRooms rooms = this.values.get (i);
+            if (rooms != null)
+               copy.add (this.keys[i], rooms);
+         }//end for
+         return copy;
+      }
+   }//end Table
+
+   /**
+    * Creates an empty room catalog
+    *
+    * @param esql the Hotel instance rooms are loaded through
+    * @param url the JDBC URL the listener connects to
+    * @param user the database user
+    * @param passwd the database password
+    * @param pollMs how often the listener checks for notifications; 0 or
+    *        less disables it, and changes by other processes are then not seen
+    */
+   public RoomCatalog (Hotel esql, String url, String user, String passwd, long pollMs) {
+      this._esql = esql;
+      this._url = url;
+      this._user = user;
+      this._passwd = passwd;
+      this._pollMs = pollMs;
+   }//end RoomCatalog
+
+   /**
+    * Loads every room and starts listening for changes.
+    *
+    * @throws java.sql.SQLException when the rooms cannot be read
+    */
+   public void start () throws SQLException {
+      if (this._pollMs > 0) {
+         // listening before the load, so no change can fall in between.
+         connect ();
+         this._listener = new Thread(new Runnable() {
+            public void run () {
+               listen ();
+            }
+         }, "room-catalog");
+         this._listener.setDaemon (true);
+      }//end if
+      loadAll ();
+      if (this._listener != null)
+         this._listener.start ();
+   }//end start
+
+   /**
+    * Returns the rooms of a hotel, loading them if the catalog does not
+    * know the hotel yet.
+    *
+    * @param hotelID the hotel
+    * @return the rooms of the hotel, empty when there is no such hotel
+    * @throws java.sql.SQLException when the rooms cannot be loaded
+    */
+   public HotelRooms hotel (int hotelID) throws SQLException {
+      HotelRooms rooms = this._hotels.get (hotelID);
+      if (rooms != null)
+         return rooms;
+      rooms = load (hotelID);
+      if (rooms.size () == 0)
+         return rooms;
+      synchronized (this) {
+         // a reload by the listener since is newer than this one.
+         HotelRooms current = this._hotels.get (hotelID);
+         if (current != null)
+            return current;
+         put (rooms);
+      }
+      return rooms;
+   }//end hotel
+
+   /**
+    * @param hotelID the hotel
+    * @param roomNumber the room
+    * @return true when the hotel has the room
+    * @throws java.sql.SQLException when the rooms cannot be loaded
+    */
+   public boolean exists (int hotelID, int roomNumber) throws SQLException {
+      return hotel (hotelID).indexOf (roomNumber) >= 0;
+   }//end exists
+
+   /**
+    * @param hotelID the hotel
+    * @param roomNumber the room
+    * @return the price of the room, or -1 when there is no such room
+    * @throws java.sql.SQLException when the rooms cannot be loaded
+    */
+   public int price (int hotelID, int roomNumber) throws SQLException {
+      HotelRooms rooms = hotel (hotelID);
+      int i = rooms.indexOf (roomNumber);
+      return i < 0 ? -1 : rooms.prices[i];
+   }//end price
+
+   /**
+    * Reloads the rooms of a hotel, after this process changed them.
+    *
+    * @param hotelID the hotel
+    * @throws java.sql.SQLException when the rooms cannot be loaded
+    */
+   public void reload (int hotelID) throws SQLException {
+      HotelRooms rooms = load (hotelID);
+      synchronized (this) {
+         put (rooms);
+      }
+   }//end reload
+
+   /**
+    * @return the number of hotels in the catalog
+    */
+   public int size () {
+      return this._hotels.size;
+   }//end size
+
+   /**
+    * Stops listening for changes.
+    */
+   public void close () {
+      this._closed = true;
+      if (this._listener != null) {
+         this._listener.interrupt ();
+         try {
+            this._listener.join (1000);
+         }catch (InterruptedException e) {
+            Thread.currentThread ().interrupt ();
+         }//end try
+      }//end if
+   }//end close
+
+   // adds or replaces the rooms of a hotel; a hotel not in the catalog is
+   // only added when it has rooms. Called with the lock held.
+   private void put (HotelRooms rooms) {
+      Table table = this._hotels;
+      if (table.get (rooms.hotelID) == null) {
+         if (rooms.size () == 0)
+            return;
+         if (!table.fits ()) {
+            Table copy = table.grow (2 * (table.size + 1));
+            copy.add (rooms.hotelID, rooms);
+            this._hotels = copy;
+            return;
+         }//end if
+      }//end if
+      table.add (rooms.hotelID, rooms);
+   }//end put
+
+   private HotelRooms load (int hotelID) throws SQLException {
+      Builder builder = new Builder();
+      this._esql.executeQueryAndMap (Queries.HOTEL_ROOM_CATALOG, builder, hotelID);
+      return builder.build (hotelID);
+   }//end load
+
+   // replaces the whole catalog with the rooms of every hotel.
+   private void loadAll () throws SQLException {
+      final Builder builder = new Builder();
+      final Table[] table = { new Table(16) };
+      final int[] hotelID = { 0 };
+      // rows come ordered by hotel; each hotel is sealed when the next starts.
+      this._esql.executeQueryAndMap (Queries.ROOM_CATALOG, new RowMapper<Void>() {
+         public Void map (ResultSet rs) throws SQLException {
+            int id = rs.getInt (1);
+            if (id != hotelID[0] && builder.size () > 0)
+               add (table, builder.build (hotelID[0]));
+            hotelID[0] = id;
+            builder.row (rs.getInt (2), rs.getInt (3), rs.getString (4));
+            return null;
+         }
+      });
+      if (builder.size () > 0)
+         add (table, builder.build (hotelID[0]));
+      synchronized (this) {
+         this._hotels = table[0];
+      }
+   }//end loadAll
+
+   // adds a hotel to a table being built, growing it at half load.
+   private static void add (Table[] table, HotelRooms rooms) {
+      if (!table[0].fits ())
+         table[0] = table[0].grow (table[0].size + 1);
+      table[0].add (rooms.hotelID, rooms);
+   }//end add
+
+   // collects the (roomNumber, price, imageURL) rows of one hotel.
+   private static final class Builder implements RowMapper<Void> {
+      private final IntColumn _roomNumbers = new IntColumn();
+      private final IntColumn _prices = new IntColumn();
+      private String[] _imageURLs = new String[16];
+
+      public Void map (ResultSet rs) throws SQLException {
+         row (rs.getInt (1), rs.getInt (2), rs.getString (3));
+         return null;
+      }
+
+      void row (int roomNumber, int price, String imageURL) {
+         int i = this._roomNumbers.size ();
+         if (i == this._imageURLs.length)
+            this._imageURLs = Arrays.copyOf (this._imageURLs, 2 * i);
+         this._roomNumbers.add (roomNumber);
+         this._prices.add (price);
+         this._imageURLs[i] = imageURL == null ? null : imageURL.trim ();
+      }
+
+      int size () {
+         return this._roomNumbers.size ();
+      }
+
+      // the rows so far as a hotel, emptying the builder.
+      HotelRooms build (int hotelID) {
+         int n = size ();
+         HotelRooms rooms = new HotelRooms(hotelID, this._roomNumbers.toArray (), this._prices.toArray (),
+                                           Arrays.copyOf (this._imageURLs, n));
+         this._roomNumbers.clear ();
+         this._prices.clear ();
+         Arrays.fill (this._imageURLs, 0, n, null);
+         return rooms;
+      }
+   }//end Builder
+
+   /*
+    * The listener.
+    **/
+
+   // opens the listener connection, LISTENs and notes the last change.
+   private void connect () throws SQLException {
+      this._conn = DriverManager.getConnection (this._url, this._user, this._passwd);
+      Statement stmt = this._conn.createStatement ();
+      try {
+         stmt.execute ("LISTEN " + CHANNEL);
+         stmt.execute ("LISTEN " + PERMISSIONS_CHANNEL);
+         // permission changes may have been missed while disconnected.
+         this._esql.permissionsChanged ();
+         ResultSet rs = stmt.executeQuery (Queries.LAST_ROOM_CHANGE);
+         rs.next ();
+         this._lastChange = rs.getLong (1);
+         this._gaps.clear ();
+         rs.close ();
+      }finally {
+         stmt.close ();
+      }//end try
+   }//end connect
+
+   private void listen () {
+      while (!this._closed) {
+         try {
+            if (this._conn == null) {
+               connect ();
+               loadAll ();
+               invalidateAvailability ();
+            }//end if
+            Thread.sleep (this._pollMs);
+            if (notified ())
+               applyChanges ();
+         }catch (InterruptedException e) {
+            break;
+         }catch (SQLException e) {
+            if (this._closed)
+               break;
+            System.err.println ("room catalog: " + e.getMessage ());
+            disconnect ();
+            try {
+               Thread.sleep (1000);
+            }catch (InterruptedException ie) {
+               break;
+            }//end try
+         }//end try
+      }//end while
+      disconnect ();
+   }//end listen
+
+   // runs an empty query, which makes the driver read pending notifications,
+   // passes on permission changes and tells whether rooms changed.
+   private boolean notified () throws SQLException {
+      Statement stmt = this._conn.createStatement ();
+      try {
+         stmt.executeQuery ("SELECT 1").close ();
+      }finally {
+         stmt.close ();
+      }//end try
+      boolean rooms = false;
+      boolean permissions = false;
+      try {
+         // org.postgresql.PGConnection and PGNotification, which are not on
+         // the compile classpath.
+         Method getNotifications = this._conn.getClass ().getMethod ("getNotifications");
+         Object notifications = getNotifications.invoke (this._conn);
+         int count = notifications == null ? 0 : Array.getLength (notifications);
+         if (count > 0) {
+            Method getName = Class.forName ("org.postgresql.PGNotification").getMethod ("getName");
+            for (int i = 0; i < count; ++i) {
+               String channel = (String) getName.invoke (Array.get (notifications, i));
+               if (PERMISSIONS_CHANNEL.equals (channel))
+                  permissions = true;
+               else
+                  rooms = true;
+            }//end for
+         }//end if
+      }catch (ReflectiveOperationException e) {
+         throw new SQLException("The JDBC driver does not support notifications: " + e);
+      }//end try
+      if (permissions)
+         this._esql.permissionsChanged ();
+      return rooms;
+   }//end notified
+
+   // reloads the hotels changed since the last change seen and drops the
+   // availability of the dates booked since.
+   private void applyChanges () throws SQLException {
+      IntColumn hotelIDs = new IntColumn();
+      List<Object[]> booked = new ArrayList<Object[]>();
+      StringBuilder gaps = new StringBuilder("{");
+      for (Long changeID : this._gaps.keySet ())
+         gaps.append (gaps.length () > 1 ? "," : "").append (changeID);
+      gaps.append ('}');
+      long now = System.currentTimeMillis ();
+      boolean overflow = false;
+      PreparedStatement stmt = this._conn.prepareStatement (Queries.ROOM_CHANGES);
+      try {
+         stmt.setLong (1, this._lastChange);
+         stmt.setString (2, gaps.toString ());
+         ResultSet rs = stmt.executeQuery ();
+         while (rs.next ()) {
+            long changeID = rs.getLong (1);
+            if (changeID > this._lastChange) {
+               for (long skipped = this._lastChange + 1; skipped < changeID && !overflow; ++skipped) {
+                  this._gaps.put (skipped, now);
+                  overflow = this._gaps.size () > MAX_GAPS;
+               }//end for
+               this._lastChange = changeID;
+            }else {
+               this._gaps.remove (changeID);
+            }//end if
+            Date bookingDate = rs.getDate (3);
+            if (bookingDate == null)
+               hotelIDs.add (rs.getInt (2));
+            else
+               booked.add (new Object[] { rs.getInt (2), bookingDate });
+         }//end while
+         rs.close ();
+      }finally {
+         stmt.close ();
+      }//end try
+      if (overflow) {
+         this._gaps.clear ();
+         loadAll ();
+         invalidateAvailability ();
+         return;
+      }//end if
+      Iterator<Long> waited = this._gaps.values ().iterator ();
+      while (waited.hasNext ()) {
+         if (now - waited.next () > GAP_TIMEOUT)
+            waited.remove ();
+      }//end while
+      int[] changed = hotelIDs.toArray ();
+      Arrays.sort (changed);
+      for (int i = 0; i < changed.length; ++i) {
+         if (i == 0 || changed[i] != changed[i - 1])
+            reload (changed[i]);
+      }//end for
+      AvailabilityCache availability = this._esql.getAvailability ();
+      if (availability != null) {
+         for (Object[] booking : booked)
+            availability.invalidate ((Integer) booking[0], (Date) booking[1]);
+      }//end if
+   }//end applyChanges
+
+   // drops every cached availability, which changes may have passed by.
+   private void invalidateAvailability () {
+      AvailabilityCache availability = this._esql.getAvailability ();
+      if (availability != null)
+         availability.invalidateAll ();
+   }//end invalidateAvailability
+
+   private void disconnect () {
+      if (this._conn == null)
+         return;
+      try {
+         this._conn.close ();
+      }catch (SQLException e) {
+         // already broken.
+      }//end try
+      this._conn = null;
+   }//end disconnect
+
+}//end RoomCatalog
@@ -0,0 +1,57 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+/**
+ * This class holds a new price and image of one room, as applied by
+ * Hotel.updateRooms.
+ *
+ */
+public class RoomUpdate {
+
+   private final int _hotelID;
+   private final int _roomNumber;
+   private final int _price;
+   private final String _imageURL;
+
+   /**
+    * Creates a room update
+    *
+    * @param hotelID the hotel of the room
+    * @param roomNumber the room
+    * @param price the new price
+    * @param imageURL the new image
+    */
+   public RoomUpdate (int hotelID, int roomNumber, int price, String imageURL) {
+      this._hotelID = hotelID;
+      this._roomNumber = roomNumber;
+      this._price = price;
+      this._imageURL = imageURL;
+   }//end RoomUpdate
+
+   public int getHotelID () {
+      return this._hotelID;
+   }//end getHotelID
+
+   public int getRoomNumber () {
+      return this._roomNumber;
+   }//end getRoomNumber
+
+   public int getPrice () {
+      return this._price;
+   }//end getPrice
+
+   public String getImageURL () {
+      return this._imageURL;
+   }//end getImageURL
+
+}//end RoomUpdate
@@ -0,0 +1,35 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * This interface turns the current row of a result set into an object,
+ * reading each column with its typed getter (getInt, getLong, getDate, ...)
+ * rather than as a String.
+ *
+ */
+public interface RowMapper<T> {
+
+   /**
+    * Maps the row the result set is positioned on. Implementations must not
+    * move the cursor.
+    *
+    * @param rs the result set
+    * @return the object for the row
+    * @throws java.sql.SQLException when a column cannot be read
+    */
+   T map (ResultSet rs) throws SQLException;
+
+}//end RowMapper
@@ -0,0 +1,140 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class holds what a logged in user may do: whether they are a manager
+ * and which hotels they manage. It is loaded once at login, so the menu
+ * options check permissions in memory instead of querying Users and Hotel
+ * on every action.
+ *
+ * The permissions are reloaded after a trigger on Users or Hotel notified
+ * permission_changes (see RoomCatalog), after invalidate() was called, for
+ * instance when the menu refused an option, and at the latest when they are
+ * older than the time to live (hotel.session.ttlMs, default 5 minutes),
+ * which covers notifications missed while the listener was disconnected.
+ *
+ */
+public class Session {
+
+   static final long TTL = Long.getLong("hotel.session.ttlMs", 5L * 60 * 1000);
+
+   private final Hotel _esql;
+   private final int _userID;
+
+   private String _userType;
+   // hotelIDs managed by the user, in ascending order.
+   private int[] _hotels;
+   private long _loadedAt;
+   // Hotel.getPermissionChanges() when the permissions were loaded.
+   private long _loadedChanges;
+
+   private Session (Hotel esql, int userID) {
+      this._esql = esql;
+      this._userID = userID;
+   }//end Session
+
+   /**
+    * Logs a user in and loads their permissions
+    *
+    * @param esql the Hotel instance the session runs on
+    * @param userID the user
+    * @param password the password of the user
+    * @return the session, or null when the credentials are wrong
+    * @throws java.sql.SQLException when the user cannot be loaded
+    */
+   public static Session open (Hotel esql, int userID, String password) throws SQLException {
+      if (!Hotel.checkCredentials (esql, userID, password))
+         return null;
+      Session session = new Session(esql, userID);
+      session.load ();
+      return session;
+   }//end open
+
+   /**
+    * @return the logged in user
+    */
+   public int getUserID () {
+      return this._userID;
+   }//end getUserID
+
+   /**
+    * @return true when the user is a manager or an admin
+    * @throws java.sql.SQLException when expired permissions cannot be reloaded
+    */
+   public synchronized boolean isManager () throws SQLException {
+      refresh ();
+      return this._userType != null
+         && (this._userType.equals ("manager") || this._userType.equals ("admin"));
+   }//end isManager
+
+   /**
+    * @param hotelID the hotel
+    * @return true when the user is the manager of the hotel
+    * @throws java.sql.SQLException when expired permissions cannot be reloaded
+    */
+   public synchronized boolean managesHotel (int hotelID) throws SQLException {
+      refresh ();
+      return Arrays.binarySearch (this._hotels, hotelID) >= 0;
+   }//end managesHotel
+
+   /**
+    * Makes the next permission check reload the permissions, for instance
+    * after an option was refused.
+    */
+   public synchronized void invalidate () {
+      this._loadedAt = Long.MIN_VALUE;
+   }//end invalidate
+
+   // reloads the permissions when they expired or may have changed. Called
+   // with the lock held.
+   private void refresh () throws SQLException {
+      if (this._loadedAt == Long.MIN_VALUE || System.currentTimeMillis () - this._loadedAt >= TTL
+          || this._loadedChanges != this._esql.getPermissionChanges ())
+         load ();
+   }//end refresh
+
+   private static final RowMapper<Integer> HOTEL_ID = new RowMapper<Integer>() {
+      public Integer map (ResultSet rs) throws SQLException {
+         return rs.getInt (1);
+      }
+   };
+
+   private static final RowMapper<String> USER_TYPE = new RowMapper<String>() {
+      public String map (ResultSet rs) throws SQLException {
+         String userType = rs.getString (1);
+         return userType == null ? null : userType.trim ();
+      }
+   };
+
+   private synchronized void load () throws SQLException {
+      // taken first, so a change made while loading causes another load.
+      long changes = this._esql.getPermissionChanges ();
+      String userType = this._esql.executeQueryForObject (Queries.USER_TYPE, USER_TYPE, this._userID);
+      List<Integer> hotels = this._esql.executeQueryOnShards (Queries.MANAGED_HOTELS, HOTEL_ID, this._userID);
+      int[] hotelIDs = new int[hotels.size ()];
+      for (int i = 0; i < hotelIDs.length; ++i)
+         hotelIDs[i] = hotels.get (i);
+      // each shard returns its hotels in order, but not those of the others.
+      Arrays.sort (hotelIDs);
+      this._hotels = hotelIDs;
+      this._userType = userType;
+      this._loadedAt = System.currentTimeMillis ();
+      this._loadedChanges = changes;
+   }//end load
+
+}//end Session
@@ -0,0 +1,181 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class spreads the hotels over several databases (shards), each
+ * served by a Hotel instance of its own, and routes work to them.
+ *
+ * A hotel lives on one shard together with its rooms, bookings, updates
+ * and repairs. Which one is decided by its hotelID, either by range (the
+ * first hotelID of every shard after the first is given) or by the
+ * remainder of the hotelID divided by the number of shards. Users and
+ * maintenance companies are kept on every shard, with shard 0 handing out
+ * the userIDs.
+ *
+ * Operations on one hotel go to its shard only. Reads that span hotels
+ * run on all shards at the same time and their rows are merged by the
+ * caller.
+ *
+ */
+public class ShardRouter {
+
+   // the shards; shard 0 is the Hotel instance that owns this router.
+   private final Hotel[] _shards;
+
+   // the first hotelID of shards 1..n-1, ascending; null to spread the
+   // hotels by remainder.
+   private final int[] _rangeStarts;
+
+   // runs the queries of shards 1..n-1 while the caller runs shard 0's.
+   private final ExecutorService _executor;
+
+   /**
+    * Creates a router
+    *
+    * @param shards the Hotel instance of every shard, shard 0 first
+    * @param rangeStarts the first hotelID of every shard after the first,
+    *        ascending, or null to spread hotels by remainder
+    */
+   public ShardRouter (Hotel[] shards, int[] rangeStarts) {
+      if (rangeStarts != null && rangeStarts.length != shards.length - 1)
+         throw new IllegalArgumentException("expected " + (shards.length - 1) +
+                                            " shard range starts, got " + rangeStarts.length);
+      this._shards = shards.clone ();
+      this._rangeStarts = rangeStarts == null ? null : rangeStarts.clone ();
+      final AtomicInteger count = new AtomicInteger();
+      this._executor = Executors.newCachedThreadPool (new ThreadFactory() {
+         public Thread newThread (Runnable task) {
+            Thread thread = new Thread(task, "shard-query-" + count.getAndIncrement ());
+            thread.setDaemon (true);
+            return thread;
+         }
+      });
+   }//end ShardRouter
+
+   /**
+    * Parses the list of range starts given in hotel.shards.ranges.
+    *
+    * @param ranges comma separated hotelIDs, or null
+    * @return the range starts, or null when ranges is null or empty
+    */
+   public static int[] parseRanges (String ranges) {
+      if (ranges == null || ranges.trim ().isEmpty ())
+         return null;
+      String[] parts = ranges.split (",");
+      int[] starts = new int[parts.length];
+      for (int i = 0; i < parts.length; ++i) {
+         starts[i] = Integer.parseInt (parts[i].trim ());
+         if (i > 0 && starts[i] <= starts[i - 1])
+            throw new IllegalArgumentException("shard range starts must ascend: " + ranges);
+      }//end for
+      return starts;
+   }//end parseRanges
+
+   /**
+    * @param hotelID a hotel
+    * @return the index of the shard the hotel lives on
+    */
+   public int shardOf (int hotelID) {
+      if (this._rangeStarts == null)
+         return (hotelID % this._shards.length + this._shards.length) % this._shards.length;
+      // the number of range starts at or below the hotelID.
+      int i = Arrays.binarySearch (this._rangeStarts, hotelID);
+      return i >= 0 ? i + 1 : -i - 1;
+   }//end shardOf
+
+   /**
+    * @param hotelID a hotel
+    * @return the Hotel instance of the shard the hotel lives on
+    */
+   public Hotel forHotel (int hotelID) {
+      return this._shards[shardOf (hotelID)];
+   }//end forHotel
+
+   /**
+    * @return the number of shards
+    */
+   public int size () {
+      return this._shards.length;
+   }//end size
+
+   /**
+    * @param shard a shard index
+    * @return the Hotel instance of the shard
+    */
+   public Hotel get (int shard) {
+      return this._shards[shard];
+   }//end get
+
+   /**
+    * Runs a query on every shard at the same time.
+    *
+    * @param query the parameterized query string
+    * @param mapper maps the current row to an object; called from several
+    *        threads at once
+    * @param params the values bound to the query parameters, in order
+    * @return the mapped rows of every shard, shard by shard
+    * @throws java.sql.SQLException when the query failed on any shard
+    */
+   public <T> List<T> scatter (final String query, final RowMapper<T> mapper, final Object... params) throws SQLException {
+      List<Future<List<T>>> parts = new ArrayList<Future<List<T>>>(this._shards.length - 1);
+      for (int i = 1; i < this._shards.length; ++i) {
+         final Hotel shard = this._shards[i];
+         parts.add (this._executor.submit (new Callable<List<T>>() {
+            public List<T> call () throws SQLException {
+               return shard.executeQueryAndMap (query, mapper, params);
+            }
+         }));
+      }//end for
+      List<T> rows = new ArrayList<T>(this._shards[0].executeQueryAndMap (query, mapper, params));
+      for (Future<List<T>> part : parts) {
+         try {
+            rows.addAll (part.get ());
+         }catch (InterruptedException e) {
+            Thread.currentThread ().interrupt ();
+            throw new SQLException("Interrupted while waiting for a shard");
+         }catch (ExecutionException e) {
+            if (e.getCause () instanceof SQLException)
+               throw (SQLException) e.getCause ();
+            throw new SQLException("Shard query failed: " + e.getCause ());
+         }//end try
+      }//end for
+      return rows;
+   }//end scatter
+
+   /**
+    * Closes the shards other than shard 0, which its owner closes.
+    */
+   public void close () {
+      this._executor.shutdownNow ();
+      for (int i = 1; i < this._shards.length; ++i)
+         this._shards[i].cleanup ();
+   }//end close
+
+   public String toString () {
+      return this._shards.length + " shards by " +
+         (this._rangeStarts == null ? "hotelID remainder" : "hotelID ranges " + Arrays.toString (this._rangeStarts));
+   }//end toString
+
+}//end ShardRouter
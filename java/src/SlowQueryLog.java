@@ -0,0 +1,293 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * This class logs the statements that took longer than a threshold, with
+ * their parameters and, when possible, the plan PostgreSQL chose for them.
+ *
+ * Every slow statement is written as one JSON object per line:
+ *
+ *    {"time":"2024-01-31T12:00:00.000Z","operation":"executeQueryAndPrintResult",
+ *     "ms":812.4,"sql":"SELECT ...","params":[3,"2024-02-01"],"plan":[...]}
+ *
+ * The plan comes from EXPLAIN (ANALYZE, BUFFERS, FORMAT JSON) of the same
+ * statement and parameters, run on a connection of its own inside a
+ * transaction that is rolled back, so explaining an update changes nothing.
+ * As ANALYZE runs the statement again, at most explainsPerMinute plans are
+ * taken; slower statements past that are logged with a null plan. All of
+ * this happens on a background thread, never on the caller's.
+ *
+ * The log file is rotated when it reaches maxBytes: file.1 holds the
+ * previous file, file.2 the one before, and so on up to file.<files>.
+ *
+ * Statements that mention the password column, such as the login and the
+ * user creation ones, are logged with their string parameters masked and
+ * are never explained, as the plan would show the values as well.
+ *
+ */
+public class SlowQueryLog {
+
+   // statements waiting to be explained and written.
+   private static final int QUEUE_SIZE = 64;
+
+   // statements whose string parameters may hold a password.
+   private static final Pattern SECRET = Pattern.compile ("\\bpassword\\b", Pattern.CASE_INSENSITIVE);
+
+   // written instead of a masked parameter.
+   private static final String MASK = "***";
+
+   private final String _url;
+   private final String _user;
+   private final String _passwd;
+
+   private final long _threshold;
+   private final long _explainInterval;
+   private final File _file;
+   private final long _maxBytes;
+   private final int _files;
+
+   private final ThreadPoolExecutor _writer;
+
+   // earliest System.nanoTime() at which the next plan may be taken.
+   private final AtomicLong _nextExplain = new AtomicLong(Long.MIN_VALUE);
+
+   // used by the writer thread only.
+   private Connection _explain;
+   private Writer _out;
+   private long _written;
+
+   private final SimpleDateFormat _time;
+
+   /**
+    * Creates a slow query log
+    *
+    * @param url the JDBC URL plans are taken on
+    * @param user the database user
+    * @param passwd the password of the user
+    * @param threshold milliseconds above which a statement is logged
+    * @param explainsPerMinute how many plans are taken per minute at most
+    * @param file the log file
+    * @param maxBytes the size at which the log file is rotated
+    * @param files how many rotated files are kept
+    */
+   public SlowQueryLog (String url, String user, String passwd, long threshold,
+                        int explainsPerMinute, File file, long maxBytes, int files) {
+      this._url = url;
+      this._user = user;
+      this._passwd = passwd;
+      this._threshold = TimeUnit.MILLISECONDS.toNanos (threshold);
+      this._explainInterval = explainsPerMinute <= 0 ? Long.MAX_VALUE
+         : TimeUnit.MINUTES.toNanos (1) / explainsPerMinute;
+      this._file = file;
+      this._maxBytes = maxBytes;
+      this._files = files;
+      this._time = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+      this._time.setTimeZone (TimeZone.getTimeZone ("UTC"));
+      // slow statements beyond a full queue are dropped rather than
+      // slowing down the callers further.
+      this._writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+         new ArrayBlockingQueue<Runnable>(QUEUE_SIZE), new ThreadFactory() {
+            public Thread newThread (Runnable r) {
+               Thread thread = new Thread(r, "slow-query-log");
+               thread.setDaemon (true);
+               return thread;
+            }
+         }, new ThreadPoolExecutor.DiscardPolicy());
+   }//end SlowQueryLog
+
+   /**
+    * Logs a statement if it took longer than the threshold.
+    *
+    * @param operation the Hotel method that ran the statement
+    * @param sql the statement
+    * @param params the values bound to its parameters, or null
+    * @param nanos how long it took
+    */
+   public void check (final String operation, final String sql, Object[] params, final long nanos) {
+      if (nanos < this._threshold)
+         return;
+      final boolean secret = SECRET.matcher (sql).find ();
+      final Object[] logged = secret ? mask (params) : params;
+      final boolean explain = !secret && takeExplain ();
+      final long time = System.currentTimeMillis ();
+      try {
+         this._writer.execute (new Runnable() {
+            public void run () {
+               write (time, operation, sql, logged, nanos, explain ? explain (sql, logged) : null);
+            }
+         });
+      }catch (RejectedExecutionException e) {
+         // closed.
+      }//end try
+   }//end check
+
+   /**
+    * Writes out the statements still queued and closes the file and the
+    * connection plans are taken on.
+    */
+   public void close () {
+      this._writer.shutdown ();
+      try {
+         this._writer.awaitTermination (10, TimeUnit.SECONDS);
+      }catch (InterruptedException e) {
+         Thread.currentThread ().interrupt ();
+      }//end try
+      try {
+         if (this._out != null)
+            this._out.close ();
+      }catch (IOException e) {
+         // ignored.
+      }//end try
+      try {
+         if (this._explain != null)
+            this._explain.close ();
+      }catch (SQLException e) {
+         // ignored.
+      }//end try
+   }//end close
+
+   // returns a copy of the parameters with the strings masked.
+   private static Object[] mask (Object[] params) {
+      if (params == null)
+         return null;
+      Object[] masked = params.clone ();
+      for (int i = 0; i < masked.length; ++i) {
+         if (masked[i] instanceof String)
+            masked[i] = MASK;
+      }//end for
+      return masked;
+   }//end mask
+
+   // claims the next plan if the rate limit allows it.
+   private boolean takeExplain () {
+      if (this._explainInterval == Long.MAX_VALUE)
+         return false;
+      long now = System.nanoTime ();
+      long next = this._nextExplain.get ();
+      return (next == Long.MIN_VALUE || now - next >= 0)
+         && this._nextExplain.compareAndSet (next, now + this._explainInterval);
+   }//end takeExplain
+
+   // returns the plan of a statement as JSON, or null when it cannot be taken.
+   private String explain (String sql, Object[] params) {
+      try {
+         if (this._explain == null || this._explain.isClosed ()) {
+            this._explain = DriverManager.getConnection (this._url, this._user, this._passwd);
+            this._explain.setAutoCommit (false);
+         }//end if
+         PreparedStatement stmt = this._explain.prepareStatement (
+            "EXPLAIN (ANALYZE, BUFFERS, FORMAT JSON) " + sql);
+         try {
+            if (params != null) {
+               for (int i = 0; i < params.length; ++i)
+                  stmt.setObject (i + 1, params[i]);
+            }//end if
+            ResultSet rs = stmt.executeQuery ();
+            StringBuilder plan = new StringBuilder();
+            while (rs.next ())
+               plan.append (rs.getString (1));
+            return plan.toString ();
+         }finally {
+            stmt.close ();
+            this._explain.rollback ();
+         }//end try
+      }catch (SQLException e) {
+         try {
+            if (this._explain != null)
+               this._explain.close ();
+         }catch (SQLException ignored) {
+         }//end try
+         this._explain = null;
+         return null;
+      }//end try
+   }//end explain
+
+   // appends one entry to the log file, rotating it first when it is full.
+   private void write (long time, String operation, String sql, Object[] params, long nanos, String plan) {
+      StringBuilder line = new StringBuilder(256 + sql.length ());
+      line.append ("{\"time\":");
+      Json.quote (line, this._time.format (new Date(time)));
+      line.append (",\"operation\":");
+      Json.quote (line, operation);
+      line.append (",\"ms\":").append (String.format (Locale.US, "%.3f", nanos / 1e6));
+      line.append (",\"sql\":");
+      Json.quote (line, sql);
+      line.append (",\"params\":");
+      if (params == null) {
+         line.append ("null");
+      }else {
+         line.append ('[');
+         for (int i = 0; i < params.length; ++i) {
+            if (i > 0)
+               line.append (',');
+            Json.value (line, params[i]);
+         }//end for
+         line.append (']');
+      }//end if
+      line.append (",\"plan\":").append (plan == null ? "null" : plan.replace ('\n', ' '));
+      line.append ("}\n");
+
+      try {
+         if (this._out == null || this._written >= this._maxBytes)
+            open ();
+         this._out.write (line.toString ());
+         this._out.flush ();
+         this._written += line.length ();
+      }catch (IOException e) {
+         System.err.println ("slow query log: " + e.getMessage ());
+      }//end try
+   }//end write
+
+   // opens the log file, rotating it when full.
+   private void open () throws IOException {
+      if (this._out != null)
+         this._out.close ();
+      this._out = null;
+      if (this._file.length () >= this._maxBytes) {
+         for (int i = this._files - 1; i >= 1; --i) {
+            File from = new File(this._file.getPath () + "." + i);
+            if (from.exists ())
+               from.renameTo (new File(this._file.getPath () + "." + (i + 1)));
+         }//end for
+         if (this._files > 0)
+            this._file.renameTo (new File(this._file.getPath () + ".1"));
+         else
+            this._file.delete ();
+      }//end if
+      this._written = this._file.length ();
+      this._out = new OutputStreamWriter(new FileOutputStream(this._file, true), "UTF-8");
+   }//end open
+
+}//end SlowQueryLog
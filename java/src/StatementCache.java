@@ -0,0 +1,133 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class keeps the prepared statements of one physical connection,
+ * keyed by their SQL text. Once the cache holds more statements than its
+ * capacity, the least recently used one is closed and dropped.
+ *
+ * A capacity of zero disables caching: every call prepares a fresh statement
+ * which is closed again by release().
+ *
+ * The bundled 7.3 driver substitutes the parameters of a PreparedStatement
+ * on the client and sends the whole text, which the server parses and plans
+ * on every execution; the cache only saves creating and splitting the
+ * statement on the client. A driver that prepares on the server, such as
+ * pgjdbc 42 with its prepareThreshold, reuses the server plan of a cached
+ * statement without any change here.
+ *
+ */
+public class StatementCache {
+
+   // the connection the statements are prepared on.
+   private final Connection _connection;
+
+   // maximum number of statements kept open.
+   private final int _capacity;
+
+   // statements in least recently used order.
+   private final LinkedHashMap<String, PreparedStatement> _statements;
+
+   /**
+    * Creates a new statement cache for a connection
+    *
+    * @param connection the physical connection to prepare statements on
+    * @param capacity the maximum number of statements kept open
+    */
+   public StatementCache (Connection connection, int capacity) {
+      this._connection = connection;
+      this._capacity = capacity;
+      this._statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true);
+   }//end StatementCache
+
+   /**
+    * Returns the prepared statement for the given SQL text, preparing it
+    * on first use. Every call must be paired with release().
+    *
+    * @param sql the parameterized SQL string
+    * @return the prepared statement
+    * @throws java.sql.SQLException when the statement cannot be prepared
+    */
+   public PreparedStatement prepare (String sql) throws SQLException {
+      if (this._capacity <= 0)
+         return this._connection.prepareStatement (sql);
+
+      PreparedStatement stmt = this._statements.get (sql);
+      if (stmt == null) {
+         stmt = this._connection.prepareStatement (sql);
+         this._statements.put (sql, stmt);
+         evict ();
+      }//end if
+      return stmt;
+   }//end prepare
+
+   /**
+    * Hands a statement obtained from prepare() back to the cache. Cached
+    * statements stay open; with caching disabled they are closed.
+    *
+    * @param stmt the statement returned by prepare()
+    */
+   public void release (PreparedStatement stmt) {
+      // statements dropped from the cache were closed by evict().
+      if (stmt == null || this._capacity > 0)
+         return;
+      try {
+         stmt.close ();
+      }catch (SQLException e) {
+         // ignored.
+      }//end try
+   }//end release
+
+   /**
+    * @return the number of statements currently cached
+    */
+   public int size () {
+      return this._statements.size ();
+   }//end size
+
+   /**
+    * Closes every cached statement.
+    */
+   public void close () {
+      for (PreparedStatement stmt : this._statements.values ()) {
+         try {
+            stmt.close ();
+         }catch (SQLException e) {
+            // ignored.
+         }//end try
+      }//end for
+      this._statements.clear ();
+   }//end close
+
+   // closes least recently used statements until the cache fits its capacity.
+   private void evict () {
+      Iterator<Map.Entry<String, PreparedStatement>> it = this._statements.entrySet ().iterator ();
+      while (this._statements.size () > this._capacity && it.hasNext ()) {
+         PreparedStatement eldest = it.next ().getValue ();
+         it.remove ();
+         try {
+            eldest.close ();
+         }catch (SQLException e) {
+            // ignored.
+         }//end try
+      }//end while
+   }//end evict
+
+}//end StatementCache
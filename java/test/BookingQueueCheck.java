@@ -0,0 +1,95 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+/**
+ * This class checks how BookingQueue prepares a group before sending it:
+ * duplicate rooms are answered TAKEN, and the bookings of one customer in
+ * the same group are counted on top of each other.
+ *
+ */
+public class BookingQueueCheck {
+
+   private static final Date DAY = Date.valueOf ("2018-06-01");
+   private static final Date NEXT_DAY = Date.valueOf ("2018-06-02");
+
+   public static void main (String[] args) throws Exception {
+      firstPerRoom ();
+      countEarlier ();
+      Checks.passed ("BookingQueue");
+   }//end main
+
+   // only the first booking of a room and date is sent; the others are taken.
+   private static void firstPerRoom () throws Exception {
+      BookingQueue.Booking first = new BookingQueue.Booking(1, 10, 101, DAY);
+      BookingQueue.Booking sameRoom = new BookingQueue.Booking(2, 10, 101, DAY);
+      BookingQueue.Booking otherDay = new BookingQueue.Booking(3, 10, 101, NEXT_DAY);
+      BookingQueue.Booking otherRoom = new BookingQueue.Booking(4, 10, 102, DAY);
+      BookingQueue.Booking otherHotel = new BookingQueue.Booking(5, 11, 101, DAY);
+      BookingQueue.Booking again = new BookingQueue.Booking(1, 10, 101, DAY);
+
+      List<BookingQueue.Booking> sent = BookingQueue.firstPerRoom (
+         Arrays.asList (first, sameRoom, otherDay, otherRoom, otherHotel, again));
+      Checks.expectEqual (Arrays.asList (first, otherDay, otherRoom, otherHotel), sent, "bookings sent");
+      for (BookingQueue.Booking booking : sent)
+         Checks.expect (!booking.isDone (), "a booking sent is still pending");
+      expectTaken (sameRoom, "another customer, same room and date");
+      expectTaken (again, "the same customer again");
+
+      Checks.expectEqual (new ArrayList<BookingQueue.Booking>(),
+                          BookingQueue.firstPerRoom (new ArrayList<BookingQueue.Booking>()), "empty group");
+   }//end firstPerRoom
+
+   // every booking of a group reads the customer's count from before the
+   // group, so the earlier ones of the group are added.
+   private static void countEarlier () {
+      Map<String, Integer> earlier = new HashMap<String, Integer>();
+      BookingQueue.Booking customer = new BookingQueue.Booking(1, 10, 101, DAY);
+      BookingQueue.Booking sameCustomer = new BookingQueue.Booking(1, 10, 102, DAY);
+      BookingQueue.Booking otherHotel = new BookingQueue.Booking(1, 11, 101, DAY);
+      BookingQueue.Booking otherCustomer = new BookingQueue.Booking(2, 10, 103, DAY);
+      BookingQueue.Booking taken = new BookingQueue.Booking(1, 10, 104, DAY);
+      BookingQueue.Booking third = new BookingQueue.Booking(1, 10, 105, DAY);
+
+      // the customer had four bookings at hotel 10 before the group.
+      expectCount (5, BookingQueue.countEarlier (earlier, customer, BookingResult.booked (1, 100, 5)), "first of the group");
+      expectCount (6, BookingQueue.countEarlier (earlier, sameCustomer, BookingResult.booked (2, 100, 5)), "second of the group");
+      expectCount (1, BookingQueue.countEarlier (earlier, otherHotel, BookingResult.booked (3, 100, 1)), "another hotel");
+      expectCount (3, BookingQueue.countEarlier (earlier, otherCustomer, BookingResult.booked (4, 100, 3)), "another customer");
+      Checks.expect (BookingQueue.countEarlier (earlier, taken, BookingResult.TAKEN) == BookingResult.TAKEN,
+                     "a booking refused is left as it is");
+      expectCount (7, BookingQueue.countEarlier (earlier, third, BookingResult.booked (6, 100, 5)), "third of the group");
+
+      BookingResult result = BookingQueue.countEarlier (earlier, third, BookingResult.booked (7, 120, 5));
+      Checks.expectEqual (7, result.getBookingID (), "bookingID kept");
+      Checks.expectEqual (120, result.getPrice (), "price kept");
+   }//end countEarlier
+
+   private static void expectTaken (Future<BookingResult> booking, String what) throws Exception {
+      Checks.expect (booking.isDone (), what + " is answered at once");
+      Checks.expect (booking.get () == BookingResult.TAKEN, what + " is taken");
+   }//end expectTaken
+
+   private static void expectCount (int customerBookings, BookingResult result, String what) {
+      Checks.expect (result.isBooked (), what + " is booked");
+      Checks.expectEqual (customerBookings, result.getCustomerBookings (), what + ", customer bookings");
+   }//end expectCount
+
+}//end BookingQueueCheck
@@ -0,0 +1,78 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.util.Arrays;
+
+/**
+ * This class holds what the checks in this directory share. A check is a
+ * class named *Check whose main runs its cases and throws an AssertionError
+ * at the first one that fails; scripts/check.sh runs them all.
+ *
+ */
+final class Checks {
+
+   private Checks () {
+   }
+
+   /**
+    * Fails unless a condition holds.
+    *
+    * @param condition the condition
+    * @param what what was checked, for the failure message
+    */
+   static void expect (boolean condition, String what) {
+      if (!condition)
+         throw new AssertionError(what);
+   }//end expect
+
+   /**
+    * Fails unless two values are equal; arrays are compared by content.
+    *
+    * @param expected the expected value
+    * @param actual the actual value
+    * @param what what was checked, for the failure message
+    */
+   static void expectEqual (Object expected, Object actual, String what) {
+      if (!Arrays.deepEquals (new Object[] { expected }, new Object[] { actual }))
+         throw new AssertionError(what + ": expected " + Arrays.deepToString (new Object[] { expected }) +
+                                  ", got " + Arrays.deepToString (new Object[] { actual }));
+   }//end expectEqual
+
+   /**
+    * Fails unless a task throws an exception of a given type.
+    *
+    * @param type the expected exception type
+    * @param task the task
+    * @param what what was checked, for the failure message
+    */
+   static void expectThrows (Class<? extends Exception> type, Runnable task, String what) {
+      try {
+         task.run ();
+      }catch (Exception e) {
+         if (type.isInstance (e))
+            return;
+         throw new AssertionError(what + ": expected " + type.getSimpleName () + ", got " + e);
+      }//end try
+      throw new AssertionError(what + ": expected " + type.getSimpleName () + ", got no exception");
+   }//end expectThrows
+
+   /**
+    * Reports that the checks of a class passed.
+    *
+    * @param name the name of the checks
+    */
+   static void passed (String name) {
+      System.out.println (name + ": ok");
+   }//end passed
+
+}//end Checks
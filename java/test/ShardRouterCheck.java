@@ -0,0 +1,74 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+/**
+ * This class checks how ShardRouter reads hotel.shards.ranges and which
+ * shard it gives each hotel, by range and by remainder. The routers are
+ * built without Hotel instances, which shardOf does not use.
+ *
+ */
+public class ShardRouterCheck {
+
+   public static void main (String[] args) {
+      parseRanges ();
+      byRemainder ();
+      byRange ();
+      Checks.passed ("ShardRouter");
+   }//end main
+
+   private static void parseRanges () {
+      Checks.expect (ShardRouter.parseRanges (null) == null, "no ranges");
+      Checks.expect (ShardRouter.parseRanges ("") == null, "empty ranges");
+      Checks.expect (ShardRouter.parseRanges (" ") == null, "blank ranges");
+      Checks.expectEqual (new int[] { 100 }, ShardRouter.parseRanges ("100"), "one range start");
+      Checks.expectEqual (new int[] { 100, 200, 350 }, ShardRouter.parseRanges ("100, 200 ,350"), "range starts with blanks");
+      Checks.expectThrows (IllegalArgumentException.class, new Runnable() {
+         public void run () {
+            ShardRouter.parseRanges ("200,100");
+         }
+      }, "descending range starts");
+      Checks.expectThrows (IllegalArgumentException.class, new Runnable() {
+         public void run () {
+            ShardRouter.parseRanges ("100,100");
+         }
+      }, "repeated range start");
+      Checks.expectThrows (NumberFormatException.class, new Runnable() {
+         public void run () {
+            ShardRouter.parseRanges ("100,x");
+         }
+      }, "range start that is not a number");
+      Checks.expectThrows (IllegalArgumentException.class, new Runnable() {
+         public void run () {
+            new ShardRouter(new Hotel[3], new int[] { 100 });
+         }
+      }, "fewer range starts than shards after the first");
+   }//end parseRanges
+
+   private static void byRemainder () {
+      ShardRouter router = new ShardRouter(new Hotel[3], null);
+      int[] hotelIDs = { 0, 1, 2, 3, 4, 5, 299, -1, -3, -4, Integer.MAX_VALUE, Integer.MIN_VALUE };
+      int[] shards =   { 0, 1, 2, 0, 1, 2, 2,   2,  0,  2,  1,                 1 };
+      for (int i = 0; i < hotelIDs.length; ++i)
+         Checks.expectEqual (shards[i], router.shardOf (hotelIDs[i]), "shard of hotel " + hotelIDs[i] + " by remainder");
+      Checks.expectEqual (0, new ShardRouter(new Hotel[1], null).shardOf (42), "a single shard");
+   }//end byRemainder
+
+   private static void byRange () {
+      ShardRouter router = new ShardRouter(new Hotel[3], ShardRouter.parseRanges ("100,200"));
+      int[] hotelIDs = { Integer.MIN_VALUE, 0, 99, 100, 101, 199, 200, 201, Integer.MAX_VALUE };
+      int[] shards =   { 0,                 0, 0,  1,   1,   1,   2,   2,   2 };
+      for (int i = 0; i < hotelIDs.length; ++i)
+         Checks.expectEqual (shards[i], router.shardOf (hotelIDs[i]), "shard of hotel " + hotelIDs[i] + " by range");
+   }//end byRange
+
+}//end ShardRouterCheck
@@ -0,0 +1,102 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.util.Arrays;
+
+/**
+ * This class checks how RegularCustomers.TopCustomers keeps its list in
+ * order as booking counts arrive.
+ *
+ */
+public class TopCustomersCheck {
+
+   public static void main (String[] args) {
+      belowCapacity ();
+      movesUp ();
+      whenFull ();
+      tiesByUserID ();
+      keepsNames ();
+      Checks.passed ("TopCustomers");
+   }//end main
+
+   // customers are added in order while there is room.
+   private static void belowCapacity () {
+      RegularCustomers.TopCustomers top = new RegularCustomers.TopCustomers(3);
+      top.offer (1, 1);
+      top.offer (2, 3);
+      expectList (top, new int[] { 2, 1 }, new int[] { 3, 1 }, "two customers");
+      top.offer (3, 2);
+      expectList (top, new int[] { 2, 3, 1 }, new int[] { 3, 2, 1 }, "three customers");
+   }//end belowCapacity
+
+   // a customer already listed moves up past those it now outranks.
+   private static void movesUp () {
+      RegularCustomers.TopCustomers top = list (3, 2, 3, 3, 2, 1, 1);
+      top.offer (1, 2);
+      expectList (top, new int[] { 2, 1, 3 }, new int[] { 3, 2, 2 }, "past one");
+      top.offer (1, 4);
+      expectList (top, new int[] { 1, 2, 3 }, new int[] { 4, 3, 2 }, "to the top");
+      top.offer (1, 5);
+      expectList (top, new int[] { 1, 2, 3 }, new int[] { 5, 3, 2 }, "already first");
+   }//end movesUp
+
+   // a full list takes a newcomer only in place of its last customer.
+   private static void whenFull () {
+      RegularCustomers.TopCustomers top = list (3, 1, 4, 2, 3, 3, 2);
+      top.offer (4, 1);
+      expectList (top, new int[] { 1, 2, 3 }, new int[] { 4, 3, 2 }, "ranks below the last");
+      top.offer (5, 2);
+      expectList (top, new int[] { 1, 2, 3 }, new int[] { 4, 3, 2 }, "ties the last with a larger userID");
+      top.offer (0, 2);
+      expectList (top, new int[] { 1, 2, 0 }, new int[] { 4, 3, 2 }, "ties the last with a smaller userID");
+      top.offer (6, 5);
+      expectList (top, new int[] { 6, 1, 2 }, new int[] { 5, 4, 3 }, "outranks all");
+   }//end whenFull
+
+   // equal counts are ordered by userID.
+   private static void tiesByUserID () {
+      RegularCustomers.TopCustomers top = new RegularCustomers.TopCustomers(4);
+      top.offer (7, 2);
+      top.offer (3, 2);
+      top.offer (5, 2);
+      expectList (top, new int[] { 3, 5, 7 }, new int[] { 2, 2, 2 }, "equal counts");
+      top.offer (9, 3);
+      top.offer (7, 3);
+      expectList (top, new int[] { 7, 9, 3, 5 }, new int[] { 3, 3, 2, 2 }, "equal counts moved up");
+   }//end tiesByUserID
+
+   // names move with their customers; a newcomer has none yet.
+   private static void keepsNames () {
+      RegularCustomers.TopCustomers top = list (2, 1, 3, 2, 2);
+      top.names[0] = "one";
+      top.names[1] = "two";
+      top.offer (2, 4);
+      Checks.expectEqual (new String[] { "two", "one" }, Arrays.copyOf (top.names, top.length), "names after a move");
+      top.offer (3, 5);
+      Checks.expectEqual (new String[] { null, "two" }, Arrays.copyOf (top.names, top.length), "names after a replacement");
+   }//end keepsNames
+
+   // a list of the given capacity filled with (userID, count) pairs.
+   private static RegularCustomers.TopCustomers list (int size, int... pairs) {
+      RegularCustomers.TopCustomers top = new RegularCustomers.TopCustomers(size);
+      for (int i = 0; i < pairs.length; i += 2)
+         top.offer (pairs[i], pairs[i + 1]);
+      return top;
+   }//end list
+
+   private static void expectList (RegularCustomers.TopCustomers top, int[] userIDs, int[] counts, String what) {
+      Checks.expectEqual (userIDs, Arrays.copyOf (top.userIDs, top.length), what + ", userIDs");
+      Checks.expectEqual (counts, Arrays.copyOf (top.counts, top.length), what + ", counts");
+   }//end expectList
+
+}//end TopCustomersCheck
@@ -4,11 +4,21 @@ pg_ctl status
 sleep 1
 source ./createPostgreDB.sh
 sleep 1
-cp data/*csv /tmp/$USER/myDB/data
+mkdir -p java/classes
+javac -d java/classes java/src/*.java
+# GEN_BOOKINGS=<n> [GEN_HOTELS=<n>] loads a generated data set of that size
+# instead of the sample data in data/
+csv=data
+if [ -n "$GEN_BOOKINGS" ]; then
+    csv=/tmp/$USER/csv
+    java -cp java/classes DataGenerator $csv ${GEN_HOTELS:-20} $GEN_BOOKINGS
+fi
 sleep 1
 psql -h localhost -p $PGPORT $USER"_DB" < sql/src/create_tables.sql
 sleep 1
-psql -h localhost -p $PGPORT $USER"_DB" < sql/src/create_indexes.sql
-sleep 1
-psql -h localhost -p $PGPORT $USER"_DB" < sql/src/load_data.sql
+# BulkLoader streams the csv files through COPY, which needs a newer driver
+# than the bundled 7.3 one. It builds the indexes of create_indexes.sql and
+# sets the sequences.
+source java/lib/fetch_jdbc.sh
+java -cp java/classes:$JDBC_JAR BulkLoader $USER"_DB" $PGPORT $USER $csv
 
@@ -0,0 +1,9 @@
+-- Detaches the RoomBookings partitions of the months that end on or before a
+-- date into the schema room_bookings_archive, then creates the partitions of
+-- the next two years that do not exist yet.
+--
+-- usage: psql -v before=2015-01-01 <db> < archive_bookings.sql
+
+SELECT archive_room_bookings(:'before') AS archived;
+
+SELECT create_room_booking_partitions(CURRENT_DATE, CURRENT_DATE + 730) AS created;
@@ -1,15 +1,35 @@
 -- Primary keys are already indexed implicitly!
 
--- We do a range check on room booking dates, so we use a btree index here.
+-- Indexes on RoomBookings are created on every monthly partition. Together with
+-- partition pruning on bookingDate they only cover the months a query asks for.
+-- Lookups of one room on one date use the unique (hotelID, roomNumber,
+-- bookingDate) constraint.
+
+-- The booking history is a range on bookingDate, paged in (bookingDate,
+-- bookingID) order.
 CREATE INDEX room_booking_date_index
 ON RoomBookings
-USING BTREE (bookingDate);
+USING BTREE (bookingDate, bookingID);
 
--- We do equality checks on these fields, so we hash index them here.
-CREATE INDEX hotel_lat_index
-ON Hotel
-USING HASH (latitude);
+-- The recent bookings of a customer.
+CREATE INDEX room_booking_customer_date_index
+ON RoomBookings
+USING BTREE (customerID, bookingDate);
 
-CREATE INDEX hotel_long_index
+-- The booked rooms of a hotel on a date, and its bookings over a date range.
+CREATE INDEX room_booking_hotel_date_index
+ON RoomBookings
+USING BTREE (hotelID, bookingDate);
+
+-- Hotels are searched by distance from a location, so we index their position
+-- as a point. The GiST index answers the bounding box pre-filter and returns
+-- the hotels nearest first.
+CREATE INDEX hotel_location_index
 ON Hotel
-USING HASH (longitude);
\ No newline at end of file
+USING GIST (point(latitude::float8, longitude::float8));
+
+-- The regular customers of a hotel are its rows in CustomerBookingCounts with
+-- the most bookings, read in index order.
+CREATE INDEX customer_booking_count_index
+ON CustomerBookingCounts
+USING BTREE (hotelID, numBookings DESC, customerID);
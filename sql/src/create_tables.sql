@@ -6,6 +6,8 @@ DROP TABLE IF EXISTS RoomBookings CASCADE;
 DROP TABLE IF EXISTS RoomRepairs CASCADE;
 DROP TABLE IF EXISTS RoomRepairRequests CASCADE;
 DROP TABLE IF EXISTS RoomUpdatesLog CASCADE;
+DROP TABLE IF EXISTS CustomerBookingCounts CASCADE;
+DROP TABLE IF EXISTS RoomChanges CASCADE;
 
 CREATE TABLE Users ( userID serial,
                      name char(50),
@@ -26,6 +28,24 @@ CREATE TABLE Hotel ( hotelID integer,
                      FOREIGN KEY(managerUserID) REFERENCES Users(userID)
 );
 
+---Changing a user's role or a hotel's manager NOTIFYs permission_changes, so that running programs
+---reload the permissions of their logged in users instead of waiting for them to expire.
+CREATE OR REPLACE FUNCTION notify_permission_changes()
+RETURNS trigger AS $permissions$
+BEGIN
+    NOTIFY permission_changes;
+    RETURN NULL;
+END;
+$permissions$ LANGUAGE plpgsql;
+
+CREATE TRIGGER users_type_changed
+AFTER UPDATE OF userType OR DELETE ON Users
+FOR EACH STATEMENT EXECUTE PROCEDURE notify_permission_changes();
+
+CREATE TRIGGER hotel_manager_changed
+AFTER INSERT OR UPDATE OF managerUserID OR DELETE ON Hotel
+FOR EACH STATEMENT EXECUTE PROCEDURE notify_permission_changes();
+
 CREATE TABLE Rooms ( hotelID integer NOT NULL, 
                     roomNumber integer NOT NULL,
                     price integer NOT NULL,
@@ -34,6 +54,47 @@ CREATE TABLE Rooms ( hotelID integer NOT NULL,
                     FOREIGN KEY(hotelID) REFERENCES Hotel(hotelID) ON DELETE CASCADE
 );
 
+---The following table records which hotels had rooms inserted, updated or deleted, so that running
+---programs can reload their in-memory copy of those hotels. Triggers on Rooms add a row per hotel and
+---statement, then NOTIFY room_changes; listeners read the rows past the last changeID they saw. Rows
+---older than a day are pruned as new ones arrive. Triggers on RoomBookings (below) add a row per hotel
+---and booking date, so that cached availability of that date is dropped; bookingDate is null for rows
+---of Rooms changes.
+CREATE TABLE RoomChanges (
+                    changeID bigserial,
+                    hotelID integer NOT NULL,
+                    bookingDate date,
+                    changedAt timestamp NOT NULL DEFAULT now(),
+                    PRIMARY KEY(changeID)
+);
+
+CREATE INDEX room_changes_changed_at ON RoomChanges (changedAt);
+
+CREATE OR REPLACE FUNCTION record_room_changes()
+RETURNS trigger AS $changes$
+BEGIN
+    INSERT INTO RoomChanges (hotelID) SELECT DISTINCT hotelID FROM changed;
+    DELETE FROM RoomChanges WHERE changedAt < now() - interval '1 day';
+    NOTIFY room_changes;
+    RETURN NULL;
+END;
+$changes$ LANGUAGE plpgsql;
+
+CREATE TRIGGER rooms_inserted
+AFTER INSERT ON Rooms
+REFERENCING NEW TABLE AS changed
+FOR EACH STATEMENT EXECUTE PROCEDURE record_room_changes();
+
+CREATE TRIGGER rooms_updated
+AFTER UPDATE ON Rooms
+REFERENCING NEW TABLE AS changed
+FOR EACH STATEMENT EXECUTE PROCEDURE record_room_changes();
+
+CREATE TRIGGER rooms_deleted
+AFTER DELETE ON Rooms
+REFERENCING OLD TABLE AS changed
+FOR EACH STATEMENT EXECUTE PROCEDURE record_room_changes();
+
 CREATE TABLE MaintenanceCompany ( 
                         companyID integer,
                         name char(50),
@@ -42,16 +103,69 @@ CREATE TABLE MaintenanceCompany (
 );
 
 
+---RoomBookings is partitioned by booking month, so queries on a date or a date range only read the
+---partitions of those months, and old months can be detached (see archive_bookings.sql). Keys of a
+---partitioned table must include the partition key, hence bookingDate in the primary key.
 CREATE TABLE RoomBookings ( 
                     bookingID serial NOT NULL,
                     customerID integer NOT NULL,
                     hotelID integer NOT NULL,
                     roomNumber integer NOT NULL, 
                     bookingDate date NOT NULL, 
-                    PRIMARY KEY(bookingID),
+                    PRIMARY KEY(bookingID, bookingDate),
+                    UNIQUE(hotelID, roomNumber, bookingDate),  ---a room is booked at most once a night
                     FOREIGN KEY(customerID) REFERENCES Users(userID),
                     FOREIGN KEY(hotelID, roomNumber) REFERENCES Rooms(hotelID, roomNumber)
-);
+) PARTITION BY RANGE (bookingDate);
+
+---Creates the monthly partitions RoomBookings_pYYYYMM of the months from first to last that do not exist yet.
+CREATE OR REPLACE FUNCTION create_room_booking_partitions(first date, last date)
+RETURNS integer AS $partitions$
+DECLARE
+    month_start date := date_trunc('month', first);
+    created integer := 0;
+BEGIN
+    WHILE month_start <= last LOOP
+        IF to_regclass('roombookings_p' || to_char(month_start, 'YYYYMM')) IS NULL THEN
+            EXECUTE format('CREATE TABLE %I PARTITION OF RoomBookings FOR VALUES FROM (%L) TO (%L)',
+                           'roombookings_p' || to_char(month_start, 'YYYYMM'), month_start,
+                           (month_start + interval '1 month')::date);
+            created := created + 1;
+        END IF;
+        month_start := (month_start + interval '1 month')::date;
+    END LOOP;
+    RETURN created;
+END;
+$partitions$ LANGUAGE plpgsql;
+
+---Detaches the monthly partitions that end on or before a date and moves them to the schema
+---room_bookings_archive, where they can be dumped or dropped. The bookings stay counted in
+---CustomerBookingCounts.
+CREATE OR REPLACE FUNCTION archive_room_bookings(before date)
+RETURNS integer AS $archive$
+DECLARE
+    part record;
+    archived integer := 0;
+BEGIN
+    CREATE SCHEMA IF NOT EXISTS room_bookings_archive;
+    FOR part IN
+        SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+        WHERE i.inhparent = 'roombookings'::regclass AND c.relname ~ '^roombookings_p[0-9]{6}$'
+        AND to_date(substr(c.relname, 15), 'YYYYMM') + interval '1 month' <= before
+        ORDER BY c.relname
+    LOOP
+        EXECUTE format('ALTER TABLE RoomBookings DETACH PARTITION %I', part.relname);
+        EXECUTE format('ALTER TABLE %I SET SCHEMA room_bookings_archive', part.relname);
+        archived := archived + 1;
+    END LOOP;
+    RETURN archived;
+END;
+$archive$ LANGUAGE plpgsql;
+
+---Partitions for the booking dates of the sample and generated data and two years ahead, and a default
+---partition for any other date. Run create_room_booking_partitions again before later months are booked.
+SELECT create_room_booking_partitions('2000-01-01', CURRENT_DATE + 730);
+CREATE TABLE RoomBookings_default PARTITION OF RoomBookings DEFAULT;
 
 CREATE TABLE RoomRepairs (  
                             repairID serial,
@@ -87,8 +201,74 @@ CREATE TABLE RoomUpdatesLog (
 );
 
 ---The following is the definition of a user-defined sql function for calculating the distance between two lat-long pairs.
+---It is a plain, immutable SQL function so the planner inlines it into the calling query instead of calling it per row.
+DROP FUNCTION IF EXISTS calculate_distance(decimal, decimal, decimal, decimal);
 CREATE OR REPLACE FUNCTION calculate_distance(lat1 decimal, long1 decimal, lat2 decimal, long2 decimal)
-RETURNS decimal AS $dist$
-BEGIN RETURN sqrt((lat1 - lat2) * (lat1 - lat2) + (long1 - long2) * (long1 - long2));
+RETURNS double precision AS $dist$
+SELECT point(lat1::float8, long1::float8) <-> point(lat2::float8, long2::float8);
+$dist$ LANGUAGE sql IMMUTABLE STRICT;
+
+---The following table counts the bookings of each customer at each hotel, so the regular customers
+---of a hotel are read from it instead of aggregating RoomBookings. Triggers on RoomBookings keep it
+---current; they run once per statement over the rows it inserted or deleted, so bulk loads update
+---each (hotel, customer) count once.
+CREATE TABLE CustomerBookingCounts (
+                            hotelID integer NOT NULL,
+                            customerID integer NOT NULL,
+                            numBookings integer NOT NULL,
+                            PRIMARY KEY(hotelID, customerID),
+                            FOREIGN KEY(hotelID) REFERENCES Hotel(hotelID) ON DELETE CASCADE,
+                            FOREIGN KEY(customerID) REFERENCES Users(userID)
+);
+
+CREATE OR REPLACE FUNCTION count_inserted_bookings()
+RETURNS trigger AS $count$
+BEGIN
+    INSERT INTO CustomerBookingCounts (hotelID, customerID, numBookings)
+    SELECT hotelID, customerID, count(*) FROM inserted GROUP BY hotelID, customerID
+    ON CONFLICT (hotelID, customerID)
+    DO UPDATE SET numBookings = CustomerBookingCounts.numBookings + EXCLUDED.numBookings;
+    RETURN NULL;
 END;
-$dist$ LANGUAGE plpgsql;
\ No newline at end of file
+$count$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION count_deleted_bookings()
+RETURNS trigger AS $count$
+BEGIN
+    UPDATE CustomerBookingCounts c SET numBookings = c.numBookings - d.numBookings
+    FROM (SELECT hotelID, customerID, count(*) AS numBookings FROM deleted GROUP BY hotelID, customerID) d
+    WHERE c.hotelID = d.hotelID AND c.customerID = d.customerID;
+    DELETE FROM CustomerBookingCounts WHERE numBookings <= 0;
+    RETURN NULL;
+END;
+$count$ LANGUAGE plpgsql;
+
+CREATE TRIGGER room_bookings_counted
+AFTER INSERT ON RoomBookings
+REFERENCING NEW TABLE AS inserted
+FOR EACH STATEMENT EXECUTE PROCEDURE count_inserted_bookings();
+
+CREATE TRIGGER room_bookings_uncounted
+AFTER DELETE ON RoomBookings
+REFERENCING OLD TABLE AS deleted
+FOR EACH STATEMENT EXECUTE PROCEDURE count_deleted_bookings();
+
+CREATE OR REPLACE FUNCTION record_booking_changes()
+RETURNS trigger AS $changes$
+BEGIN
+    INSERT INTO RoomChanges (hotelID, bookingDate) SELECT DISTINCT hotelID, bookingDate FROM changed;
+    DELETE FROM RoomChanges WHERE changedAt < now() - interval '1 day';
+    NOTIFY room_changes;
+    RETURN NULL;
+END;
+$changes$ LANGUAGE plpgsql;
+
+CREATE TRIGGER room_bookings_inserted
+AFTER INSERT ON RoomBookings
+REFERENCING NEW TABLE AS changed
+FOR EACH STATEMENT EXECUTE PROCEDURE record_booking_changes();
+
+CREATE TRIGGER room_bookings_deleted
+AFTER DELETE ON RoomBookings
+REFERENCING OLD TABLE AS changed
+FOR EACH STATEMENT EXECUTE PROCEDURE record_booking_changes();
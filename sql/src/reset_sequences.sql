@@ -0,0 +1,7 @@
+-- Moves every serial sequence past the largest key loaded, so that new rows
+-- do not collide with loaded ones whatever the size of the data set.
+SELECT setval(pg_get_serial_sequence('users', 'userid'), COALESCE(max(userID), 0) + 1, false) FROM Users;
+SELECT setval(pg_get_serial_sequence('roombookings', 'bookingid'), COALESCE(max(bookingID), 0) + 1, false) FROM RoomBookings;
+SELECT setval(pg_get_serial_sequence('roomrepairs', 'repairid'), COALESCE(max(repairID), 0) + 1, false) FROM RoomRepairs;
+SELECT setval(pg_get_serial_sequence('roomrepairrequests', 'requestnumber'), COALESCE(max(requestNumber), 0) + 1, false) FROM RoomRepairRequests;
+SELECT setval(pg_get_serial_sequence('roomupdateslog', 'updatenumber'), COALESCE(max(updateNumber), 0) + 1, false) FROM RoomUpdatesLog;
@@ -0,0 +1,32 @@
+-- Replicates the loaded hotels, rooms, bookings and repairs :scale times, so
+-- that queries can be measured on more than the bundled sample data.
+-- Copy k of a hotel gets hotelID + k * (number of loaded hotels); managers,
+-- customers, companies and booking dates are shared with the original.
+--
+-- usage: psql -v scale=10 <db> < scale_data.sql   (scale=1 changes nothing)
+
+CREATE TEMP TABLE scale_base AS
+SELECT max(hotelID) AS maxHotel FROM Hotel;
+
+INSERT INTO Hotel (hotelID, hotelName, latitude, longitude, dateEstablished, managerUserID)
+SELECT H.hotelID + s.k * b.maxHotel, H.hotelName, H.latitude, H.longitude, H.dateEstablished, H.managerUserID
+FROM Hotel H, scale_base b, generate_series(1, :scale - 1) AS s(k);
+
+INSERT INTO Rooms (hotelID, roomNumber, price, imageURL)
+SELECT R.hotelID + s.k * b.maxHotel, R.roomNumber, R.price, R.imageURL
+FROM Rooms R, scale_base b, generate_series(1, :scale - 1) AS s(k)
+WHERE R.hotelID <= b.maxHotel;
+
+INSERT INTO RoomBookings (customerID, hotelID, roomNumber, bookingDate)
+SELECT B.customerID, B.hotelID + s.k * b.maxHotel, B.roomNumber, B.bookingDate
+FROM RoomBookings B, scale_base b, generate_series(1, :scale - 1) AS s(k)
+WHERE B.hotelID <= b.maxHotel;
+
+INSERT INTO RoomRepairs (companyID, hotelID, roomNumber, repairDate)
+SELECT R.companyID, R.hotelID + s.k * b.maxHotel, R.roomNumber, R.repairDate
+FROM RoomRepairs R, scale_base b, generate_series(1, :scale - 1) AS s(k)
+WHERE R.hotelID <= b.maxHotel;
+
+DROP TABLE scale_base;
+
+ANALYZE;
@@ -0,0 +1,22 @@
+-- Keeps in this database only the hotels of one shard, after the full data
+-- set was loaded into it. Run on every shard with
+--    psql -v shard=<k> -v shards=<n> ... < split_shard.sql
+-- where shard k of n holds the hotels with hotelID % n = k, as the program
+-- routes them when hotel.shards.ranges is not set. Users and
+-- MaintenanceCompany stay whole on every shard.
+
+-- bookingIDs interleave across shards (shard k hands out the IDs equal to k
+-- modulo n past the largest one loaded), so that they stay unique and the
+-- merged booking history can page by (bookingDate, bookingID).
+SELECT setval(pg_get_serial_sequence('roombookings', 'bookingid'),
+              COALESCE(max(bookingID), 0) + 1 + :shard, false) FROM RoomBookings;
+SELECT format('ALTER SEQUENCE %s INCREMENT BY %s',
+              pg_get_serial_sequence('roombookings', 'bookingid'), :shards) \gexec
+
+DELETE FROM RoomRepairRequests q USING RoomRepairs r
+WHERE q.repairID = r.repairID AND r.hotelID % :shards <> :shard;
+DELETE FROM RoomRepairs WHERE hotelID % :shards <> :shard;
+DELETE FROM RoomUpdatesLog WHERE hotelID % :shards <> :shard;
+DELETE FROM RoomBookings WHERE hotelID % :shards <> :shard;
+DELETE FROM Hotel WHERE hotelID % :shards <> :shard;
+VACUUM ANALYZE;
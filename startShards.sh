@@ -0,0 +1,23 @@
+#! /bin/bash
+# usage: source ./startShards.sh <shards>
+# Loads the data set into <shards> databases, the one of script.sh on port
+# 1024 and one more cluster per extra shard on ports 1025 and up, then keeps
+# in each the hotels of its shard. Run the program with
+#    -Dhotel.shards=1025,1026,...
+# to spread the hotels over them.
+shards=${1:-2}
+source ./script.sh
+psql -h localhost -p $PGPORT $USER"_DB" -v shard=0 -v shards=$shards < sql/src/split_shard.sql
+for (( k=1; k<shards; k++ )); do
+    folder=/tmp/$USER/shard$k
+    rm -rf $folder
+    mkdir -p $folder/data $folder/sockets
+    initdb -D $folder/data
+    port=$((1024 + k))
+    pg_ctl -o "-c unix_socket_directories=$folder/sockets -p $port" -D $folder/data -l $folder/logfile start
+    sleep 1
+    createdb -h localhost -p $port $USER"_DB"
+    psql -h localhost -p $port $USER"_DB" < sql/src/create_tables.sql
+    java -cp java/classes:$JDBC_JAR BulkLoader $USER"_DB" $port $USER $csv
+    psql -h localhost -p $port $USER"_DB" -v shard=$k -v shards=$shards < sql/src/split_shard.sql
+done
@@ -0,0 +1,6 @@
+#! /bin/bash
+# usage: ./stopShards.sh <shards>
+shards=${1:-2}
+for (( k=1; k<shards; k++ )); do
+    pg_ctl -D /tmp/$USER/shard$k/data stop
+done